@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonArray;
+
+import converter.FactoidToBiopax;
+import converter.TemplateGenerator;
+import converter.TemplateType;
+
+/*
+ * Cost of adding a template to a fresh model per template type. Each invocation converts a document of
+ * generated templates of a single type, so the entity lookups see the repetition of a realistic document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddToModelBenchmark {
+	
+	@Param({ "PROTEIN_MODIFICATION", "MOLECULAR_INTERACTION", "PROTEIN_CONTROLS_STATE", "CHEMICAL_AFFECTS_STATE",
+			"EXPRESSION_REGULATION", "PROTEIN_CONTROLS_CONSUMPTION", "PROTEIN_CONTROLS_PRODUCTION" })
+	public TemplateType templateType;
+	
+	private JsonArray templates;
+	
+	@Setup
+	public void setup() {
+		templates = new TemplateGenerator(SEED, POOL_SIZE, POOL_SIZE).generateDocument(templateType, TEMPLATE_COUNT);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(TEMPLATE_COUNT)
+	public FactoidToBiopax addToModel() {
+		FactoidToBiopax converter = new FactoidToBiopax();
+		converter.addToModel(templates);
+		
+		return converter;
+	}
+	
+	private static final long SEED = 42;
+	private static final int POOL_SIZE = 100;
+	private static final int TEMPLATE_COUNT = 100;
+}
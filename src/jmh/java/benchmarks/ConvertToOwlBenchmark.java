@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import converter.FactoidToBiopax;
+import converter.TemplateGenerator;
+import model.OwlWriterType;
+
+/*
+ * Cost of writing a model as owl by the number of elements in the model and the writer. Models are built from generated
+ * templates with entity pools that grow with the model, so that larger models are not just more interactions
+ * between the same few entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConvertToOwlBenchmark {
+	
+	@Param({ "10", "100", "1000", "10000", "100000", "1000000" })
+	public int elementCount;
+	
+	@Param({ "PAXTOOLS", "TEMPLATES" })
+	public OwlWriterType owlWriterType;
+	
+	private FactoidToBiopax converter;
+	
+	@Setup
+	public void setup() {
+		int poolSize = Math.max(1, elementCount / ELEMENTS_PER_ENTITY);
+		TemplateGenerator generator = new TemplateGenerator(SEED, poolSize, poolSize);
+		converter = new FactoidToBiopax();
+		converter.setOwlWriterType(owlWriterType);
+		
+		while (converter.getElementCount() < elementCount) {
+			converter.addToModel(generator.generateTemplate());
+		}
+	}
+	
+	@Benchmark
+	public void convertToOwl(Blackhole blackhole) {
+		converter.convertToOwl(new BlackholeOutputStream(blackhole));
+	}
+	
+	/*
+	 * Output stream that drops the written bytes into the blackhole so that only the serialization is measured.
+	 */
+	private static class BlackholeOutputStream extends OutputStream {
+		
+		private Blackhole blackhole;
+		
+		BlackholeOutputStream(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+		
+		@Override
+		public void write(int b) {
+			blackhole.consume(b);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			blackhole.consume(b);
+		}
+	}
+	
+	private static final long SEED = 42;
+	
+	// Rough number of model elements per distinct entity in a generated document
+	private static final int ELEMENTS_PER_ENTITY = 10;
+}
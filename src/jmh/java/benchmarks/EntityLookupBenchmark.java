@@ -0,0 +1,82 @@
+package benchmarks;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.biopax.paxtools.model.level3.Protein;
+import org.biopax.paxtools.model.level3.ProteinReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.BioPAXModel;
+import model.XrefModel;
+
+/*
+ * Cost of looking up existing entities as the number of entities that share a name grows. Physical entities
+ * share an entity reference and differ by modification types, entity references share a name and differ by xref,
+ * which are the cases that used to need a scan over all entities with the same name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityLookupBenchmark {
+	
+	@Param({ "1", "10", "100", "1000", "10000" })
+	public int duplicateCount;
+	
+	private BioPAXModel model;
+	private ProteinReference entityRef;
+	private Set<String>[] modificationTypes;
+	private XrefModel[] xrefs;
+	private int next;
+	
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		model = new BioPAXModel();
+		modificationTypes = new Set[duplicateCount];
+		xrefs = new XrefModel[duplicateCount];
+		
+		entityRef = model.getOrCreateEntityReference(ProteinReference.class, NAME, new XrefModel("P0", "uniprot"));
+		
+		for (int i = 0; i < duplicateCount; i++) {
+			modificationTypes[i] = Collections.singleton("modification" + i);
+			xrefs[i] = new XrefModel("P" + i, "uniprot");
+			
+			model.getOrCreatePhysicalEntity(Protein.class, NAME, null, entityRef, modificationTypes[i]);
+			model.getOrCreateEntityReference(ProteinReference.class, NAME, xrefs[i]);
+		}
+	}
+	
+	@Benchmark
+	public Protein getOrCreatePhysicalEntity() {
+		return model.getOrCreatePhysicalEntity(Protein.class, NAME, null, entityRef, modificationTypes[nextIndex()]);
+	}
+	
+	@Benchmark
+	public ProteinReference getOrCreateEntityReference() {
+		return model.getOrCreateEntityReference(ProteinReference.class, NAME, xrefs[nextIndex()]);
+	}
+	
+	// Cycle through the duplicates so that every lookup does not hit the same one
+	private int nextIndex() {
+		next = next + 1 == duplicateCount ? 0 : next + 1;
+		return next;
+	}
+	
+	private static final String NAME = "protein";
+}
@@ -0,0 +1,320 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+
+import converter.TemplateGenerator;
+import converter.TemplateType;
+import metrics.Histogram;
+import web.ConvertToOwlServlet;
+
+/*
+ * End to end load test of the conversion servlet. A corpus of documents is generated by the template generator,
+ * ConvertToOwlServlet is started in an embedded Tomcat on localhost and the corpus is replayed by a fixed number
+ * of concurrent clients. After a warm up period, throughput, latency percentiles and the allocation rate of the
+ * server side threads are reported.
+ *
+ * Options are given as name=value arguments, see DEFAULT_OPTIONS for the names and default values. The template
+ * type mix is given as comma separated TYPE:weight pairs, for example mix=PROTEIN_MODIFICATION:3,MOLECULAR_INTERACTION:1
+ */
+public class LoadTest {
+	
+	private Map<String, String> options;
+	private List<byte[]> corpus;
+	private URL url;
+	
+	public LoadTest(Map<String, String> options) {
+		this.options = options;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>(DEFAULT_OPTIONS);
+		
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			
+			if (separator < 0 || !DEFAULT_OPTIONS.containsKey(arg.substring(0, separator))) {
+				throw new IllegalArgumentException("Unknown option: " + arg + ", options are " + DEFAULT_OPTIONS.keySet());
+			}
+			
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		
+		new LoadTest(options).run();
+	}
+	
+	// Section: public methods
+	
+	public void run() throws Exception {
+		corpus = generateCorpus();
+		
+		long corpusBytes = 0;
+		
+		for (byte[] document : corpus) {
+			corpusBytes += document.length;
+		}
+		
+		System.out.println("Options: " + options);
+		System.out.printf("Corpus: %d documents, %.1f KiB on average%n", corpus.size(), corpusBytes / 1024.0 / corpus.size());
+		
+		Tomcat tomcat = startServer();
+		
+		try {
+			int concurrency = getInt("concurrency");
+			
+			System.out.println("Warming up for " + getInt("warmup") + " seconds");
+			replay(concurrency, getInt("warmup"));
+			
+			System.out.println("Measuring for " + getInt("duration") + " seconds");
+			Result result = replay(concurrency, getInt("duration"));
+			
+			result.print();
+		}
+		finally {
+			tomcat.stop();
+			tomcat.destroy();
+		}
+	}
+	
+	// Section: private helper methods
+	
+	private List<byte[]> generateCorpus() {
+		int poolSize = getInt("poolSize");
+		TemplateGenerator generator = new TemplateGenerator(Long.parseLong(options.get("seed")), poolSize, poolSize);
+		generator.setEntitySkew(Double.parseDouble(options.get("zipf")));
+		
+		if (!options.get("mix").isEmpty()) {
+			generator.setTemplateTypeMix(parseMix(options.get("mix")));
+		}
+		
+		List<byte[]> documents = new ArrayList<byte[]>();
+		
+		for (int i = 0; i < getInt("documents"); i++) {
+			String document = generator.generateDocument(getInt("minTemplates"), getInt("maxTemplates")).toString();
+			documents.add(document.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		return documents;
+	}
+	
+	private Tomcat startServer() throws Exception {
+		Tomcat tomcat = new Tomcat();
+		tomcat.setPort(0);
+		tomcat.setBaseDir(Files.createTempDirectory("load-test").toString());
+		
+		Context context = tomcat.addContext("", null);
+		Wrapper wrapper = Tomcat.addServlet(context, "ConvertToOwl", new ConvertToOwlServlet());
+		wrapper.setAsyncSupported(true);
+		wrapper.addInitParameter("cacheBytes", options.get("cacheBytes"));
+		wrapper.addInitParameter("idStrategy", options.get("idStrategy"));
+		context.addServletMappingDecoded("/ConvertToOwl", "ConvertToOwl");
+		
+		tomcat.getConnector();
+		tomcat.start();
+		
+		url = new URL("http://localhost:" + tomcat.getConnector().getLocalPort() + "/ConvertToOwl");
+		
+		return tomcat;
+	}
+	
+	// Replay the corpus by the given number of concurrent clients for the given time
+	private Result replay(int concurrency, int seconds) throws Exception {
+		Result result = new Result();
+		AtomicInteger nextDocument = new AtomicInteger();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		
+		Map<Long, Long> startAllocatedBytes = getServerAllocatedBytes();
+		long start = System.nanoTime();
+		
+		for (int i = 0; i < concurrency; i++) {
+			futures.add(clients.submit(() -> {
+				while (System.nanoTime() < deadline) {
+					byte[] document = corpus.get(Math.floorMod(nextDocument.getAndIncrement(), corpus.size()));
+					post(document, result);
+				}
+				
+				return null;
+			}));
+		}
+		
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		
+		result.elapsedNanos = System.nanoTime() - start;
+		
+		// threads that start in between are counted from zero
+		for (Map.Entry<Long, Long> entry : getServerAllocatedBytes().entrySet()) {
+			result.allocatedBytes += entry.getValue() - startAllocatedBytes.getOrDefault(entry.getKey(), 0L);
+		}
+		
+		clients.shutdown();
+		
+		return result;
+	}
+	
+	private void post(byte[] document, Result result) throws IOException {
+		long start = System.nanoTime();
+		
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/json");
+		connection.setFixedLengthStreamingMode(document.length);
+		
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(document);
+		}
+		
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		long responseBytes = 0;
+		
+		// Read the response fully so that the connection is kept alive for the next request
+		if (in != null) {
+			try (InputStream body = in) {
+				byte[] buffer = new byte[8192];
+				int count;
+				
+				while ((count = body.read(buffer)) != -1) {
+					responseBytes += count;
+				}
+			}
+		}
+		
+		long latency = System.nanoTime() - start;
+		
+		if (status == HttpURLConnection.HTTP_OK) {
+			result.latencies.record(latency);
+			result.requestBytes.addAndGet(document.length);
+			result.responseBytes.addAndGet(responseBytes);
+		}
+		else if (status == SC_TOO_MANY_REQUESTS) {
+			result.rejectedCount.incrementAndGet();
+		}
+		else {
+			result.errorCount.incrementAndGet();
+		}
+	}
+	
+	private int getInt(String name) {
+		return Integer.parseInt(options.get(name));
+	}
+	
+	private static Map<TemplateType, Double> parseMix(String mix) {
+		Map<TemplateType, Double> weights = new EnumMap<TemplateType, Double>(TemplateType.class);
+		
+		for (String pair : mix.split(",")) {
+			String[] parts = pair.split(":");
+			weights.put(TemplateType.valueOf(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+		}
+		
+		return weights;
+	}
+	
+	// Get the bytes allocated so far by each server thread by its id. The server threads are the conversion threads
+	// and the connector threads of Tomcat, both are pools of platform threads that live as long as the server, so
+	// the clients that run in the same process are left out and no conversion runs on a thread that is not counted.
+	private static Map<Long, Long> getServerAllocatedBytes() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Map<Long, Long> allocatedBytes = new HashMap<Long, Long>();
+		
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			String name = thread.getName();
+			
+			if (name.startsWith(CONVERSION_THREAD_PREFIX) || name.startsWith(CONNECTOR_THREAD_PREFIX)) {
+				long allocated = threads.getThreadAllocatedBytes(thread.getId());
+				
+				if (allocated >= 0) {
+					allocatedBytes.put(thread.getId(), allocated);
+				}
+			}
+		}
+		
+		return allocatedBytes;
+	}
+	
+	/*
+	 * Measurements of a replay.
+	 */
+	private static class Result {
+		
+		private Histogram latencies = new Histogram();
+		private AtomicLong requestBytes = new AtomicLong();
+		private AtomicLong responseBytes = new AtomicLong();
+		private AtomicLong rejectedCount = new AtomicLong();
+		private AtomicLong errorCount = new AtomicLong();
+		private long allocatedBytes;
+		private long elapsedNanos;
+		
+		void print() {
+			double seconds = elapsedNanos / 1e9;
+			long count = latencies.getCount();
+			
+			System.out.printf("Requests: %d ok, %d rejected, %d failed%n", count, rejectedCount.get(), errorCount.get());
+			System.out.printf("Throughput: %.1f requests/s, %.2f MiB/s in, %.2f MiB/s out%n", count / seconds,
+					requestBytes.get() / seconds / MIB, responseBytes.get() / seconds / MIB);
+			System.out.printf("Latency (ms): mean %.2f, p50 %.2f, p99 %.2f, p99.9 %.2f%n",
+					count == 0 ? 0 : latencies.getSum() / 1e6 / count, getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(99.9));
+			System.out.printf("Server allocation rate: %.1f MiB/s, %.1f KiB/request%n",
+					allocatedBytes / seconds / MIB, count == 0 ? 0 : allocatedBytes / 1024.0 / count);
+		}
+		
+		private double getLatencyMillis(double percentile) {
+			return latencies.getValueAtPercentile(percentile) / 1e6;
+		}
+	}
+	
+	// Section: static variables
+	
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+	private static final double MIB = 1024 * 1024;
+	
+	// Name prefixes of the threads of ConvertToOwlServlet's executor and of the Tomcat connector
+	private static final String CONVERSION_THREAD_PREFIX = "converter-";
+	private static final String CONNECTOR_THREAD_PREFIX = "http-";
+	
+	private static final Map<String, String> DEFAULT_OPTIONS = createDefaultOptions();
+	
+	private static Map<String, String> createDefaultOptions() {
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("concurrency", "8");
+		options.put("warmup", "10");
+		options.put("duration", "30");
+		options.put("documents", "1000");
+		options.put("minTemplates", "1");
+		options.put("maxTemplates", "50");
+		options.put("poolSize", "10000");
+		options.put("zipf", "1.0");
+		options.put("mix", "");
+		options.put("seed", "42");
+		options.put("cacheBytes", "0");
+		options.put("idStrategy", "uuid");
+		
+		return options;
+	}
+}
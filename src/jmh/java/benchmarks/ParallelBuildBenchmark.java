@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonArray;
+
+import converter.FactoidToBiopax;
+import converter.TemplateGenerator;
+import model.IdStrategy;
+
+/*
+ * Wall clock time of building a large model from templates in parallel by the given number of pool workers.
+ * Parallelism 0 builds the model sequentially for reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelBuildBenchmark {
+	
+	@Param({ "0", "1", "2", "4", "8" })
+	public int parallelism;
+	
+	@Param({ "200000" })
+	public int templateCount;
+	
+	private JsonArray templates;
+	private ForkJoinPool pool;
+	
+	@Setup
+	public void setup() {
+		templates = new TemplateGenerator(SEED, POOL_SIZE, POOL_SIZE).generateDocument(templateCount);
+		pool = parallelism == 0 ? null : new ForkJoinPool(parallelism);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+	
+	@Benchmark
+	public FactoidToBiopax build() {
+		FactoidToBiopax converter = new FactoidToBiopax(IdStrategy.SEQUENTIAL);
+		
+		if (pool == null) {
+			converter.addToModel(templates);
+		}
+		else {
+			converter.addToModelInParallel(templates, pool);
+		}
+		
+		return converter;
+	}
+	
+	private static final long SEED = 42;
+	private static final int POOL_SIZE = 10000;
+}
@@ -0,0 +1,435 @@
+package converter;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import model.IdStrategy;
+import model.OwlWriterType;
+
+/*
+ * Command line converter of many factoid files at once. The input is a directory, whose json files are converted
+ * recursively, or a glob such as "archive/**.json". Each file is converted to an owl file at the same relative
+ * path under the output directory. Files are converted in parallel on a work stealing pool, each worker thread
+ * reusing its converter from one file to the next.
+ *
+ * Owl files are written to a temporary file next to them and moved into place, so an interrupted run never leaves
+ * a partial owl file behind. A manifest in the output directory keeps the SHA-256 hash of the bytes of each input
+ * file that is converted and the options that the owl depends on. Inputs whose hash did not change since the last
+ * run are skipped unless the options changed, and the owl files of inputs that are gone are deleted.
+ *
+ * Options are given as name=value arguments, see DEFAULT_OPTIONS for the names and default values, for example
+ * input=archive output=owl parallelism=8. The defaults of idStrategy and owlWriter are content and templates rather
+ * than the uuid and paxtools of the server, give idStrategy=uuid owlWriter=paxtools for the owl that the server writes.
+ */
+public class BatchConverter {
+	
+	private Path inputBase;
+	private PathMatcher inputMatcher;
+	private Path outputDirectory;
+	private ForkJoinPool pool;
+	private ConverterPool converterPool;
+	private IdStrategy idStrategy;
+	private OwlWriterType owlWriterType;
+	// Convert all inputs even if they did not change since the last run
+	private boolean force;
+	
+	// Map of the relative path of an input to the hash of its content when it was last converted
+	private Map<String, String> manifest;
+	// Options of the run that wrote the manifest, null if there is no manifest
+	private String manifestOptions;
+	
+	private AtomicInteger convertedCount;
+	private AtomicInteger skippedCount;
+	private AtomicInteger removedCount;
+	private AtomicInteger failedCount;
+	private AtomicLong inputBytes;
+	private AtomicLong outputBytes;
+	private AtomicLong templateCount;
+	private long elapsedNanos;
+	
+	// The input is a directory or a glob, parallelism of 0 uses a thread per core
+	public BatchConverter(String input, Path outputDirectory, int parallelism) {
+		setInput(input);
+		this.outputDirectory = outputDirectory;
+		pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+		converterPool = new ConverterPool(this::createConverter, DEFAULT_CONVERTER_MAX_ELEMENTS);
+		idStrategy = IdStrategy.CONTENT;
+		owlWriterType = OwlWriterType.TEMPLATES;
+		
+		convertedCount = new AtomicInteger();
+		skippedCount = new AtomicInteger();
+		removedCount = new AtomicInteger();
+		failedCount = new AtomicInteger();
+		inputBytes = new AtomicLong();
+		outputBytes = new AtomicLong();
+		templateCount = new AtomicLong();
+	}
+	
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<String, String>(DEFAULT_OPTIONS);
+		
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			
+			if (separator < 0 || !DEFAULT_OPTIONS.containsKey(arg.substring(0, separator))) {
+				throw new IllegalArgumentException("Unknown option: " + arg + ", " + USAGE);
+			}
+			
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		
+		if (options.get("input").isEmpty() || options.get("output").isEmpty()) {
+			throw new IllegalArgumentException("Options input and output are required, " + USAGE);
+		}
+		
+		BatchConverter batchConverter = new BatchConverter(options.get("input"), Paths.get(options.get("output")),
+				Integer.parseInt(options.get("parallelism")));
+		batchConverter.setIdStrategy(IdStrategy.fromName(options.get("idStrategy")));
+		batchConverter.setOwlWriterType(OwlWriterType.fromName(options.get("owlWriter")));
+		batchConverter.setForce(Boolean.parseBoolean(options.get("force")));
+		
+		batchConverter.run();
+		batchConverter.printSummary();
+		
+		if (batchConverter.getFailedCount() > 0) {
+			System.exit(1);
+		}
+	}
+	
+	// Section: public methods
+	
+	// Convert the input files that changed since the last run, remove the owl files of deleted inputs and update the
+	// manifest, a batch converter runs once
+	public void run() throws IOException {
+		long start = System.nanoTime();
+		
+		Files.createDirectories(outputDirectory);
+		manifest = new ConcurrentHashMap<String, String>(readManifest());
+		
+		List<Path> inputFiles = findInputFiles();
+		removeDeletedInputs(inputFiles);
+		
+		// owl files written by other options are not reused, the entries of inputs that are not converted again by
+		// this run are dropped too since their owl files do not match the options the manifest is written with
+		if (!getOptions().equals(manifestOptions)) {
+			manifest.clear();
+		}
+		
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		
+		for (Path inputFile : inputFiles) {
+			tasks.add(pool.submit(() -> convertFile(inputFile)));
+		}
+		
+		try {
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		}
+		finally {
+			// keep the hashes of whatever got converted even if the run is cut short
+			pool.shutdown();
+			writeManifest();
+			elapsedNanos = System.nanoTime() - start;
+		}
+	}
+	
+	public void printSummary() {
+		double seconds = elapsedNanos / 1e9;
+		
+		System.out.printf("Files: %d converted, %d unchanged, %d removed, %d failed in %.1f s on %d threads%n", getConvertedCount(),
+				getSkippedCount(), getRemovedCount(), getFailedCount(), seconds, pool.getParallelism());
+		System.out.printf("Throughput: %.1f files/s, %.1f templates/s, %.2f MiB/s in, %.2f MiB/s out%n",
+				getConvertedCount() / seconds, templateCount.get() / seconds, inputBytes.get() / MIB / seconds,
+				outputBytes.get() / MIB / seconds);
+	}
+	
+	public void setIdStrategy(IdStrategy idStrategy) {
+		this.idStrategy = idStrategy;
+	}
+	
+	public void setOwlWriterType(OwlWriterType owlWriterType) {
+		this.owlWriterType = owlWriterType;
+	}
+	
+	public void setForce(boolean force) {
+		this.force = force;
+	}
+	
+	public int getConvertedCount() {
+		return convertedCount.get();
+	}
+	
+	// Number of input files skipped since they did not change since the last run
+	public int getSkippedCount() {
+		return skippedCount.get();
+	}
+	
+	// Number of owl files removed since their inputs are deleted
+	public int getRemovedCount() {
+		return removedCount.get();
+	}
+	
+	public int getFailedCount() {
+		return failedCount.get();
+	}
+	
+	// Section: private helper methods
+	
+	// Split the input into the directory to search and the pattern of the files to convert, relative to that directory
+	private void setInput(String input) {
+		Path inputPath = Paths.get(input);
+		
+		if (Files.isDirectory(inputPath)) {
+			inputBase = inputPath;
+			inputMatcher = FileSystems.getDefault().getPathMatcher("glob:**.json");
+			return;
+		}
+		
+		// the base is the part of the glob before the first name that has a special character
+		Path base = inputPath.isAbsolute() ? inputPath.getRoot() : Paths.get(".");
+		int nameIndex = 0;
+		
+		while (nameIndex < inputPath.getNameCount() - 1 && !hasGlobCharacter(inputPath.getName(nameIndex).toString())) {
+			base = base.resolve(inputPath.getName(nameIndex));
+			nameIndex++;
+		}
+		
+		inputBase = base;
+		inputMatcher = FileSystems.getDefault().getPathMatcher("glob:" + inputPath.subpath(nameIndex, inputPath.getNameCount()));
+	}
+	
+	private List<Path> findInputFiles() throws IOException {
+		try (Stream<Path> paths = Files.walk(inputBase)) {
+			return paths.filter(path -> Files.isRegularFile(path) && inputMatcher.matches(inputBase.relativize(path)))
+					.sorted().collect(Collectors.toList());
+		}
+	}
+	
+	// Runs on a pool thread, a failure is reported and counted and does not stop the other files
+	private void convertFile(Path inputFile) {
+		String relativePath = inputBase.relativize(inputFile).toString();
+		
+		try {
+			byte[] content = Files.readAllBytes(inputFile);
+			String hash = hash(content);
+			Path outputFile = getOutputFile(relativePath);
+			
+			if (!force && hash.equals(manifest.get(relativePath)) && Files.exists(outputFile)) {
+				skippedCount.incrementAndGet();
+				return;
+			}
+			
+			convert(content, outputFile);
+			manifest.put(relativePath, hash);
+			
+			convertedCount.incrementAndGet();
+			inputBytes.addAndGet(content.length);
+			outputBytes.addAndGet(Files.size(outputFile));
+		}
+		catch (IOException | RuntimeException e) {
+			failedCount.incrementAndGet();
+			manifest.remove(relativePath);
+			System.err.println("Failed to convert " + inputFile + ": " + e.getMessage());
+		}
+	}
+	
+	private void convert(byte[] content, Path outputFile) throws IOException {
+		FactoidToBiopax converter = converterPool.acquire();
+		
+		try {
+			converter.addToModel(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+			templateCount.addAndGet(converter.getStats().getTemplateCount());
+			
+			Files.createDirectories(outputFile.getParent());
+			Path temporaryFile = Files.createTempFile(outputFile.getParent(), outputFile.getFileName().toString(), TEMPORARY_SUFFIX);
+			
+			try {
+				try (OutputStream out = Files.newOutputStream(temporaryFile)) {
+					converter.convertToOwl(out);
+				}
+				
+				move(temporaryFile, outputFile);
+			}
+			finally {
+				Files.deleteIfExists(temporaryFile);
+			}
+		}
+		finally {
+			converterPool.release(converter);
+		}
+	}
+	
+	// Delete the owl files and manifest entries of inputs that match the input of this run but do not exist anymore,
+	// entries of inputs outside of it are left to the runs they belong to
+	private void removeDeletedInputs(List<Path> inputFiles) throws IOException {
+		Set<String> inputPaths = new HashSet<String>();
+		
+		for (Path inputFile : inputFiles) {
+			inputPaths.add(inputBase.relativize(inputFile).toString());
+		}
+		
+		for (String relativePath : new ArrayList<String>(manifest.keySet())) {
+			if (!inputPaths.contains(relativePath) && inputMatcher.matches(Paths.get(relativePath))) {
+				Files.deleteIfExists(getOutputFile(relativePath));
+				manifest.remove(relativePath);
+				removedCount.incrementAndGet();
+			}
+		}
+	}
+	
+	private Path getOutputFile(String relativePath) {
+		String owlPath = relativePath.endsWith(".json") ? relativePath.substring(0, relativePath.length() - ".json".length()) : relativePath;
+		
+		return outputDirectory.resolve(owlPath + ".owl");
+	}
+	
+	private Map<String, String> readManifest() throws IOException {
+		Path manifestFile = outputDirectory.resolve(MANIFEST_FILE);
+		Map<String, String> hashes = new HashMap<String, String>();
+		
+		if (!Files.exists(manifestFile)) {
+			return hashes;
+		}
+		
+		for (String line : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+			int separator = line.indexOf('\t');
+			
+			if (line.startsWith(OPTIONS_PREFIX)) {
+				manifestOptions = line.substring(OPTIONS_PREFIX.length());
+			}
+			else if (separator > 0) {
+				hashes.put(line.substring(separator + 1), line.substring(0, separator));
+			}
+		}
+		
+		return hashes;
+	}
+	
+	// Line of the options followed by lines of hash and relative path sorted by path, written atomically like the
+	// owl files
+	private void writeManifest() throws IOException {
+		Path manifestFile = outputDirectory.resolve(MANIFEST_FILE);
+		Path temporaryFile = Files.createTempFile(outputDirectory, MANIFEST_FILE, TEMPORARY_SUFFIX);
+		
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+				writer.write(OPTIONS_PREFIX + getOptions());
+				writer.newLine();
+				
+				for (Map.Entry<String, String> entry : new TreeMap<String, String>(manifest).entrySet()) {
+					writer.write(entry.getValue() + "\t" + entry.getKey());
+					writer.newLine();
+				}
+			}
+			
+			move(temporaryFile, manifestFile);
+		}
+		finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+	
+	// Options and converter version that the owl output depends on, an owl file written by others is converted again
+	private String getOptions() {
+		return "idStrategy=" + idStrategy.name().toLowerCase() + " owlWriter=" + owlWriterType.name().toLowerCase()
+				+ " version=" + FactoidToBiopax.OUTPUT_VERSION;
+	}
+	
+	private FactoidToBiopax createConverter() {
+		FactoidToBiopax converter = new FactoidToBiopax(idStrategy);
+		converter.setOwlWriterType(owlWriterType);
+		
+		return converter;
+	}
+	
+	// Replace the target by the source file, atomically where the file system supports it
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private static String hash(byte[] content) {
+		MessageDigest messageDigest;
+		
+		try {
+			messageDigest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		}
+		
+		return TemplatesDigest.toHex(messageDigest.digest(content));
+	}
+	
+	private static boolean hasGlobCharacter(String name) {
+		return name.indexOf('*') >= 0 || name.indexOf('?') >= 0 || name.indexOf('[') >= 0 || name.indexOf('{') >= 0;
+	}
+	
+	// Section: static variables
+	
+	private static final String MANIFEST_FILE = ".manifest.tsv";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+	// Prefix of the manifest line of the options, e.g. "# idStrategy=content owlWriter=templates version=1"
+	private static final String OPTIONS_PREFIX = "# ";
+	
+	private static final int DEFAULT_CONVERTER_MAX_ELEMENTS = 100000;
+	
+	private static final double MIB = 1024 * 1024;
+	
+	private static final Map<String, String> DEFAULT_OPTIONS = createDefaultOptions();
+	
+	private static final String USAGE = "options and their defaults are " + DEFAULT_OPTIONS
+			+ ", idStrategy and owlWriter differ from the server defaults uuid and paxtools";
+	
+	private static Map<String, String> createDefaultOptions() {
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		// directory or glob of the factoid files
+		options.put("input", "");
+		// directory that the owl files and the manifest are written to
+		options.put("output", "");
+		// number of conversion threads, 0 for a thread per core
+		options.put("parallelism", "0");
+		// unlike the server, ids are content based by default so that a file that did not change gives the same
+		// owl on every run, and the owl writer is the specialized one since batches are large
+		options.put("idStrategy", "content");
+		options.put("owlWriter", "templates");
+		// convert all files even if they did not change since the last run
+		options.put("force", "false");
+		
+		return Collections.unmodifiableMap(options);
+	}
+}
@@ -0,0 +1,118 @@
+package converter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A cache of conversion results keyed by the content hash of the templates (see TemplatesDigest).
+ * Entries are evicted in least recently used order when the total size of the cached results exceeds
+ * the byte budget. A repeated conversion then costs a hash and a copy of the cached bytes.
+ */
+public class ConversionCache {
+	
+	private long maxBytes;
+	private long maxEntryBytes;
+	private long currentBytes;
+	
+	// Map of content hash to conversion result in access order, least recently used entry comes first
+	private LinkedHashMap<String, byte[]> entries;
+	
+	private AtomicLong hitCount;
+	private AtomicLong missCount;
+	private AtomicLong evictionCount;
+	
+	public ConversionCache(long maxBytes, long maxEntryBytes) {
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+		
+		entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+		
+		hitCount = new AtomicLong();
+		missCount = new AtomicLong();
+		evictionCount = new AtomicLong();
+	}
+	
+	// Section: public methods
+	
+	// Get the cached result for the given content hash or null if it is not cached
+	public byte[] get(String key) {
+		byte[] result;
+		
+		synchronized (this) {
+			result = entries.get(key);
+		}
+		
+		if (result == null) {
+			missCount.incrementAndGet();
+		}
+		else {
+			hitCount.incrementAndGet();
+		}
+		
+		return result;
+	}
+	
+	// Cache the result for the given content hash, results that are larger than the entry limit are not cached
+	public void put(String key, byte[] result) {
+		
+		if (result.length > maxEntryBytes) {
+			return;
+		}
+		
+		synchronized (this) {
+			byte[] previous = entries.put(key, result);
+			
+			if (previous != null) {
+				currentBytes -= previous.length;
+			}
+			
+			currentBytes += result.length;
+			evictOverBudget();
+		}
+	}
+	
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+	
+	// Size of the largest result that is accepted by the cache
+	public long getMaxEntryBytes() {
+		return maxEntryBytes;
+	}
+	
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+	
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+	
+	public long getHitCount() {
+		return hitCount.get();
+	}
+	
+	public long getMissCount() {
+		return missCount.get();
+	}
+	
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+	
+	// Section: private helper methods
+	
+	// Remove the least recently used entries until the cached results fit the budget again
+	private void evictOverBudget() {
+		Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+		
+		while (currentBytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, byte[]> eldest = it.next();
+			currentBytes -= eldest.getValue().length;
+			it.remove();
+			evictionCount.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package converter;
+
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.biopax.paxtools.model.BioPAXElement;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/*
+ * A conversion session of a single document. The converter of the document is kept in memory and updated
+ * in place by adding new templates and removing the ones that are not in the document anymore, so that
+ * an edit costs as much as the templates it changes rather than the whole document. A change is validated as
+ * a whole before any part of it is applied, so a rejected change leaves the document as it was.
+ */
+public class ConversionSession {
+	
+	private String id;
+	private FactoidToBiopax converter;
+	// Map of canonical template JSON to elements created by each added copy of that template
+	private Map<String, Deque<List<BioPAXElement>>> templateElements;
+	private int templateCount;
+	// Element count as of the last change
+	private volatile int elementCount;
+	// Elements and interned strings as of the last change, read by the registry without taking the lock of the session
+	private volatile int retainedCount;
+	// Part of the element total of the registry that is taken by this session, see SessionRegistry
+	private AtomicInteger accountedElementCount;
+	private volatile boolean closed;
+	private volatile long lastAccessTime;
+	
+	public ConversionSession(String id) {
+		this(id, ValidationLimits.DEFAULT);
+	}
+	
+	public ConversionSession(String id, ValidationLimits limits) {
+		this.id = id;
+		converter = new FactoidToBiopax();
+		converter.setValidationLimits(limits);
+		templateElements = new HashMap<String, Deque<List<BioPAXElement>>>();
+		accountedElementCount = new AtomicInteger();
+		touch();
+	}
+	
+	// Section: public methods
+	
+	// Remove the given templates first and then add the new ones, a changed template is expected to be
+	// in both arrays with its old and new content
+	public synchronized void update(JsonArray removedTemplates, JsonArray addedTemplates) {
+		
+		if (addedTemplates != null) {
+			converter.validate(addedTemplates);
+		}
+		
+		List<JsonElement> removed = new ArrayList<JsonElement>();
+		List<String> addedKeys = new ArrayList<String>();
+		
+		try {
+			if (removedTemplates != null) {
+				for (JsonElement template : removedTemplates) {
+					if (remove(TemplatesDigest.canonicalize(template))) {
+						removed.add(template);
+					}
+				}
+			}
+			
+			if (addedTemplates != null) {
+				for (JsonElement template : addedTemplates) {
+					addedKeys.add(add(template.getAsJsonObject()));
+				}
+			}
+		}
+		catch (RuntimeException e) {
+			// undo the part of the change that is applied, the templates are valid so a failure is not expected
+			rollBack(addedKeys, removed);
+			throw e;
+		}
+		finally {
+			elementCount = converter.getElementCount();
+			// interned strings are kept after the templates that used them are removed, so they are counted too
+			retainedCount = elementCount + converter.getSymbolCount();
+		}
+		
+		touch();
+	}
+	
+	// Add the given templates, none of them is added if any of them is invalid
+	public synchronized void addTemplates(JsonArray templates) {
+		update(null, templates);
+	}
+	
+	// Remove the given templates, templates that were not added to the session are ignored
+	public synchronized void removeTemplates(JsonArray templates) {
+		update(templates, null);
+	}
+	
+	public synchronized void convertToOwl(OutputStream out) {
+		converter.convertToOwl(out);
+		touch();
+	}
+	
+	// accessors
+	
+	public String getId() {
+		return id;
+	}
+	
+	public synchronized int getTemplateCount() {
+		return templateCount;
+	}
+	
+	public int getElementCount() {
+		return elementCount;
+	}
+	
+	public long getLastAccessTime() {
+		return lastAccessTime;
+	}
+	
+	// Section: package methods used by SessionRegistry
+	
+	// Number of elements and interned strings that the session holds in memory
+	int getRetainedCount() {
+		return retainedCount;
+	}
+	
+	AtomicInteger getAccountedElementCount() {
+		return accountedElementCount;
+	}
+	
+	void markClosed() {
+		closed = true;
+	}
+	
+	boolean isClosed() {
+		return closed;
+	}
+	
+	// Section: private helper methods
+	
+	// Add a template that is validated already and get its canonical key
+	private String add(JsonObject template) {
+		String key = TemplatesDigest.canonicalize(template);
+		List<BioPAXElement> elements = converter.addTemplate(template);
+		
+		templateElements.computeIfAbsent(key, k -> new ArrayDeque<List<BioPAXElement>>()).push(elements);
+		templateCount++;
+		
+		return key;
+	}
+	
+	// Remove the last added copy of the template with the given key, false if there is no such template
+	private boolean remove(String key) {
+		Deque<List<BioPAXElement>> copies = templateElements.get(key);
+		
+		if (copies == null) {
+			return false;
+		}
+		
+		converter.removeTemplate(copies.pop());
+		templateCount--;
+		
+		if (copies.isEmpty()) {
+			templateElements.remove(key);
+		}
+		
+		return true;
+	}
+	
+	private void rollBack(List<String> addedKeys, List<JsonElement> removed) {
+		for (int i = addedKeys.size() - 1; i >= 0; i--) {
+			remove(addedKeys.get(i));
+		}
+		
+		for (JsonElement template : removed) {
+			add(template.getAsJsonObject());
+		}
+	}
+	
+	private void touch() {
+		lastAccessTime = System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,101 @@
+package converter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Counts and timings of the work done by a single converter. A converter is used by one thread at a time
+ * so these are plain fields, they are published to the shared metrics once the conversion is done.
+ */
+public class ConversionStats {
+	
+	// Map of registered template type name to number of templates of that type added to the model
+	private Map<String, Integer> templateCounts;
+	private int unknownTemplateCount;
+	
+	private long parseNanos;
+	private long buildNanos;
+	private long serializeNanos;
+	
+	public ConversionStats() {
+		templateCounts = new LinkedHashMap<String, Integer>();
+	}
+	
+	// Section: public methods
+	
+	public void countTemplate(String typeName) {
+		templateCounts.merge(typeName, 1, Integer::sum);
+	}
+	
+	public void countUnknownTemplate() {
+		unknownTemplateCount++;
+	}
+	
+	public void addParseNanos(long nanos) {
+		parseNanos += nanos;
+	}
+	
+	public void addBuildNanos(long nanos) {
+		buildNanos += nanos;
+	}
+	
+	public void addSerializeNanos(long nanos) {
+		serializeNanos += nanos;
+	}
+	
+	// Zero the counts and timings so that the stats can be reused by the next conversion
+	public void reset() {
+		templateCounts.clear();
+		unknownTemplateCount = 0;
+		parseNanos = 0;
+		buildNanos = 0;
+		serializeNanos = 0;
+	}
+	
+	// Add the counts and timings of another conversion, such as the one of a shard of this conversion
+	public void add(ConversionStats other) {
+		for (Map.Entry<String, Integer> entry : other.templateCounts.entrySet()) {
+			templateCounts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+		}
+		
+		unknownTemplateCount += other.unknownTemplateCount;
+		parseNanos += other.parseNanos;
+		buildNanos += other.buildNanos;
+		serializeNanos += other.serializeNanos;
+	}
+	
+	public Map<String, Integer> getTemplateCounts() {
+		return Collections.unmodifiableMap(templateCounts);
+	}
+	
+	public int getUnknownTemplateCount() {
+		return unknownTemplateCount;
+	}
+	
+	// Get the number of templates added to the model including the ones of unknown type
+	public int getTemplateCount() {
+		int count = unknownTemplateCount;
+		
+		for (int typeCount : templateCounts.values()) {
+			count += typeCount;
+		}
+		
+		return count;
+	}
+	
+	// Time spent in reading templates from the input stream, zero for templates that are given already parsed
+	public long getParseNanos() {
+		return parseNanos;
+	}
+	
+	// Time spent in adding templates to the model
+	public long getBuildNanos() {
+		return buildNanos;
+	}
+	
+	// Time spent in writing the model as owl
+	public long getSerializeNanos() {
+		return serializeNanos;
+	}
+}
@@ -0,0 +1,68 @@
+package converter;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+ * Keeps an idle converter per thread so that conversions that run on the same thread one after another reuse the
+ * converter, and the capacity its model has grown to, instead of building a new one for each request. Converters
+ * are reset when they are released. A converter whose model grew larger than the given number of elements is
+ * discarded instead, so that a single large document does not pin its memory for the lifetime of the thread.
+ *
+ * Converters are kept in thread locals, so the pool is meant for long lived worker threads that the application
+ * owns, such as the threads of a ConversionExecutor.
+ */
+public class ConverterPool {
+	
+	private Supplier<FactoidToBiopax> factory;
+	private int maxElements;
+	private ThreadLocal<FactoidToBiopax> idleConverters;
+	
+	private LongAdder createdCount;
+	private LongAdder discardedCount;
+	
+	public ConverterPool(Supplier<FactoidToBiopax> factory, int maxElements) {
+		this.factory = factory;
+		this.maxElements = maxElements;
+		idleConverters = new ThreadLocal<FactoidToBiopax>();
+		
+		createdCount = new LongAdder();
+		discardedCount = new LongAdder();
+	}
+	
+	// Section: public methods
+	
+	// Get the idle converter of the current thread or a new one if there is none
+	public FactoidToBiopax acquire() {
+		FactoidToBiopax converter = idleConverters.get();
+		
+		if (converter == null) {
+			createdCount.increment();
+			return factory.get();
+		}
+		
+		idleConverters.set(null);
+		return converter;
+	}
+	
+	// Give the converter back once its result and stats are consumed, it is not to be used by the caller anymore
+	public void release(FactoidToBiopax converter) {
+		if (converter.getElementCount() > maxElements) {
+			discardedCount.increment();
+			return;
+		}
+		
+		converter.reset();
+		idleConverters.set(converter);
+	}
+	
+	// Number of converters created since the pool was created, the rest of the conversions reused one
+	public long getCreatedCount() {
+		return createdCount.sum();
+	}
+	
+	// Number of converters discarded for growing too large
+	public long getDiscardedCount() {
+		return discardedCount.sum();
+	}
+}
@@ -0,0 +1,139 @@
+package converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import model.IdStrategy;
+import model.OwlWriterType;
+import model.SymbolTable;
+
+/*
+ * Merges many factoid documents into a single model. All documents are added to the same converter, so entity
+ * references, xrefs and physical entities that documents share are created once by the lookups of the model,
+ * as if the documents were a single templates array. Documents are read from a stream of templates arrays,
+ * one after another with any whitespace between them such as newline delimited JSON, and templates are added
+ * one at a time as they are read, so no document is kept in memory once it is added, only the model.
+ *
+ * The strings of the model are interned by the given symbol table, so a name that many documents share is kept
+ * once.
+ */
+public class CorpusMerger {
+	
+	private FactoidToBiopax converter;
+	private ProgressListener progressListener;
+	private int progressInterval;
+	private int documentCount;
+	private int maxElements;
+	
+	public CorpusMerger(IdStrategy idStrategy, SymbolTable symbolTable) {
+		converter = new FactoidToBiopax(idStrategy, TemplateHandlerRegistry.createDefault(), symbolTable);
+		maxElements = Integer.MAX_VALUE;
+	}
+	
+	// Section: public methods
+	
+	// Add all documents of the stream to the model, a document that is invalid stops the merge
+	public void mergeDocuments(Reader documentsReader) {
+		JsonReader jsonReader = new JsonReader(documentsReader);
+		
+		try {
+			// a lenient reader takes any number of top level values, but only the reader between documents is
+			// lenient so that a document is read as strictly as a single templates array is
+			jsonReader.setLenient(true);
+			
+			while (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+				jsonReader.setLenient(false);
+				mergeDocument(jsonReader);
+				jsonReader.setLenient(true);
+			}
+		}
+		catch (MalformedJsonException e) {
+			throw new JsonSyntaxException("Document " + documentCount + " is not valid JSON", e);
+		}
+		catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+	}
+	
+	// Add the templates array that the reader is at to the model
+	public void mergeDocument(JsonReader jsonReader) {
+		try {
+			converter.addToModel(jsonReader);
+		}
+		catch (TemplatesLimitException e) {
+			throw new TemplatesLimitException("Document " + documentCount + ": " + e.getMessage());
+		}
+		catch (InvalidTemplatesException e) {
+			throw new InvalidTemplatesException("Document " + documentCount + ": " + e.getMessage());
+		}
+		catch (JsonSyntaxException e) {
+			throw new JsonSyntaxException("Document " + documentCount + " is not valid JSON", e);
+		}
+		
+		documentCount++;
+		
+		if (converter.getElementCount() > maxElements) {
+			throw new TemplatesLimitException("Document " + (documentCount - 1) + ": Merged model has more than " + maxElements
+					+ " elements");
+		}
+		
+		if (progressListener != null && documentCount % progressInterval == 0) {
+			progressListener.documentsMerged(this);
+		}
+	}
+	
+	// The listener is called after every given number of documents that are added to the model
+	public void setProgressListener(ProgressListener progressListener, int progressInterval) {
+		this.progressListener = progressListener;
+		this.progressInterval = progressInterval;
+	}
+	
+	// Limits of each document, the templates limit applies to each document rather than to all of them
+	public void setValidationLimits(ValidationLimits limits) {
+		converter.setValidationLimits(limits);
+	}
+	
+	// The merge is stopped once the merged model has more than the given number of elements
+	public void setMaxElements(int maxElements) {
+		this.maxElements = maxElements;
+	}
+	
+	public void setOwlWriterType(OwlWriterType owlWriterType) {
+		converter.setOwlWriterType(owlWriterType);
+	}
+	
+	public int getDocumentCount() {
+		return documentCount;
+	}
+	
+	public int getElementCount() {
+		return converter.getElementCount();
+	}
+	
+	// Converter of the merged model, e.g. to record its stats
+	public FactoidToBiopax getConverter() {
+		return converter;
+	}
+	
+	// Stream the owl of the merged model into the given output stream, the stream is flushed but not closed
+	public void convertToOwl(OutputStream out) {
+		converter.convertToOwl(out);
+	}
+	
+	// Section: helper classes
+	
+	/*
+	 * Gets told how far a merge is as documents are added.
+	 */
+	public interface ProgressListener {
+		
+		void documentsMerged(CorpusMerger merger);
+	}
+}
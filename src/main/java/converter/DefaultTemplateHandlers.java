@@ -0,0 +1,111 @@
+package converter;
+
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.biopax.paxtools.model.level3.ControlType;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+
+import model.EntityModel;
+import model.TemplatesModel;
+
+/*
+ * Handlers of the template types supported by default. Each handler extracts the fields of its template type
+ * and adds the template to the model by the related method.
+ */
+final class DefaultTemplateHandlers {
+	
+	private DefaultTemplateHandlers() {
+	}
+	
+	static void addProteinModification(JsonObject template, TemplatesModel model, Gson gson) {
+		EntityModel targetProteinModel = getEntity(template, "targetProtein", gson);
+		EntityModel controllerProteinModel = getEntity(template, "controllerProtein", gson);
+		String modificationType = template.get("modification").getAsString();
+		ControlType controlType = getControlType(template);
+		
+		model.addProteinModification(targetProteinModel, controllerProteinModel, modificationType, controlType);
+	}
+	
+	static void addMolecularInteraction(JsonObject template, TemplatesModel model, Gson gson) {
+		JsonArray moleculeNamesJSON = template.get("moleculeList").getAsJsonArray();
+		List<EntityModel> moleculeModels = gson.fromJson(moleculeNamesJSON, ENTITY_LIST_TYPE);
+		
+		model.addMolecularInteraction(moleculeModels);
+	}
+	
+	static void addProteinControlsState(JsonObject template, TemplatesModel model, Gson gson) {
+		EntityModel controllerProteinModel = getEntity(template, "controllerProtein", gson);
+		EntityModel targetProteinModel = getEntity(template, "targetProtein", gson);
+		ControlType controlType = getControlType(template);
+		
+		model.addProteinControlsState(controllerProteinModel, targetProteinModel, controlType);
+	}
+	
+	static void addChemicalAffectsState(JsonObject template, TemplatesModel model, Gson gson) {
+		EntityModel chemicalModel = getEntity(template, "chemical", gson);
+		EntityModel targetProteinModel = getEntity(template, "targetProtein", gson);
+		ControlType controlType = getControlType(template);
+		
+		model.addChemicalAffectsState(chemicalModel, targetProteinModel, controlType);
+	}
+	
+	static void addRegulationOfExpression(JsonObject template, TemplatesModel model, Gson gson) {
+		EntityModel transcriptionFactorModel = getEntity(template, "transcriptionFactor", gson);
+		EntityModel targetProtModel = getEntity(template, "targetProtein", gson);
+		ControlType controlType = getControlType(template);
+		
+		model.addRegulationOfExpression(transcriptionFactorModel, targetProtModel, controlType);
+	}
+	
+	static void addProteinControlsConsumption(JsonObject template, TemplatesModel model, Gson gson) {
+		EntityModel controllerProteinModel = getEntity(template, "controllerProtein", gson);
+		EntityModel chemicalModel = getEntity(template, "chemical", gson);
+		
+		model.addProteinControlsConsumption(controllerProteinModel, chemicalModel);
+	}
+	
+	static void addProteinControlsProduction(JsonObject template, TemplatesModel model, Gson gson) {
+		EntityModel controllerProteinModel = getEntity(template, "controllerProtein", gson);
+		EntityModel chemicalModel = getEntity(template, "chemical", gson);
+		
+		model.addProteinControlsProduction(controllerProteinModel, chemicalModel);
+	}
+	
+	// Section: helper methods
+	
+	// Check if the control type name is one that the handlers map to a paxtools control type
+	static boolean isSupportedControlType(String controlTypeStr) {
+		return CONTROL_TYPE_MAP.containsKey(controlTypeStr.toUpperCase());
+	}
+	
+	private static EntityModel getEntity(JsonObject template, String fieldName, Gson gson) {
+		JsonObject entityJson = template.get(fieldName).getAsJsonObject();
+		return gson.fromJson(entityJson, EntityModel.class);
+	}
+	
+	private static ControlType getControlType(JsonObject template) {
+		String controlTypeStr = template.get("controlType").getAsString();
+		return CONTROL_TYPE_MAP.get(controlTypeStr.toUpperCase());
+	}
+	
+	private static Map<String, ControlType> createControlTypeMap() {
+		Map<String, ControlType> map = new HashMap<String, ControlType>();
+		map.put("ACTIVATION", ControlType.ACTIVATION);
+		map.put("INHIBITION", ControlType.INHIBITION);
+		
+		return map;
+	}
+	
+	// Section: static variables
+	
+	private static final Map<String, ControlType> CONTROL_TYPE_MAP = createControlTypeMap();
+	
+	private static final Type ENTITY_LIST_TYPE = new TypeToken<List<EntityModel>>(){}.getType();
+}
@@ -2,24 +2,30 @@ package converter;
 
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringReader;
 /*
  * A converter class that gets a JSON object that includes sequence of BioPAX templates and enables
  * conversion to BioPAX by adding these templates to underlying Templates Model instance.
  */
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
-import org.biopax.paxtools.model.level3.ControlType;
+import org.biopax.paxtools.model.BioPAXElement;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 
 import model.*;
@@ -27,183 +33,311 @@ import model.*;
 public class FactoidToBiopax {
 	
 	private TemplatesModel model;
-	private JsonParser jsonParser;
+	private TemplatesValidator validator;
 	private Gson gson;
+	private TemplateHandlerRegistry handlerRegistry;
+	private ConversionStats stats;
 	
 	public FactoidToBiopax() {
-		model = new TemplatesModel();
-		jsonParser = new JsonParser();
-		gson = new Gson();
+		this(IdStrategy.UUID);
+	}
+	
+	public FactoidToBiopax(IdStrategy idStrategy) {
+		this(idStrategy, DEFAULT_HANDLER_REGISTRY);
+	}
+	
+	// The handler registry is shared by converters and is not expected to be modified once they start using it
+	public FactoidToBiopax(IdStrategy idStrategy, TemplateHandlerRegistry handlerRegistry) {
+		this(idStrategy, handlerRegistry, new HeapSymbolTable());
+	}
+	
+	// The symbol table interns the strings of this conversion, so that a name that comes back in many templates is
+	// kept once. Strings are kept until the converter is reset, even if the templates that used them are removed.
+	public FactoidToBiopax(IdStrategy idStrategy, TemplateHandlerRegistry handlerRegistry, SymbolTable symbolTable) {
+		model = new TemplatesModel(idStrategy, symbolTable);
+		validator = new TemplatesValidator(ValidationLimits.DEFAULT);
+		gson = createGson(symbolTable);
+		this.handlerRegistry = handlerRegistry;
+		stats = new ConversionStats();
 	}
 	
 	public void addToModel(String templatesContent) {
-		JsonArray templates = jsonParser.parse(templatesContent).getAsJsonArray();
-		addToModel(templates);
+		addToModel(new StringReader(templatesContent));
 	}
 	
+	// The reader is expected to hold a single templates array, content after the array is rejected
 	public void addToModel(Reader contentReader) {
-		JsonArray templates = jsonParser.parse(contentReader).getAsJsonArray();
-		addToModel(templates);
+		JsonReader jsonReader = new JsonReader(contentReader);
+		addToModel(jsonReader);
+		
+		try {
+			TemplatesValidator.endDocument(jsonReader);
+		}
+		catch (IOException e) {
+			throw TemplatesValidator.toJsonException(e);
+		}
 	}
 	
+	// Pull the templates off the stream one at a time so that the whole templates array
+	// is never materialized, each template is dropped as soon as it is added to the model.
+	// Each template is validated as it is read, before it is added.
+	public void addToModel(JsonReader jsonReader) {
+		
+		try {
+			TemplatesValidator.beginTemplates(jsonReader);
+			
+			for (int index = 0; jsonReader.hasNext(); index++) {
+				long parseStart = System.nanoTime();
+				JsonObject template = validator.readTemplate(jsonReader, index);
+				stats.addParseNanos(System.nanoTime() - parseStart);
+				
+				addToModel(template, model, gson, stats);
+			}
+			
+			jsonReader.endArray();
+		}
+		catch (IOException e) {
+			throw TemplatesValidator.toJsonException(e);
+		}
+	}
+	
+	// All templates are validated before any of them is added
 	public void addToModel(JsonArray templates) {
 		
+		validator.validate(templates);
 		Iterator<JsonElement> it = templates.iterator();
 		
 		while (it.hasNext()) {
 			JsonObject template = (JsonObject) it.next();
-			String typeStr = template.get("type").getAsString();
-			System.out.println(typeStr);
-			
-			if (matchesTemplateType(typeStr, TemplateType.PROTEIN_CONTROLS_STATE)) {
-				JsonObject controllerJson = template.get("controllerProtein").getAsJsonObject();
-				String controlTypeStr = template.get("controlType").getAsString();
-				JsonObject targetProteinJson = template.get("targetProtein").getAsJsonObject();
+			addToModel(template, model, gson, stats);
+		}
+	}
+	
+	public void addToModel(JsonObject template) {
+		validator.validateTemplate(template, stats.getTemplateCount());
+		addToModel(template, model, gson, stats);
+	}
+	
+	// Add the templates by building shards of them in parallel on the given pool and merging the shards into the
+	// model in order. The result is the same as adding the templates one by one, only the merge is sequential.
+	public void addToModelInParallel(JsonArray templates, ForkJoinPool pool) {
+		validator.validate(templates);
+		
+		int shardCount = pool.getParallelism() * SHARDS_PER_WORKER;
+		int shardSize = Math.max(MIN_SHARD_SIZE, (templates.size() + shardCount - 1) / shardCount);
+		
+		Deque<ForkJoinTask<Shard>> pendingShards = new ArrayDeque<ForkJoinTask<Shard>>();
+		
+		try {
+			for (int start = 0; start < templates.size(); start += shardSize) {
+				List<JsonObject> shardTemplates = new ArrayList<JsonObject>(shardSize);
 				
-				addProteinControlsState(controllerJson, targetProteinJson, controlTypeStr);
-			}
-			else if (matchesTemplateType(typeStr, TemplateType.CHEMICAL_AFFECTS_STATE)) {
-				JsonObject chemicalJson = template.get("chemical").getAsJsonObject();
-				String controlTypeStr = template.get("controlType").getAsString();
-				JsonObject targetProteinJson = template.get("targetProtein").getAsJsonObject();
+				for (int i = start; i < Math.min(start + shardSize, templates.size()); i++) {
+					shardTemplates.add(templates.get(i).getAsJsonObject());
+				}
 				
-				addChemicalAffectsState(chemicalJson, targetProteinJson, controlTypeStr);
+				pendingShards.add(pool.submit(() -> buildShard(shardTemplates)));
 			}
-			else if (matchesTemplateType(typeStr, TemplateType.EXPRESSION_REGULATION)) {
-				JsonObject transcriptionFactorJson = template.get("transcriptionFactor").getAsJsonObject();
-				JsonObject targetProtJson = template.get("targetProtein").getAsJsonObject();
-				String controlTypeStr = template.get("controlType").getAsString();
-				
-				addRegulationOfExpression(transcriptionFactorJson, targetProtJson, controlTypeStr);
+			
+			while (!pendingShards.isEmpty()) {
+				mergeShard(pendingShards.poll().join());
 			}
-			else if(matchesTemplateType(typeStr, TemplateType.MOLECULAR_INTERACTION)) {
-				JsonArray moleculeNamesJSON = template.get("moleculeList").getAsJsonArray();
+		}
+		finally {
+			cancel(pendingShards);
+		}
+	}
+	
+	// Pull the templates off the stream and add them by building shards of them in parallel on the given pool.
+	// Shards are merged in order as soon as they are built and the number of shards in flight is bounded so that
+	// the whole templates array is never materialized.
+	public void addToModelInParallel(Reader contentReader, ForkJoinPool pool) {
+		JsonReader jsonReader = new JsonReader(contentReader);
+		int maxPendingShards = pool.getParallelism() * SHARDS_PER_WORKER;
+		
+		Deque<ForkJoinTask<Shard>> pendingShards = new ArrayDeque<ForkJoinTask<Shard>>();
+		int index = 0;
+		
+		try {
+			TemplatesValidator.beginTemplates(jsonReader);
+			
+			while (jsonReader.hasNext()) {
+				List<JsonObject> shardTemplates = new ArrayList<JsonObject>(STREAMED_SHARD_SIZE);
+				long parseStart = System.nanoTime();
 				
-				addMolecularInteraction(moleculeNamesJSON);
-			}
-			else if(matchesTemplateType(typeStr, TemplateType.PROTEIN_MODIFICATION)) {
-				JsonObject targetProteinJson = template.get("targetProtein").getAsJsonObject();
-				JsonObject controllerProteinJson = template.get("controllerProtein").getAsJsonObject();
-				String modificationType = template.get("modification").getAsString();
-				String controlTypeStr = template.get("controlType").getAsString();
+				while (shardTemplates.size() < STREAMED_SHARD_SIZE && jsonReader.hasNext()) {
+					shardTemplates.add(validator.readTemplate(jsonReader, index++));
+				}
 				
-				addProteinModification(targetProteinJson, controllerProteinJson, modificationType, controlTypeStr);
-			}
-			else if(matchesTemplateType(typeStr, TemplateType.PROTEIN_CONTROLS_CONSUMPTION)) {
-				JsonObject controllerProteinJson = template.get("controllerProtein").getAsJsonObject();
-				JsonObject chemicalJson = template.get("chemical").getAsJsonObject();
+				stats.addParseNanos(System.nanoTime() - parseStart);
+				pendingShards.add(pool.submit(() -> buildShard(shardTemplates)));
 				
-				addProteinControlsConsumption(controllerProteinJson, chemicalJson);
+				if (pendingShards.size() >= maxPendingShards) {
+					mergeShard(pendingShards.poll().join());
+				}
 			}
-			else if(matchesTemplateType(typeStr, TemplateType.PROTEIN_CONTROLS_PRODUCTION)) {
-				JsonObject controllerProteinJson = template.get("controllerProtein").getAsJsonObject();
-				JsonObject chemicalJson = template.get("chemical").getAsJsonObject();
-				
-				addProteinControlsProduction(controllerProteinJson, chemicalJson);
+			
+			jsonReader.endArray();
+			TemplatesValidator.endDocument(jsonReader);
+			
+			while (!pendingShards.isEmpty()) {
+				mergeShard(pendingShards.poll().join());
 			}
 		}
+		catch (IOException e) {
+			throw TemplatesValidator.toJsonException(e);
+		}
+		finally {
+			cancel(pendingShards);
+		}
 	}
 	
-	public String convertToOwl() {
-		return model.convertToOwl();
+	// Check the templates like adding them does but without adding them, e.g. to reject a change set before any
+	// part of it is applied
+	public void validate(JsonArray templates) {
+		validator.validate(templates);
 	}
 	
-	private static String getTemplateName(TemplateType templateType) {
-		return templateType.getName();
+	// Add a single template and get the elements that are created by it, these elements can be used to
+	// remove the template from the model later
+	public List<BioPAXElement> addTemplate(JsonObject template) {
+		model.startRecording();
+		
+		try {
+			addToModel(template);
+		}
+		catch (RuntimeException e) {
+			// do not leave a partially added template in the model
+			model.removeTemplateElements(model.stopRecording());
+			throw e;
+		}
+		
+		return model.stopRecording();
 	}
 	
-	private static boolean matchesTemplateType(String typeStr, TemplateType templateType) {
-		return typeStr.equalsIgnoreCase(getTemplateName(templateType));
+	// Remove a template from the model by the elements that were created when it was added
+	public void removeTemplate(Collection<? extends BioPAXElement> templateElements) {
+		model.removeTemplateElements(templateElements);
 	}
 	
-	private ControlType getControlType(String controlTypeStr) {
-		return CONTROL_TYPE_MAP.get(controlTypeStr.toUpperCase());
+	public int getElementCount() {
+		return model.getElementCount();
 	}
 	
-	private void addProteinModification(JsonObject targetProteinJson, JsonObject controllerProteinJson, String modificationType, String controlTypeStr) {
-		ControlType controlType = getControlType(controlTypeStr);
-		EntityModel targetProteinModel = gson.fromJson(targetProteinJson, EntityModel.class);
-		EntityModel controllerProteinModel = gson.fromJson(controllerProteinJson, EntityModel.class);
-		
-		model.addProteinModification(targetProteinModel, controllerProteinModel, modificationType, controlType);
+	// Number of distinct strings interned by the converter since it was created or last reset
+	public int getSymbolCount() {
+		return model.getSymbolTable().size();
 	}
 	
-	private void addMolecularInteraction(JsonArray moleculeNamesJSON) {
-		List<EntityModel> moleculeModels = gson.fromJson(moleculeNamesJSON, new TypeToken<List<EntityModel>>(){}.getType());
-		model.addMolecularInteraction(moleculeModels);
+	// Clear the model and the stats so that the converter can be reused for another conversion, the allocated
+	// capacity is kept. See ConverterPool.
+	public void reset() {
+		model.reset();
+		stats.reset();
 	}
 	
-	private void addChemicalAffectsState(JsonObject chemicalJson, JsonObject targetProteinJson, String controlTypeStr) {
-		ControlType controlType = getControlType(controlTypeStr);
-		EntityModel chemicalModel = gson.fromJson(chemicalJson, EntityModel.class);
-		EntityModel targetProteinModel = gson.fromJson(targetProteinJson, EntityModel.class);
-		
-		model.addChemicalAffectsState(chemicalModel, targetProteinModel, controlType);
+	// Limit the templates that are accepted from now on, a template that exceeds a limit or misses a field its
+	// type requires is rejected by InvalidTemplatesException before it is added
+	public void setValidationLimits(ValidationLimits limits) {
+		validator = new TemplatesValidator(limits);
 	}
 	
-	private void addProteinControlsState(JsonObject controllerProteinJson, JsonObject targetProteinJson, String controlTypeStr) {
-		ControlType controlType = getControlType(controlTypeStr);
-		EntityModel controllerProteinModel = gson.fromJson(controllerProteinJson, EntityModel.class);
-		EntityModel targetProteinModel = gson.fromJson(targetProteinJson, EntityModel.class);
-		
-		model.addProteinControlsState(controllerProteinModel, targetProteinModel, controlType);
+	// Select the writer the model is converted to owl by, Paxtools writer is used by default
+	public void setOwlWriterType(OwlWriterType owlWriterType) {
+		model.setOwlWriterType(owlWriterType);
 	}
 	
-	private void addRegulationOfExpression(JsonObject transcriptionFactorJson, JsonObject targetProtJson, String controlTypeStr) {
-		ControlType controlType = getControlType(controlTypeStr);
-		EntityModel transcriptionFactorModel = gson.fromJson(transcriptionFactorJson, EntityModel.class);
-		EntityModel targetProtModel = gson.fromJson(targetProtJson, EntityModel.class);
-		
-		model.addRegulationOfExpression(transcriptionFactorModel, targetProtModel, controlType);
+	// Get the counts and timings of the work done by this converter so far
+	public ConversionStats getStats() {
+		return stats;
 	}
 	
-	private void addProteinControlsConsumption(JsonObject controllerProteinJson, JsonObject chemicalJson) {
-		EntityModel controllerProteinModel = gson.fromJson(controllerProteinJson, EntityModel.class);
-		EntityModel chemicalModel = gson.fromJson(chemicalJson, EntityModel.class);
+	public String convertToOwl() {
+		long serializeStart = System.nanoTime();
+		String owl = model.convertToOwl();
+		stats.addSerializeNanos(System.nanoTime() - serializeStart);
 		
-		model.addProteinControlsConsumption(controllerProteinModel, chemicalModel);
+		return owl;
 	}
 	
-	private void addProteinControlsProduction(JsonObject controllerProteinJson, JsonObject chemicalJson) {
-		EntityModel controllerProteinModel = gson.fromJson(controllerProteinJson, EntityModel.class);
-		EntityModel chemicalModel = gson.fromJson(chemicalJson, EntityModel.class);
-		
-		model.addProteinControlsProduction(controllerProteinModel, chemicalModel);
+	// Stream the owl into the given output stream, the stream is flushed but not closed
+	public void convertToOwl(OutputStream out) {
+		long serializeStart = System.nanoTime();
+		model.convertToOwl(out);
+		stats.addSerializeNanos(System.nanoTime() - serializeStart);
 	}
 	
-	private static Map<String, ControlType> createControlTypeMap() {
-		Map<String, ControlType> map = new HashMap<String, ControlType>();
-		map.put("ACTIVATION", ControlType.ACTIVATION);
-		map.put("INHIBITION", ControlType.INHIBITION);
+	// Section: private helper methods
+	
+	private void addToModel(JsonObject template, TemplatesModel targetModel, Gson targetGson, ConversionStats targetStats) {
+		
+		String typeStr = template.get("type").getAsString();
+		TemplateHandlerRegistry.Entry entry = handlerRegistry.getEntry(typeStr);
 		
-		return map;
+		if (entry == null) {
+			targetStats.countUnknownTemplate();
+			return;
+		}
+		
+		long buildStart = System.nanoTime();
+		entry.getHandler().addToModel(template, targetModel, targetGson);
+		targetStats.addBuildNanos(System.nanoTime() - buildStart);
+		targetStats.countTemplate(entry.getTypeName());
 	}
 	
-	private static enum TemplateType {
-		PROTEIN_MODIFICATION("Protein Modification"),
-		MOLECULAR_INTERACTION("Molecular Interaction"),
-		PROTEIN_CONTROLS_STATE("Protein Controls State"),
-		CHEMICAL_AFFECTS_STATE("Chemical Affects State"),
-		EXPRESSION_REGULATION("Expression Regulation"),
-		PROTEIN_CONTROLS_CONSUMPTION("Protein Controls Consumption"),
-		PROTEIN_CONTROLS_PRODUCTION("Protein Controls Production");
-			
-		private String name;
+	// Add the given templates to a new shard model, runs on a pool thread so it touches nothing but the shard
+	private Shard buildShard(List<JsonObject> templates) {
+		Shard shard = new Shard();
 		
-		TemplateType(String name) {
-			this.name = name;
+		for (JsonObject template : templates) {
+			addToModel(template, shard.model, shard.gson, shard.stats);
 		}
 		
-		public String getName() {
-			return name;
+		return shard;
+	}
+	
+	private void mergeShard(Shard shard) {
+		long mergeStart = System.nanoTime();
+		model.merge(shard.model);
+		stats.addBuildNanos(System.nanoTime() - mergeStart);
+		stats.add(shard.stats);
+	}
+	
+	// Template fields are read by a gson that interns their strings by the symbol table of the model
+	private static Gson createGson(SymbolTable symbolTable) {
+		return new GsonBuilder().registerTypeAdapter(String.class, new InterningStringAdapter(symbolTable)).create();
+	}
+	
+	private static void cancel(Collection<ForkJoinTask<Shard>> pendingShards) {
+		for (ForkJoinTask<Shard> pendingShard : pendingShards) {
+			pendingShard.cancel(false);
 		}
+	}
+	
+	/*
+	 * A model built from a part of the templates together with the counts and timings of building it.
+	 */
+	private static class Shard {
 		
-		public String toString() {
-			return getName();
-		}
+		private TemplatesModel model = TemplatesModel.createShard();
+		private Gson gson = createGson(model.getSymbolTable());
+		private ConversionStats stats = new ConversionStats();
 	}
 	
-	private static final Map<String, ControlType> CONTROL_TYPE_MAP = createControlTypeMap();
+	private static final TemplateHandlerRegistry DEFAULT_HANDLER_REGISTRY = TemplateHandlerRegistry.createDefault();
+	
+	// Version of the owl the converter writes for given templates, to be raised by a change that changes the owl, so
+	// that results persisted by an older version are not served
+	public static final int OUTPUT_VERSION = 1;
+	
+	// Shards per pool worker so that workers that finish early can pick up more work
+	private static final int SHARDS_PER_WORKER = 4;
+	
+	// Below this many templates a shard is not worth the cost of merging it
+	private static final int MIN_SHARD_SIZE = 64;
+	
+	// Number of templates in a shard when the templates are streamed and the total count is not known
+	private static final int STREAMED_SHARD_SIZE = 1024;
 	
 	public static void main(String[] args) throws FileNotFoundException {
 		
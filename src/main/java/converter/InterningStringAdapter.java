@@ -0,0 +1,38 @@
+package converter;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import model.SymbolTable;
+
+/*
+ * Gson adapter that interns the strings it reads by a symbol table, so that the names, xref ids and namespaces
+ * of the templates are kept as a single instance each however many templates they appear in.
+ */
+class InterningStringAdapter extends TypeAdapter<String> {
+	
+	private SymbolTable symbolTable;
+	
+	InterningStringAdapter(SymbolTable symbolTable) {
+		this.symbolTable = symbolTable;
+	}
+	
+	@Override
+	public String read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		
+		return symbolTable.intern(in.nextString());
+	}
+	
+	@Override
+	public void write(JsonWriter out, String value) throws IOException {
+		out.value(value);
+	}
+}
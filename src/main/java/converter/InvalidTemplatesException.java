@@ -0,0 +1,12 @@
+package converter;
+
+/*
+ * Thrown when a templates array is valid JSON but does not have the fields its template types require.
+ */
+public class InvalidTemplatesException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+	
+	public InvalidTemplatesException(String message) {
+		super(message);
+	}
+}
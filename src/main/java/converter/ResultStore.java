@@ -0,0 +1,396 @@
+package converter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/*
+ * A persistent store of conversion results keyed by the content hash of the templates (see TemplatesDigest), so
+ * that conversion work survives restarts. Each result is kept gzip compressed in its own file under the store
+ * directory and is read back through a memory mapped file, compressed results can be sent as they are to clients
+ * that accept gzip.
+ *
+ * Results are written to a temporary file that is synced and moved into place, so a crash leaves either the whole
+ * result or no result behind, and temporary files of an interrupted write are removed when the store is opened.
+ * Results are evicted in least recently used order when their total compressed size exceeds the byte budget.
+ * The order is kept in memory and saved as the modification times of the files, so it survives restarts too.
+ * A hit never touches the disk, the files of the results that were hit are only touched by saveAccessTimes, which
+ * the writer of the store runs after each write, so that a store the server cannot modify is still served.
+ */
+public class ResultStore {
+	
+	private Path directory;
+	private long maxBytes;
+	private long currentBytes;
+	
+	// Map of content hash to compressed size of the stored result in access order, least recently used comes first
+	private LinkedHashMap<String, Long> entries;
+	// Keys of the results that were hit since the access times were last saved, in access order
+	private LinkedHashSet<String> accessedKeys;
+	
+	private AtomicLong hitCount;
+	private AtomicLong missCount;
+	private AtomicLong evictionCount;
+	
+	// Open the store in the given directory and index the results that are already in it
+	public ResultStore(Path directory, long maxBytes) throws IOException {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		
+		entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		accessedKeys = new LinkedHashSet<String>();
+		
+		hitCount = new AtomicLong();
+		missCount = new AtomicLong();
+		evictionCount = new AtomicLong();
+		
+		Files.createDirectories(directory);
+		load();
+	}
+	
+	// Section: public methods
+	
+	// Get the stored result for the given content hash decompressed or null if it is not stored
+	public byte[] get(String key) {
+		ByteBuffer compressed = getCompressed(key);
+		
+		if (compressed == null) {
+			return null;
+		}
+		
+		try (InputStream in = new GZIPInputStream(new ByteBufferInputStream(compressed), BUFFER_SIZE)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.remaining() * 4);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int count;
+			
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			
+			return out.toByteArray();
+		}
+		catch (ZipException e) {
+			// the file is damaged, it is dropped and converted again
+			remove(key);
+			return null;
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Stored result " + key + " cannot be read", e);
+		}
+	}
+	
+	// Get the stored result for the given content hash as the read only mapped gzip bytes or null if it is not stored
+	public ByteBuffer getCompressed(String key) {
+		if (!isValidKey(key)) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		
+		synchronized (this) {
+			if (entries.get(key) == null) {
+				missCount.incrementAndGet();
+				return null;
+			}
+			
+			accessedKeys.remove(key);
+			accessedKeys.add(key);
+		}
+		
+		try (FileChannel channel = FileChannel.open(getFile(key), StandardOpenOption.READ)) {
+			ByteBuffer compressed = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			hitCount.incrementAndGet();
+			
+			return compressed;
+		}
+		catch (NoSuchFileException e) {
+			// evicted since it was looked up
+			missCount.incrementAndGet();
+			return null;
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Stored result " + key + " cannot be read", e);
+		}
+	}
+	
+	// Store the result for the given content hash, results whose compressed size exceeds the budget are not stored
+	public void put(String key, byte[] result) throws IOException {
+		if (!isValidKey(key)) {
+			throw new IllegalArgumentException("Result key is expected to be a hex encoded hash but it is '" + key + "'");
+		}
+		
+		Path file = getFile(key);
+		Files.createDirectories(file.getParent());
+		Path temporaryFile = Files.createTempFile(file.getParent(), key, TEMPORARY_SUFFIX);
+		long size;
+		
+		try {
+			try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+				try (OutputStream out = new GZIPOutputStream(new ChannelOutputStream(channel), BUFFER_SIZE)) {
+					out.write(result);
+				}
+				
+				// the result must be on disk before it becomes visible under its final name
+				channel.force(true);
+				size = channel.size();
+			}
+			
+			if (size > maxBytes) {
+				return;
+			}
+			
+			move(temporaryFile, file);
+		}
+		finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+		
+		synchronized (this) {
+			Long previous = entries.put(key, size);
+			
+			if (previous != null) {
+				currentBytes -= previous;
+			}
+			
+			currentBytes += size;
+			evictOverBudget();
+		}
+		
+		saveAccessTimes();
+	}
+	
+	// Save the recency of the results that were hit as their modification times, in the order they were hit. A file
+	// whose time cannot be set, e.g. since the store is read only, keeps its older time and is only ordered by it
+	// after a restart.
+	public void saveAccessTimes() {
+		List<String> keys;
+		
+		synchronized (this) {
+			keys = new ArrayList<String>(accessedKeys);
+			accessedKeys.clear();
+		}
+		
+		long time = System.currentTimeMillis();
+		
+		for (String key : keys) {
+			try {
+				Files.setLastModifiedTime(getFile(key), FileTime.fromMillis(time++));
+			}
+			catch (IOException e) {
+				// evicted meanwhile or not writable, the order in memory is kept either way
+			}
+		}
+	}
+	
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+	
+	// Compressed size of the stored results
+	public synchronized long getCurrentBytes() {
+		return currentBytes;
+	}
+	
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+	
+	public long getHitCount() {
+		return hitCount.get();
+	}
+	
+	public long getMissCount() {
+		return missCount.get();
+	}
+	
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+	
+	// Check that the key is a hex encoded hash like TemplatesDigest gives, so that it is safe as a file name
+	public static boolean isValidKey(String key) {
+		return key != null && KEY_PATTERN.matcher(key).matches();
+	}
+	
+	// Section: private helper methods
+	
+	// Index the stored results from the least to the most recently used one and remove leftover temporary files
+	private void load() throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		
+		try (Stream<Path> paths = Files.walk(directory, 2)) {
+			for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+				String name = path.getFileName().toString();
+				
+				if (name.endsWith(TEMPORARY_SUFFIX)) {
+					Files.deleteIfExists(path);
+				}
+				else if (name.endsWith(RESULT_SUFFIX) && isValidKey(getKey(path))) {
+					files.add(path);
+				}
+			}
+		}
+		
+		files.sort(Comparator.comparing(ResultStore::getLastModifiedTime));
+		
+		synchronized (this) {
+			for (Path file : files) {
+				long size = Files.size(file);
+				entries.put(getKey(file), size);
+				currentBytes += size;
+			}
+			
+			evictOverBudget();
+		}
+	}
+	
+	// Remove the least recently used results until the stored results fit the budget again
+	private void evictOverBudget() {
+		Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+		
+		while (currentBytes > maxBytes && it.hasNext()) {
+			Map.Entry<String, Long> eldest = it.next();
+			currentBytes -= eldest.getValue();
+			it.remove();
+			evictionCount.incrementAndGet();
+			deleteQuietly(getFile(eldest.getKey()));
+		}
+	}
+	
+	private synchronized void remove(String key) {
+		Long size = entries.remove(key);
+		
+		if (size != null) {
+			currentBytes -= size;
+			deleteQuietly(getFile(key));
+		}
+	}
+	
+	// Results are spread over subdirectories by the first two characters of the hash to keep directories small
+	private Path getFile(String key) {
+		return directory.resolve(key.substring(0, 2)).resolve(key + RESULT_SUFFIX);
+	}
+	
+	private static String getKey(Path file) {
+		String name = file.getFileName().toString();
+		
+		return name.substring(0, name.length() - RESULT_SUFFIX.length());
+	}
+	
+	private static FileTime getLastModifiedTime(Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		}
+		catch (IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+	
+	// Replace the target by the source file, atomically where the file system supports it
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	// A result that cannot be deleted now is only dropped from the index, it is indexed again on the next start
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		}
+		catch (IOException e) {
+			// ignored
+		}
+	}
+	
+	// Section: static variables
+	
+	private static final String RESULT_SUFFIX = ".owl.gz";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+	private static final int BUFFER_SIZE = 8192;
+	
+	private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{16,128}");
+	
+	// Section: helper classes
+	
+	/*
+	 * Input stream that reads the remaining bytes of a buffer.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		
+		private ByteBuffer buffer;
+		
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			
+			int count = Math.min(len, buffer.remaining());
+			buffer.get(b, off, count);
+			
+			return count;
+		}
+	}
+	
+	/*
+	 * Output stream that writes to a file channel.
+	 */
+	private static class ChannelOutputStream extends OutputStream {
+		
+		private FileChannel channel;
+		
+		ChannelOutputStream(FileChannel channel) {
+			this.channel = channel;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+			
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+}
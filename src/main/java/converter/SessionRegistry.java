@@ -0,0 +1,145 @@
+package converter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Keeps the open conversion sessions in memory. Sessions that are not accessed for longer than the TTL
+ * are closed, and least recently used sessions are closed when the total number of BioPAX elements
+ * held by the sessions exceeds the element budget. Each string that a session interns counts as an element,
+ * since a session keeps its strings until it is closed even once the templates that used them are removed, so
+ * a long lived session that keeps replacing its templates is still closed in time. The element total is kept
+ * up to date as sessions change rather than summed over the sessions, so neither the registry lock nor the lock
+ * of a session being converted is held to check the budget.
+ */
+public class SessionRegistry {
+	
+	private long ttlMillis;
+	private long maxElements;
+	private ValidationLimits limits;
+	
+	// Map of session id to session in access order, least recently used session comes first
+	private LinkedHashMap<String, ConversionSession> sessions;
+	// Total number of elements and interned strings held by the open sessions
+	private AtomicLong elementCount;
+	
+	public SessionRegistry(long ttlMillis, long maxElements) {
+		this(ttlMillis, maxElements, ValidationLimits.DEFAULT);
+	}
+	
+	// Templates of the sessions are checked against the given limits
+	public SessionRegistry(long ttlMillis, long maxElements, ValidationLimits limits) {
+		this.ttlMillis = ttlMillis;
+		this.maxElements = maxElements;
+		this.limits = limits;
+		
+		sessions = new LinkedHashMap<String, ConversionSession>(16, 0.75f, true);
+		elementCount = new AtomicLong();
+	}
+	
+	// Section: public methods
+	
+	public synchronized ConversionSession open() {
+		expireSessions();
+		
+		ConversionSession session = new ConversionSession(UUID.randomUUID().toString(), limits);
+		sessions.put(session.getId(), session);
+		
+		return session;
+	}
+	
+	// Get the session with the given id or null if there is no such open session
+	public synchronized ConversionSession get(String id) {
+		expireSessions();
+		
+		return sessions.get(id);
+	}
+	
+	public synchronized boolean close(String id) {
+		ConversionSession session = sessions.remove(id);
+		
+		if (session == null) {
+			return false;
+		}
+		
+		discount(session);
+		return true;
+	}
+	
+	// Account the element count of the given session after it is changed and close least recently used sessions
+	// until the sessions fit the element budget, the given session is kept so that a session that is just
+	// updated is not closed under its client
+	public void enforceElementBudget(ConversionSession changedSession) {
+		account(changedSession);
+		
+		if (elementCount.get() <= maxElements) {
+			return;
+		}
+		
+		synchronized (this) {
+			Iterator<ConversionSession> it = sessions.values().iterator();
+			
+			while (elementCount.get() > maxElements && it.hasNext()) {
+				ConversionSession session = it.next();
+				
+				if (session != changedSession) {
+					it.remove();
+					discount(session);
+				}
+			}
+		}
+	}
+	
+	public synchronized int getSessionCount() {
+		return sessions.size();
+	}
+	
+	public long getElementCount() {
+		return elementCount.get();
+	}
+	
+	// Section: private helper methods
+	
+	// Close the sessions that are idle for longer than the TTL, since the map is in access order only the
+	// stale sessions at the head of it need to be visited
+	private void expireSessions() {
+		long expirationTime = System.currentTimeMillis() - ttlMillis;
+		Iterator<ConversionSession> it = sessions.values().iterator();
+		
+		while (it.hasNext()) {
+			ConversionSession session = it.next();
+			
+			if (session.getLastAccessTime() >= expirationTime) {
+				break;
+			}
+			
+			it.remove();
+			discount(session);
+		}
+	}
+	
+	// Add the change of the element count of a session since it was last accounted to the total. A session that
+	// is closed meanwhile is discounted again, whichever of the two comes last leaves it out of the total.
+	private void account(ConversionSession session) {
+		int sessionElementCount;
+		
+		// a concurrent change can account an older count last, so repeat until the latest count is accounted
+		do {
+			sessionElementCount = session.getRetainedCount();
+			int previousCount = session.getAccountedElementCount().getAndSet(sessionElementCount);
+			elementCount.addAndGet(sessionElementCount - previousCount);
+		} while (sessionElementCount != session.getRetainedCount());
+		
+		if (session.isClosed()) {
+			discount(session);
+		}
+	}
+	
+	// Take the elements of a session that is removed from the registry out of the total
+	private void discount(ConversionSession session) {
+		session.markClosed();
+		elementCount.addAndGet(-session.getAccountedElementCount().getAndSet(0));
+	}
+}
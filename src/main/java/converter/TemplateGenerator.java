@@ -0,0 +1,215 @@
+package converter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/*
+ * Generator of synthetic factoid templates for benchmarks and load tests. Templates are generated from a seeded
+ * random source, so the same seed and parameters always give the same templates and results can be compared
+ * between runs. Entities are picked from fixed pools of proteins and chemicals, the smaller the pools are the
+ * more often entities are repeated between templates. By default template types and entities are picked uniformly,
+ * a template type mix and a Zipf skew over the entities can be set to get closer to real documents where a few
+ * well known proteins take part in most of the interactions.
+ */
+public class TemplateGenerator {
+	
+	private Random random;
+	private int proteinPoolSize;
+	private int chemicalPoolSize;
+	
+	// Cumulative weights of template types in TEMPLATE_TYPES order, null to pick the types uniformly
+	private double[] templateTypeCdf;
+	// Cumulative probabilities of entity indexes by their Zipf rank, null to pick the entities uniformly
+	private double[] proteinCdf;
+	private double[] chemicalCdf;
+	
+	public TemplateGenerator(long seed) {
+		this(seed, DEFAULT_POOL_SIZE, DEFAULT_POOL_SIZE);
+	}
+	
+	public TemplateGenerator(long seed, int proteinPoolSize, int chemicalPoolSize) {
+		random = new Random(seed);
+		this.proteinPoolSize = proteinPoolSize;
+		this.chemicalPoolSize = chemicalPoolSize;
+	}
+	
+	// Section: public methods
+	
+	// Set the relative weights of template types, types that are not in the map are not generated
+	public void setTemplateTypeMix(Map<TemplateType, Double> weights) {
+		double[] cdf = new double[TEMPLATE_TYPES.length];
+		double total = 0;
+		
+		for (int i = 0; i < TEMPLATE_TYPES.length; i++) {
+			Double weight = weights.get(TEMPLATE_TYPES[i]);
+			total += weight == null ? 0 : weight;
+			cdf[i] = total;
+		}
+		
+		if (total <= 0) {
+			throw new IllegalArgumentException("At least one template type must have a positive weight");
+		}
+		
+		templateTypeCdf = cdf;
+	}
+	
+	// Set the Zipf exponent of picking proteins and chemicals (and so their xrefs) from the pools, the entity of
+	// rank k is picked with probability proportional to 1 / k^exponent, 0 picks the entities uniformly
+	public void setEntitySkew(double exponent) {
+		if (exponent < 0) {
+			throw new IllegalArgumentException("Zipf exponent must not be negative: " + exponent);
+		}
+		
+		proteinCdf = exponent == 0 ? null : createZipfCdf(proteinPoolSize, exponent);
+		chemicalCdf = exponent == 0 ? null : createZipfCdf(chemicalPoolSize, exponent);
+	}
+	
+	// Generate a templates array with a size picked uniformly between the given bounds, both inclusive
+	public JsonArray generateDocument(int minTemplateCount, int maxTemplateCount) {
+		return generateDocument(minTemplateCount + random.nextInt(maxTemplateCount - minTemplateCount + 1));
+	}
+	
+	// Generate a templates array of the given size where template types are picked by the template type mix
+	public JsonArray generateDocument(int templateCount) {
+		JsonArray templates = new JsonArray();
+		
+		for (int i = 0; i < templateCount; i++) {
+			templates.add(generateTemplate());
+		}
+		
+		return templates;
+	}
+	
+	// Generate a templates array of the given size where all templates are of the given type
+	public JsonArray generateDocument(TemplateType type, int templateCount) {
+		JsonArray templates = new JsonArray();
+		
+		for (int i = 0; i < templateCount; i++) {
+			templates.add(generateTemplate(type));
+		}
+		
+		return templates;
+	}
+	
+	public JsonObject generateTemplate() {
+		int typeIndex = templateTypeCdf == null ? random.nextInt(TEMPLATE_TYPES.length) : pickIndex(templateTypeCdf);
+		return generateTemplate(TEMPLATE_TYPES[typeIndex]);
+	}
+	
+	public JsonObject generateTemplate(TemplateType type) {
+		JsonObject template = new JsonObject();
+		template.addProperty("type", type.getName());
+		
+		switch (type) {
+		case PROTEIN_MODIFICATION:
+			template.add("controllerProtein", generateProtein());
+			template.add("targetProtein", generateProtein());
+			template.addProperty("modification", pick(MODIFICATION_TYPES));
+			template.addProperty("controlType", pick(CONTROL_TYPES));
+			break;
+		case MOLECULAR_INTERACTION:
+			JsonArray molecules = new JsonArray();
+			int moleculeCount = MIN_INTERACTION_SIZE + random.nextInt(MAX_INTERACTION_SIZE - MIN_INTERACTION_SIZE + 1);
+			
+			for (int i = 0; i < moleculeCount; i++) {
+				molecules.add(generateProtein());
+			}
+			
+			template.add("moleculeList", molecules);
+			break;
+		case PROTEIN_CONTROLS_STATE:
+			template.add("controllerProtein", generateProtein());
+			template.add("targetProtein", generateProtein());
+			template.addProperty("controlType", pick(CONTROL_TYPES));
+			break;
+		case CHEMICAL_AFFECTS_STATE:
+			template.add("chemical", generateChemical());
+			template.add("targetProtein", generateProtein());
+			template.addProperty("controlType", pick(CONTROL_TYPES));
+			break;
+		case EXPRESSION_REGULATION:
+			template.add("transcriptionFactor", generateProtein());
+			template.add("targetProtein", generateProtein());
+			template.addProperty("controlType", pick(CONTROL_TYPES));
+			break;
+		case PROTEIN_CONTROLS_CONSUMPTION:
+		case PROTEIN_CONTROLS_PRODUCTION:
+			template.add("controllerProtein", generateProtein());
+			template.add("chemical", generateChemical());
+			template.addProperty("controlType", pick(CONTROL_TYPES));
+			break;
+		}
+		
+		return template;
+	}
+	
+	// Section: private helper methods
+	
+	private JsonObject generateProtein() {
+		int index = proteinCdf == null ? random.nextInt(proteinPoolSize) : pickIndex(proteinCdf);
+		return createEntity("protein" + index, "P" + index, "uniprot");
+	}
+	
+	private JsonObject generateChemical() {
+		int index = chemicalCdf == null ? random.nextInt(chemicalPoolSize) : pickIndex(chemicalCdf);
+		return createEntity("chemical" + index, "CID" + index, "pubchem");
+	}
+	
+	private static JsonObject createEntity(String name, String xrefId, String xrefNamespace) {
+		JsonObject xref = new JsonObject();
+		xref.addProperty("id", xrefId);
+		xref.addProperty("namespace", xrefNamespace);
+		
+		JsonObject entity = new JsonObject();
+		entity.addProperty("name", name);
+		entity.add("xref", xref);
+		
+		return entity;
+	}
+	
+	private String pick(String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+	
+	// Pick an index by the given cumulative weights, the last weight is the total
+	private int pickIndex(double[] cdf) {
+		double value = random.nextDouble() * cdf[cdf.length - 1];
+		int index = Arrays.binarySearch(cdf, value);
+		index = index >= 0 ? index : -index - 1;
+		
+		// the value belongs to the first entry whose cumulative weight is above it, an exact match or
+		// zero weight entries sharing the same cumulative weight are skipped
+		while (index < cdf.length - 1 && cdf[index] <= value) {
+			index++;
+		}
+		
+		return index;
+	}
+	
+	private static double[] createZipfCdf(int size, double exponent) {
+		double[] cdf = new double[size];
+		double total = 0;
+		
+		for (int i = 0; i < size; i++) {
+			total += 1 / Math.pow(i + 1, exponent);
+			cdf[i] = total;
+		}
+		
+		return cdf;
+	}
+	
+	// Section: static variables
+	
+	private static final TemplateType[] TEMPLATE_TYPES = TemplateType.values();
+	
+	private static final String[] CONTROL_TYPES = { "activation", "inhibition" };
+	private static final String[] MODIFICATION_TYPES = { "phosphorylated", "methylated", "ubiquitinated", "acetylated" };
+	
+	private static final int DEFAULT_POOL_SIZE = 1000;
+	private static final int MIN_INTERACTION_SIZE = 2;
+	private static final int MAX_INTERACTION_SIZE = 4;
+}
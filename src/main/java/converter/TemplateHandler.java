@@ -0,0 +1,18 @@
+package converter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import model.TemplatesModel;
+
+/*
+ * Adds templates of a certain type to a templates model. A handler extracts the fields of the template it needs
+ * and calls the related method of the model. Handlers are registered by the name of the template type they handle
+ * in a TemplateHandlerRegistry.
+ */
+@FunctionalInterface
+public interface TemplateHandler {
+	
+	// Add the template to the model, gson is the one of the converter to bind entity JSON objects
+	void addToModel(JsonObject template, TemplatesModel model, Gson gson);
+}
@@ -0,0 +1,95 @@
+package converter;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * Registry of template handlers by the template type names they handle. Type names are matched case insensitively
+ * by a single map lookup, exact names are looked up first to avoid normalizing the names that are already in the
+ * registered case.
+ */
+public class TemplateHandlerRegistry {
+	
+	// Map of template type name as registered to handler entry
+	private Map<String, Entry> handlers;
+	// Map of lower case template type name to handler entry
+	private Map<String, Entry> normalizedHandlers;
+	
+	public TemplateHandlerRegistry() {
+		handlers = new HashMap<String, Entry>();
+		normalizedHandlers = new HashMap<String, Entry>();
+	}
+	
+	// Create a registry that has the handlers of all template types supported by default
+	public static TemplateHandlerRegistry createDefault() {
+		TemplateHandlerRegistry registry = new TemplateHandlerRegistry();
+		
+		registry.register(TemplateType.PROTEIN_MODIFICATION, DefaultTemplateHandlers::addProteinModification);
+		registry.register(TemplateType.MOLECULAR_INTERACTION, DefaultTemplateHandlers::addMolecularInteraction);
+		registry.register(TemplateType.PROTEIN_CONTROLS_STATE, DefaultTemplateHandlers::addProteinControlsState);
+		registry.register(TemplateType.CHEMICAL_AFFECTS_STATE, DefaultTemplateHandlers::addChemicalAffectsState);
+		registry.register(TemplateType.EXPRESSION_REGULATION, DefaultTemplateHandlers::addRegulationOfExpression);
+		registry.register(TemplateType.PROTEIN_CONTROLS_CONSUMPTION, DefaultTemplateHandlers::addProteinControlsConsumption);
+		registry.register(TemplateType.PROTEIN_CONTROLS_PRODUCTION, DefaultTemplateHandlers::addProteinControlsProduction);
+		
+		return registry;
+	}
+	
+	public void register(TemplateType templateType, TemplateHandler handler) {
+		register(templateType.getName(), handler);
+	}
+	
+	// Register a handler for the template type with the given name, replaces the handler registered before if any
+	public void register(String typeName, TemplateHandler handler) {
+		Entry entry = new Entry(typeName, handler);
+		
+		handlers.put(typeName, entry);
+		normalizedHandlers.put(normalize(typeName), entry);
+	}
+	
+	// Get the handler for the given template type name or null if the type is not supported
+	public TemplateHandler getHandler(String typeName) {
+		Entry entry = getEntry(typeName);
+		
+		return entry == null ? null : entry.getHandler();
+	}
+	
+	// Get the handler entry for the given template type name or null if the type is not supported, the entry
+	// has the type name as registered whatever the case of the given name is
+	public Entry getEntry(String typeName) {
+		Entry entry = handlers.get(typeName);
+		
+		if (entry == null) {
+			entry = normalizedHandlers.get(normalize(typeName));
+		}
+		
+		return entry;
+	}
+	
+	private static String normalize(String typeName) {
+		return typeName.toLowerCase(Locale.ROOT);
+	}
+	
+	/*
+	 * A registered handler together with the type name it is registered by.
+	 */
+	public static class Entry {
+		
+		private String typeName;
+		private TemplateHandler handler;
+		
+		Entry(String typeName, TemplateHandler handler) {
+			this.typeName = typeName;
+			this.handler = handler;
+		}
+		
+		public String getTypeName() {
+			return typeName;
+		}
+		
+		public TemplateHandler getHandler() {
+			return handler;
+		}
+	}
+}
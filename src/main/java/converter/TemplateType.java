@@ -0,0 +1,28 @@
+package converter;
+
+/*
+ * Types of the factoid templates that are supported by the converter, by the names they have in factoid documents.
+ */
+public enum TemplateType {
+	PROTEIN_MODIFICATION("Protein Modification"),
+	MOLECULAR_INTERACTION("Molecular Interaction"),
+	PROTEIN_CONTROLS_STATE("Protein Controls State"),
+	CHEMICAL_AFFECTS_STATE("Chemical Affects State"),
+	EXPRESSION_REGULATION("Expression Regulation"),
+	PROTEIN_CONTROLS_CONSUMPTION("Protein Controls Consumption"),
+	PROTEIN_CONTROLS_PRODUCTION("Protein Controls Production");
+		
+	private String name;
+	
+	TemplateType(String name) {
+		this.name = name;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public String toString() {
+		return getName();
+	}
+}
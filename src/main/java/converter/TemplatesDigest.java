@@ -0,0 +1,168 @@
+package converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/*
+ * Computes a content hash of a templates array that does not depend on the formatting of the JSON.
+ * Templates are read one at a time and written in a canonical form, where object members are sorted
+ * by their names and no whitespace is used, into a SHA-256 digest.
+ */
+public class TemplatesDigest {
+	
+	private TemplatesDigest() {
+	}
+	
+	// Get hex encoded hash of the templates array read by the given reader
+	public static String digest(Reader contentReader) {
+		MessageDigest messageDigest = createMessageDigest();
+		JsonParser jsonParser = new JsonParser();
+		
+		try {
+			JsonReader jsonReader = new JsonReader(contentReader);
+			JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(new DigestOutputStream(messageDigest), StandardCharsets.UTF_8));
+			
+			TemplatesValidator.beginTemplates(jsonReader);
+			jsonWriter.beginArray();
+			
+			while (jsonReader.hasNext()) {
+				writeCanonical(jsonParser.parse(jsonReader), jsonWriter);
+			}
+			
+			jsonReader.endArray();
+			jsonWriter.endArray();
+			jsonWriter.flush();
+		}
+		catch (IOException e) {
+			throw TemplatesValidator.toJsonException(e);
+		}
+		
+		return toHex(messageDigest.digest());
+	}
+	
+	// Get hex encoded hash of the templates array that is read already, it is the same as the hash of its content
+	public static String digest(JsonArray templates) {
+		MessageDigest messageDigest = createMessageDigest();
+		
+		try {
+			JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(new DigestOutputStream(messageDigest), StandardCharsets.UTF_8));
+			writeCanonical(templates, jsonWriter);
+			jsonWriter.flush();
+		}
+		catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+		
+		return toHex(messageDigest.digest());
+	}
+	
+	// Get the canonical JSON form of the given element where object members are sorted by their names
+	public static String canonicalize(JsonElement element) {
+		StringWriter writer = new StringWriter();
+		
+		try {
+			writeCanonical(element, new JsonWriter(writer));
+		}
+		catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+		
+		return writer.toString();
+	}
+	
+	// Section: private helper methods
+	
+	// Write the element with sorted object members so that member order does not affect the hash
+	private static void writeCanonical(JsonElement element, JsonWriter jsonWriter) throws IOException {
+		if (element.isJsonObject()) {
+			JsonObject object = element.getAsJsonObject();
+			List<Map.Entry<String, JsonElement>> members = new ArrayList<Map.Entry<String, JsonElement>>(object.entrySet());
+			members.sort(Map.Entry.comparingByKey());
+			
+			jsonWriter.beginObject();
+			for (Map.Entry<String, JsonElement> member : members) {
+				jsonWriter.name(member.getKey());
+				writeCanonical(member.getValue(), jsonWriter);
+			}
+			jsonWriter.endObject();
+		}
+		else if (element.isJsonArray()) {
+			JsonArray array = element.getAsJsonArray();
+			
+			jsonWriter.beginArray();
+			for (JsonElement item : array) {
+				writeCanonical(item, jsonWriter);
+			}
+			jsonWriter.endArray();
+		}
+		else if (element.isJsonNull()) {
+			jsonWriter.nullValue();
+		}
+		else {
+			jsonWriter.jsonValue(element.toString());
+		}
+	}
+	
+	private static MessageDigest createMessageDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(DIGEST_ALGORITHM + " is expected to be supported by every JVM", e);
+		}
+	}
+	
+	static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		
+		for (byte b : bytes) {
+			sb.append(HEX_DIGITS[(b >> 4) & 0xF]);
+			sb.append(HEX_DIGITS[b & 0xF]);
+		}
+		
+		return sb.toString();
+	}
+	
+	// Output stream that just updates the digest by the bytes written
+	private static class DigestOutputStream extends OutputStream {
+		
+		private MessageDigest messageDigest;
+		
+		public DigestOutputStream(MessageDigest messageDigest) {
+			this.messageDigest = messageDigest;
+		}
+		
+		@Override
+		public void write(int b) {
+			messageDigest.update((byte) b);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			messageDigest.update(b, off, len);
+		}
+	}
+	
+	// Section: static variables
+	
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+}
@@ -0,0 +1,12 @@
+package converter;
+
+/*
+ * Thrown when a templates array exceeds one of the configured ValidationLimits.
+ */
+public class TemplatesLimitException extends InvalidTemplatesException {
+	private static final long serialVersionUID = 1L;
+	
+	public TemplatesLimitException(String message) {
+		super(message);
+	}
+}
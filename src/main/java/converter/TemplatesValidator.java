@@ -0,0 +1,345 @@
+package converter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/*
+ * Checks templates while they are read, so that a malformed template is rejected with a precise message before
+ * it is added to the model rather than failing somewhere inside a template handler. Templates of the types in
+ * TemplateType are checked for the fields their handlers use, templates of any other type only need a type.
+ * Nesting depth is checked while reading and the template count and molecule list length once a template is read.
+ */
+public class TemplatesValidator {
+	
+	private ValidationLimits limits;
+	
+	public TemplatesValidator(ValidationLimits limits) {
+		this.limits = limits;
+	}
+	
+	// Section: public methods
+	
+	// Read and check a whole templates array without building a model, so that content that is in memory already
+	// is rejected before any of its templates is built. Content after the array is rejected.
+	public JsonArray readTemplates(Reader contentReader) {
+		JsonReader jsonReader = new JsonReader(contentReader);
+		
+		try {
+			JsonArray templates = readTemplates(jsonReader);
+			endDocument(jsonReader);
+			
+			return templates;
+		}
+		catch (IOException e) {
+			throw toJsonException(e);
+		}
+	}
+	
+	// Read and check the templates array that the reader is at
+	public JsonArray readTemplates(JsonReader jsonReader) throws IOException {
+		JsonArray templates = new JsonArray();
+		beginTemplates(jsonReader);
+		
+		for (int index = 0; jsonReader.hasNext(); index++) {
+			templates.add(readTemplate(jsonReader, index));
+		}
+		
+		jsonReader.endArray();
+		
+		return templates;
+	}
+	
+	// Check all templates of the array
+	public void validate(JsonArray templates) {
+		checkTemplateCount(templates.size() - 1);
+		
+		for (int index = 0; index < templates.size(); index++) {
+			JsonElement template = templates.get(index);
+			checkDepth(template, index, TEMPLATE_DEPTH);
+			validateTemplate(template, index);
+		}
+	}
+	
+	// Read the next template of the array that the reader is in and check it, index is its position in the array
+	public JsonObject readTemplate(JsonReader jsonReader, int index) throws IOException {
+		checkTemplateCount(index);
+		
+		JsonElement template = read(jsonReader, index, TEMPLATE_DEPTH);
+		validateTemplate(template, index);
+		
+		return template.getAsJsonObject();
+	}
+	
+	// Check the fields of a template that is already read, index is its position in the array
+	public void validateTemplate(JsonElement element, int index) {
+		if (!element.isJsonObject()) {
+			throw invalid(index, null, "is not an object");
+		}
+		
+		JsonObject template = element.getAsJsonObject();
+		String typeName = getString(template, "type", index, null);
+		
+		if (typeName == null) {
+			throw invalid(index, null, "has no 'type'");
+		}
+		
+		TemplateType type = TEMPLATE_TYPES.get(typeName.toLowerCase(Locale.ROOT));
+		
+		if (type == null) {
+			return;
+		}
+		
+		for (String fieldName : ENTITY_FIELDS.get(type)) {
+			validateEntity(template.get(fieldName), index, type, fieldName);
+		}
+		
+		if (type == TemplateType.MOLECULAR_INTERACTION) {
+			validateMoleculeList(template.get("moleculeList"), index, type);
+		}
+		
+		if (type == TemplateType.PROTEIN_MODIFICATION && getString(template, "modification", index, type) == null) {
+			throw invalid(index, type, "has no 'modification'");
+		}
+		
+		if (CONTROL_TYPE_REQUIRED.get(type)) {
+			String controlType = getString(template, "controlType", index, type);
+			
+			if (controlType == null || !DefaultTemplateHandlers.isSupportedControlType(controlType)) {
+				throw invalid(index, type, "has 'controlType' " + (controlType == null ? "missing" : "'" + controlType + "'")
+						+ " but it is expected to be activation or inhibition");
+			}
+		}
+	}
+	
+	// Enter the templates array that the reader is at, content that is not an array is rejected as invalid rather
+	// than failing the reader with an IllegalStateException
+	public static void beginTemplates(JsonReader jsonReader) throws IOException {
+		if (jsonReader.peek() != JsonToken.BEGIN_ARRAY) {
+			throw new InvalidTemplatesException("Templates are expected to be an array");
+		}
+		
+		jsonReader.beginArray();
+	}
+	
+	// Check that nothing but whitespace follows the templates array, like parsing the whole document as a tree did
+	public static void endDocument(JsonReader jsonReader) throws IOException {
+		JsonToken token;
+		
+		try {
+			token = jsonReader.peek();
+		}
+		catch (MalformedJsonException e) {
+			token = null;
+		}
+		
+		if (token != JsonToken.END_DOCUMENT) {
+			throw new JsonSyntaxException("Unexpected content after the templates array");
+		}
+	}
+	
+	// Wrap a failure of reading templates, content that is malformed or ends before the array does is a syntax
+	// error of the client while any other failure is a failure of the input
+	public static JsonParseException toJsonException(IOException e) {
+		if (e instanceof MalformedJsonException || e instanceof EOFException) {
+			return new JsonSyntaxException(e);
+		}
+		
+		return new JsonIOException(e);
+	}
+	
+	// Section: private helper methods
+	
+	// Read an element like JsonParser does but stop as soon as it gets nested deeper than the limit
+	private JsonElement read(JsonReader jsonReader, int index, int depth) throws IOException {
+		switch (jsonReader.peek()) {
+			case BEGIN_OBJECT:
+				checkDepth(index, depth);
+				JsonObject object = new JsonObject();
+				
+				jsonReader.beginObject();
+				while (jsonReader.hasNext()) {
+					String name = jsonReader.nextName();
+					object.add(name, read(jsonReader, index, depth + 1));
+				}
+				jsonReader.endObject();
+				
+				return object;
+			case BEGIN_ARRAY:
+				checkDepth(index, depth);
+				JsonArray array = new JsonArray();
+				
+				jsonReader.beginArray();
+				while (jsonReader.hasNext()) {
+					array.add(read(jsonReader, index, depth + 1));
+				}
+				jsonReader.endArray();
+				
+				return array;
+			case STRING:
+				return new JsonPrimitive(jsonReader.nextString());
+			case NUMBER:
+				// kept as written like JsonParser does, so that templates read here have the same content hash
+				return new JsonPrimitive(new LazilyParsedNumber(jsonReader.nextString()));
+			case BOOLEAN:
+				return new JsonPrimitive(jsonReader.nextBoolean());
+			case NULL:
+				jsonReader.nextNull();
+				return JsonNull.INSTANCE;
+			default:
+				throw new JsonSyntaxException("Unexpected " + jsonReader.peek() + " in template " + index);
+		}
+	}
+	
+	// Check the depth of an element that is already read
+	private void checkDepth(JsonElement element, int index, int depth) {
+		if (element.isJsonObject()) {
+			checkDepth(index, depth);
+			
+			for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+				checkDepth(member.getValue(), index, depth + 1);
+			}
+		}
+		else if (element.isJsonArray()) {
+			checkDepth(index, depth);
+			
+			for (JsonElement item : element.getAsJsonArray()) {
+				checkDepth(item, index, depth + 1);
+			}
+		}
+	}
+	
+	private void checkDepth(int index, int depth) {
+		if (depth > limits.getMaxDepth()) {
+			throw new TemplatesLimitException("Template " + index + " is nested deeper than " + limits.getMaxDepth() + " levels");
+		}
+	}
+	
+	private void checkTemplateCount(int index) {
+		if (index >= limits.getMaxTemplates()) {
+			throw new TemplatesLimitException("Templates array has more than " + limits.getMaxTemplates() + " templates");
+		}
+	}
+	
+	private void validateMoleculeList(JsonElement moleculeList, int index, TemplateType type) {
+		if (moleculeList == null || !moleculeList.isJsonArray()) {
+			throw invalid(index, type, "has no 'moleculeList' array");
+		}
+		
+		JsonArray molecules = moleculeList.getAsJsonArray();
+		
+		if (molecules.size() > limits.getMaxMoleculeListLength()) {
+			throw new TemplatesLimitException("Template " + index + " has " + molecules.size() + " molecules in 'moleculeList', more than "
+					+ limits.getMaxMoleculeListLength());
+		}
+		
+		for (int i = 0; i < molecules.size(); i++) {
+			validateEntity(molecules.get(i), index, type, "moleculeList[" + i + "]");
+		}
+	}
+	
+	// An entity is an object with an optional name and an optional xref that has an id
+	private static void validateEntity(JsonElement entity, int index, TemplateType type, String fieldName) {
+		if (entity == null || !entity.isJsonObject()) {
+			throw invalid(index, type, "has no '" + fieldName + "' object");
+		}
+		
+		getString(entity.getAsJsonObject(), "name", index, type);
+		JsonElement xref = entity.getAsJsonObject().get("xref");
+		
+		if (xref == null || xref.isJsonNull()) {
+			return;
+		}
+		
+		if (!xref.isJsonObject() || getString(xref.getAsJsonObject(), "id", index, type) == null) {
+			throw invalid(index, type, "has '" + fieldName + ".xref' without an 'id'");
+		}
+		
+		getString(xref.getAsJsonObject(), "namespace", index, type);
+	}
+	
+	// Get the string member of the object, null if it is missing, or fail if it is not a string
+	private static String getString(JsonObject object, String name, int index, TemplateType type) {
+		JsonElement member = object.get(name);
+		
+		if (member == null || member.isJsonNull()) {
+			return null;
+		}
+		
+		if (!member.isJsonPrimitive() || !member.getAsJsonPrimitive().isString()) {
+			throw invalid(index, type, "has '" + name + "' that is not a string");
+		}
+		
+		return member.getAsString();
+	}
+	
+	private static InvalidTemplatesException invalid(int index, TemplateType type, String problem) {
+		String template = type == null ? "Template " + index : "Template " + index + " (" + type.getName() + ")";
+		return new InvalidTemplatesException(template + " " + problem);
+	}
+	
+	private static Map<String, TemplateType> createTemplateTypeMap() {
+		Map<String, TemplateType> map = new HashMap<String, TemplateType>();
+		
+		for (TemplateType type : TemplateType.values()) {
+			map.put(type.getName().toLowerCase(Locale.ROOT), type);
+		}
+		
+		return map;
+	}
+	
+	private static Map<TemplateType, String[]> createEntityFieldsMap() {
+		Map<TemplateType, String[]> map = new EnumMap<TemplateType, String[]>(TemplateType.class);
+		map.put(TemplateType.PROTEIN_MODIFICATION, new String[] { "targetProtein", "controllerProtein" });
+		map.put(TemplateType.MOLECULAR_INTERACTION, new String[0]);
+		map.put(TemplateType.PROTEIN_CONTROLS_STATE, new String[] { "controllerProtein", "targetProtein" });
+		map.put(TemplateType.CHEMICAL_AFFECTS_STATE, new String[] { "chemical", "targetProtein" });
+		map.put(TemplateType.EXPRESSION_REGULATION, new String[] { "transcriptionFactor", "targetProtein" });
+		map.put(TemplateType.PROTEIN_CONTROLS_CONSUMPTION, new String[] { "controllerProtein", "chemical" });
+		map.put(TemplateType.PROTEIN_CONTROLS_PRODUCTION, new String[] { "controllerProtein", "chemical" });
+		
+		return map;
+	}
+	
+	private static Map<TemplateType, Boolean> createControlTypeRequiredMap() {
+		Map<TemplateType, Boolean> map = new EnumMap<TemplateType, Boolean>(TemplateType.class);
+		
+		for (TemplateType type : TemplateType.values()) {
+			map.put(type, type != TemplateType.MOLECULAR_INTERACTION && type != TemplateType.PROTEIN_CONTROLS_CONSUMPTION
+					&& type != TemplateType.PROTEIN_CONTROLS_PRODUCTION);
+		}
+		
+		return map;
+	}
+	
+	// Section: static variables
+	
+	// Depth of a template, the templates array it is in is at depth 1
+	private static final int TEMPLATE_DEPTH = 2;
+	
+	// Map of lower case template type name to the type, names are matched case insensitively like the handlers
+	private static final Map<String, TemplateType> TEMPLATE_TYPES = createTemplateTypeMap();
+	
+	// Fields of each template type that its handler reads as entities
+	private static final Map<TemplateType, String[]> ENTITY_FIELDS = createEntityFieldsMap();
+	
+	// Whether the handler of each template type reads a control type
+	private static final Map<TemplateType, Boolean> CONTROL_TYPE_REQUIRED = createControlTypeRequiredMap();
+}
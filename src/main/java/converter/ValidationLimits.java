@@ -0,0 +1,34 @@
+package converter;
+
+/*
+ * Limits on the size of a templates array that the converter accepts, see TemplatesValidator.
+ */
+public class ValidationLimits {
+	
+	private int maxTemplates;
+	private int maxMoleculeListLength;
+	private int maxDepth;
+	
+	// Depth counts the nested arrays and objects including the templates array itself
+	public ValidationLimits(int maxTemplates, int maxMoleculeListLength, int maxDepth) {
+		this.maxTemplates = maxTemplates;
+		this.maxMoleculeListLength = maxMoleculeListLength;
+		this.maxDepth = maxDepth;
+	}
+	
+	public int getMaxTemplates() {
+		return maxTemplates;
+	}
+	
+	public int getMaxMoleculeListLength() {
+		return maxMoleculeListLength;
+	}
+	
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+	
+	// No limits on counts and a depth limit far beyond any valid template, it only keeps reading deeply nested
+	// input from exhausting the stack
+	public static final ValidationLimits DEFAULT = new ValidationLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, 64);
+}
@@ -0,0 +1,124 @@
+package converter;
+
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.function.Supplier;
+
+import com.google.gson.JsonArray;
+
+/*
+ * Synthetic warm up of the conversion pipeline. Documents that have templates of every template type are put
+ * through the whole path that a request takes, hashing, parsing, building and writing owl, so that classes are
+ * loaded, Paxtools and Gson build their reflection metadata and the JIT compiles the hot methods before the
+ * first real request pays for it. Documents are generated from a fixed seed so every start does the same work.
+ */
+public class WarmUp {
+	
+	private Supplier<FactoidToBiopax> factory;
+	private int iterations;
+	private int templatesPerType;
+	
+	private long totalNanos;
+	private long firstIterationNanos;
+	private long lastIterationNanos;
+	private long outputBytes;
+	
+	// Each iteration converts a document of the given number of templates per template type
+	public WarmUp(Supplier<FactoidToBiopax> factory, int iterations, int templatesPerType) {
+		this.factory = factory;
+		this.iterations = iterations;
+		this.templatesPerType = templatesPerType;
+	}
+	
+	// Section: public methods
+	
+	public void run() {
+		TemplateGenerator generator = new TemplateGenerator(SEED);
+		CountingOutputStream out = new CountingOutputStream();
+		
+		// the converter is reused and reset between iterations like the converter pool does, generated documents
+		// are not held to the limits of requests
+		FactoidToBiopax converter = factory.get();
+		converter.setValidationLimits(ValidationLimits.DEFAULT);
+		long start = System.nanoTime();
+		
+		for (int i = 0; i < iterations; i++) {
+			String document = generateDocument(generator);
+			long iterationStart = System.nanoTime();
+			
+			TemplatesDigest.digest(new StringReader(document));
+			converter.addToModel(document);
+			converter.convertToOwl(out);
+			converter.reset();
+			
+			long iterationNanos = System.nanoTime() - iterationStart;
+			
+			if (i == 0) {
+				firstIterationNanos = iterationNanos;
+			}
+			
+			lastIterationNanos = iterationNanos;
+		}
+		
+		totalNanos = System.nanoTime() - start;
+		outputBytes = out.count;
+	}
+	
+	public int getIterations() {
+		return iterations;
+	}
+	
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+	
+	// Time of the first iteration, the cost of a conversion on a cold start
+	public long getFirstIterationNanos() {
+		return firstIterationNanos;
+	}
+	
+	// Time of the last iteration, the cost of a similar conversion once warmed up
+	public long getLastIterationNanos() {
+		return lastIterationNanos;
+	}
+	
+	public long getOutputBytes() {
+		return outputBytes;
+	}
+	
+	// Section: private helper methods
+	
+	private String generateDocument(TemplateGenerator generator) {
+		JsonArray templates = new JsonArray();
+		
+		for (TemplateType type : TemplateType.values()) {
+			templates.addAll(generator.generateDocument(type, templatesPerType));
+		}
+		
+		return templates.toString();
+	}
+	
+	// Section: static variables
+	
+	private static final long SEED = 42;
+	
+	// Section: helper classes
+	
+	/*
+	 * Output stream that only counts the bytes written to it.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+		
+		private long count;
+		
+		@Override
+		public void write(int b) {
+			count++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
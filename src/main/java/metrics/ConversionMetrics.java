@@ -0,0 +1,252 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import converter.ConversionCache;
+import converter.ConversionStats;
+import converter.FactoidToBiopax;
+import converter.ResultStore;
+import converter.TemplateType;
+import converter.WarmUp;
+
+/*
+ * Metrics of the conversions done by the server. Converters count their own work and the result is recorded
+ * here once per conversion, so the conversion itself never touches shared state. Recording is lock free and
+ * the metrics can be written in Prometheus text format.
+ */
+public class ConversionMetrics {
+	
+	// Map of template type name to number of templates of that type converted
+	private ConcurrentMap<String, LongAdder> templateCounts;
+	private LongAdder unknownTemplateCount;
+	private LongAdder conversionCount;
+	private LongAdder failureCount;
+	private LongAdder rejectionCount;
+	
+	private Histogram requestBytes;
+	private Histogram elementCounts;
+	private Histogram parseNanos;
+	private Histogram buildNanos;
+	private Histogram serializeNanos;
+	
+	// Cache of conversion results whose counters are exported too, null if there is no cache
+	private volatile ConversionCache cache;
+	// Persistent store of conversion results whose counters are exported too, null if there is no store
+	private volatile ResultStore resultStore;
+	
+	// Warm up that ran before the server got ready, null until then
+	private volatile WarmUp warmUp;
+	// Time from the start of the JVM until the server got ready, 0 until then
+	private volatile long readyMillis;
+	
+	public ConversionMetrics() {
+		templateCounts = new ConcurrentHashMap<String, LongAdder>();
+		unknownTemplateCount = new LongAdder();
+		conversionCount = new LongAdder();
+		failureCount = new LongAdder();
+		rejectionCount = new LongAdder();
+		
+		requestBytes = new Histogram();
+		elementCounts = new Histogram();
+		parseNanos = new Histogram();
+		buildNanos = new Histogram();
+		serializeNanos = new Histogram();
+		
+		// Export the supported template types from the start even if they are not seen yet
+		for (TemplateType type : TemplateType.values()) {
+			templateCounts.put(type.getName(), new LongAdder());
+		}
+	}
+	
+	// Get the metrics shared by the servlets of the server
+	public static ConversionMetrics getInstance() {
+		return INSTANCE;
+	}
+	
+	// Section: public methods
+	
+	public void setCache(ConversionCache cache) {
+		this.cache = cache;
+	}
+	
+	public void setResultStore(ResultStore resultStore) {
+		this.resultStore = resultStore;
+	}
+	
+	// Record the cold start once the server is ready, warm up is null if it was disabled
+	public void recordReady(WarmUp warmUp, long readyMillis) {
+		this.warmUp = warmUp;
+		this.readyMillis = readyMillis;
+	}
+	
+	public void recordRequestBytes(long bytes) {
+		requestBytes.record(bytes);
+	}
+	
+	// Record the counts and timings of the given converter once it is done with the conversion
+	public void recordConversion(FactoidToBiopax converter) {
+		ConversionStats stats = converter.getStats();
+		
+		for (Map.Entry<String, Integer> entry : stats.getTemplateCounts().entrySet()) {
+			templateCounts.computeIfAbsent(entry.getKey(), typeName -> new LongAdder()).add(entry.getValue());
+		}
+		
+		unknownTemplateCount.add(stats.getUnknownTemplateCount());
+		conversionCount.increment();
+		
+		elementCounts.record(converter.getElementCount());
+		parseNanos.record(stats.getParseNanos());
+		buildNanos.record(stats.getBuildNanos());
+		serializeNanos.record(stats.getSerializeNanos());
+	}
+	
+	public void recordFailure() {
+		failureCount.increment();
+	}
+	
+	// Record a request that is rejected for invalid or too large input before it is converted
+	public void recordRejection() {
+		rejectionCount.increment();
+	}
+	
+	public long getRejectionCount() {
+		return rejectionCount.sum();
+	}
+	
+	public Histogram getRequestBytes() {
+		return requestBytes;
+	}
+	
+	public Histogram getElementCounts() {
+		return elementCounts;
+	}
+	
+	public Histogram getParseNanos() {
+		return parseNanos;
+	}
+	
+	public Histogram getBuildNanos() {
+		return buildNanos;
+	}
+	
+	public Histogram getSerializeNanos() {
+		return serializeNanos;
+	}
+	
+	public long getTemplateCount(String typeName) {
+		LongAdder count = templateCounts.get(typeName);
+		
+		return count == null ? 0 : count.sum();
+	}
+	
+	// Write the metrics in Prometheus text exposition format
+	public void writePrometheus(Writer writer) throws IOException {
+		writeHeader(writer, "factoid_templates_total", "counter", "Number of templates converted by template type");
+		
+		for (Map.Entry<String, LongAdder> entry : templateCounts.entrySet()) {
+			writer.append("factoid_templates_total{type=\"").append(escapeLabelValue(entry.getKey())).append("\"} ");
+			writer.append(String.valueOf(entry.getValue().sum())).append('\n');
+		}
+		
+		writer.append("factoid_templates_total{type=\"unknown\"} ").append(String.valueOf(unknownTemplateCount.sum())).append('\n');
+		
+		writeCounter(writer, "factoid_conversions_total", "Number of conversions completed", conversionCount.sum());
+		writeCounter(writer, "factoid_conversion_failures_total", "Number of conversions failed", failureCount.sum());
+		writeCounter(writer, "factoid_conversion_rejections_total", "Number of conversion requests rejected for invalid or too large input", rejectionCount.sum());
+		
+		writeSummary(writer, "factoid_request_bytes", "Size of conversion request bodies in bytes as received", requestBytes, 1);
+		writeSummary(writer, "factoid_model_elements", "Number of BioPAX elements in converted models", elementCounts, 1);
+		writeSummary(writer, "factoid_parse_seconds", "Time spent in parsing templates per conversion", parseNanos, NANOS_PER_SECOND);
+		writeSummary(writer, "factoid_build_seconds", "Time spent in building the model per conversion", buildNanos, NANOS_PER_SECOND);
+		writeSummary(writer, "factoid_serialize_seconds", "Time spent in writing owl per conversion", serializeNanos, NANOS_PER_SECOND);
+		
+		ConversionCache cache = this.cache;
+		
+		if (cache != null) {
+			writeCounter(writer, "factoid_cache_hits_total", "Number of conversion cache hits", cache.getHitCount());
+			writeCounter(writer, "factoid_cache_misses_total", "Number of conversion cache misses", cache.getMissCount());
+			writeCounter(writer, "factoid_cache_evictions_total", "Number of conversion cache evictions", cache.getEvictionCount());
+			writeGauge(writer, "factoid_cache_bytes", "Size of the cached conversion results in bytes", cache.getCurrentBytes());
+			writeGauge(writer, "factoid_cache_entries", "Number of cached conversion results", cache.getEntryCount());
+		}
+		
+		if (readyMillis > 0) {
+			writeGauge(writer, "factoid_ready_seconds", "Time from the start of the JVM until the server got ready", readyMillis / MILLIS_PER_SECOND);
+		}
+		
+		WarmUp warmUp = this.warmUp;
+		
+		if (warmUp != null) {
+			writeGauge(writer, "factoid_warmup_seconds", "Time spent in the warm up at start", warmUp.getTotalNanos() / NANOS_PER_SECOND);
+			writeGauge(writer, "factoid_warmup_first_iteration_seconds", "Time of the first warm up conversion, on a cold start", 
+					warmUp.getFirstIterationNanos() / NANOS_PER_SECOND);
+			writeGauge(writer, "factoid_warmup_last_iteration_seconds", "Time of the last warm up conversion, once warmed up", 
+					warmUp.getLastIterationNanos() / NANOS_PER_SECOND);
+		}
+		
+		ResultStore resultStore = this.resultStore;
+		
+		if (resultStore != null) {
+			writeCounter(writer, "factoid_store_hits_total", "Number of result store hits", resultStore.getHitCount());
+			writeCounter(writer, "factoid_store_misses_total", "Number of result store misses", resultStore.getMissCount());
+			writeCounter(writer, "factoid_store_evictions_total", "Number of result store evictions", resultStore.getEvictionCount());
+			writeGauge(writer, "factoid_store_bytes", "Compressed size of the stored conversion results in bytes", resultStore.getCurrentBytes());
+			writeGauge(writer, "factoid_store_entries", "Number of stored conversion results", resultStore.getEntryCount());
+		}
+		
+		writer.flush();
+	}
+	
+	// Section: private helper methods
+	
+	private static void writeCounter(Writer writer, String name, String help, long value) throws IOException {
+		writeHeader(writer, name, "counter", help);
+		writer.append(name).append(' ').append(String.valueOf(value)).append('\n');
+	}
+	
+	private static void writeGauge(Writer writer, String name, String help, long value) throws IOException {
+		writeHeader(writer, name, "gauge", help);
+		writer.append(name).append(' ').append(String.valueOf(value)).append('\n');
+	}
+	
+	private static void writeGauge(Writer writer, String name, String help, double value) throws IOException {
+		writeHeader(writer, name, "gauge", help);
+		writer.append(name).append(' ').append(String.valueOf(value)).append('\n');
+	}
+	
+	// Write the histogram as a summary with fixed quantiles, recorded values are divided by the given unit
+	private static void writeSummary(Writer writer, String name, String help, Histogram histogram, double unit) throws IOException {
+		writeHeader(writer, name, "summary", help);
+		
+		for (double quantile : QUANTILES) {
+			double value = histogram.getValueAtPercentile(quantile * 100) / unit;
+			writer.append(name).append("{quantile=\"").append(String.valueOf(quantile)).append("\"} ");
+			writer.append(String.valueOf(value)).append('\n');
+		}
+		
+		writer.append(name).append("_sum ").append(String.valueOf(histogram.getSum() / unit)).append('\n');
+		writer.append(name).append("_count ").append(String.valueOf(histogram.getCount())).append('\n');
+	}
+	
+	private static void writeHeader(Writer writer, String name, String type, String help) throws IOException {
+		writer.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		writer.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+	
+	private static String escapeLabelValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+	
+	// Section: static variables
+	
+	private static final ConversionMetrics INSTANCE = new ConversionMetrics();
+	
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+	private static final double NANOS_PER_SECOND = 1e9;
+	private static final double MILLIS_PER_SECOND = 1e3;
+}
@@ -0,0 +1,104 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A lock free histogram of non negative long values. Values are counted in log linear buckets, every power of two
+ * range is split into 16 equal buckets, so a percentile is reported with at most about 6% relative error while the
+ * histogram keeps a fixed number of counters however many values are recorded. Recording is safe from many threads,
+ * reading while values are recorded gives a slightly inconsistent but still usable snapshot.
+ */
+public class Histogram {
+	
+	private AtomicLongArray bucketCounts;
+	private LongAdder count;
+	private LongAdder sum;
+	
+	public Histogram() {
+		bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+		count = new LongAdder();
+		sum = new LongAdder();
+	}
+	
+	// Section: public methods
+	
+	// Record a value, negative values are counted as zero
+	public void record(long value) {
+		long v = Math.max(value, 0);
+		
+		bucketCounts.incrementAndGet(getBucketIndex(v));
+		count.increment();
+		sum.add(v);
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public long getSum() {
+		return sum.sum();
+	}
+	
+	// Get the value at the given percentile in [0, 100], that is the upper bound of the bucket the percentile falls in
+	public long getValueAtPercentile(double percentile) {
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = bucketCounts.get(i);
+			total += counts[i];
+		}
+		
+		if (total == 0) {
+			return 0;
+		}
+		
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			
+			if (seen >= rank) {
+				return getBucketUpperBound(i);
+			}
+		}
+		
+		return getBucketUpperBound(BUCKET_COUNT - 1);
+	}
+	
+	// Section: private helper methods
+	
+	// Values under SUB_BUCKET_COUNT have their own buckets, larger values are bucketed by their highest set bit
+	// and the SUB_BUCKET_BITS bits that follow it
+	private static int getBucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+		
+		return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+	}
+	
+	private static long getBucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		
+		int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+		int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+		
+		return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+	}
+	
+	// Section: static variables
+	
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	
+	// Enough buckets for the largest shift of a positive long value
+	private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+}
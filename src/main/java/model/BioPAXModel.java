@@ -1,17 +1,31 @@
 /*
  * A model class that keeps an underlying PaxTools model and enables updating it by wrapper functions.
  * This model is designed to avoid duplications of BioPAX elements in certain conditions.
+ *
+ * Elements are never shared between models, not even constant ones such as the "active" and "inactive"
+ * modification vocabularies or the xrefs of well known identifiers. Paxtools elements keep back references to
+ * the elements that use them (xrefOf, entityReferenceOf, featureOf), so a shared instance would be mutated by
+ * every model that attaches it. A process wide catalog that only precomputes their ids was tried and gave no
+ * measurable gain, since each model still creates its own elements and ids are only hashed for content ids.
  */
 
 package model;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.apache.commons.collections4.map.MultiKeyMap;
@@ -28,46 +42,94 @@ import org.biopax.paxtools.model.level3.Controller;
 import org.biopax.paxtools.model.level3.Conversion;
 import org.biopax.paxtools.model.level3.ConversionDirectionType;
 import org.biopax.paxtools.model.level3.EntityFeature;
+import org.biopax.paxtools.model.level3.Entity;
 import org.biopax.paxtools.model.level3.EntityReference;
+import org.biopax.paxtools.model.level3.Interaction;
 import org.biopax.paxtools.model.level3.ModificationFeature;
 import org.biopax.paxtools.model.level3.PhysicalEntity;
 import org.biopax.paxtools.model.level3.Process;
+import org.biopax.paxtools.model.level3.TemplateReaction;
 import org.biopax.paxtools.model.level3.UnificationXref;
 import org.biopax.paxtools.model.level3.SequenceModificationVocabulary;
 import org.biopax.paxtools.model.level3.SimplePhysicalEntity;
+import org.biopax.paxtools.model.level3.Xref;
 
 public class BioPAXModel {
 	
 	// Underlying paxtools model
 	private Model model;
-	// Map of term to cellular location
-	private Map<String, CellularLocationVocabulary> cellularLocationMap;
-	// Map of xref id to xref itself
-	private Map<String, UnificationXref> xrefMap;
-	// Multiple key map of entity reference class and name to entity reference itself
+	// Cellular locations by the symbol handle of their term (see getBySymbol())
+	private List<CellularLocationVocabulary> cellularLocationsByTerm;
+	// Xrefs by the symbol handle of their id (see getBySymbol())
+	private List<UnificationXref> xrefsById;
+	// Multiple key map of entity reference class and symbol handles of name and xref id to entity reference itself
 	private MultiKeyMap<Object, EntityReference> entityReferenceMap;
+	// Multiple key map of entity reference uri, cellular location uri and modification types set to physical entity itself.
+	// Element uris are used as keys rather than the elements since hash code of paxtools elements is computed on each call.
+	private MultiKeyMap<Object, PhysicalEntity> physicalEntityMap;
+	// Multiple key map of entity reference uri and modification type to modification feature itself
+	private MultiKeyMap<Object, ModificationFeature> modificationFeatureMap;
+	// Elements added since recording started, null if not recording
+	private List<BioPAXElement> journal;
+	// Generator of the ids of new elements
+	private IdGenerator idGenerator;
+	// Writer the model is converted to owl by
+	private OwlWriterType owlWriterType;
+	// Interned names, xref ids, namespaces and terms of the model and their handles the maps are keyed by
+	private SymbolTable symbolTable;
+	// Elements in the order they are added with the identifying fields they are added by, kept only by shard models
+	// so that they can be merged into another model (see merge()), null for any other model
+	private List<Object[]> creationLog;
 	
 	// Section: constructors
 	
 	public BioPAXModel() {
+		this(IdStrategy.UUID);
+	}
+	
+	public BioPAXModel(IdStrategy idStrategy) {
+		this(idStrategy.createGenerator());
+	}
+	
+	public BioPAXModel(IdGenerator idGenerator) {
+		this(idGenerator, new HeapSymbolTable());
+	}
+	
+	// The symbol table belongs to this model from now on, it is not expected to be used by another model
+	public BioPAXModel(IdGenerator idGenerator, SymbolTable symbolTable) {
 		BioPAXFactory factory = BioPAXLevel.L3.getDefaultFactory();
 		model = factory.createModel();
 		
-		cellularLocationMap = new HashMap<String, CellularLocationVocabulary>();
-		xrefMap = new HashMap<String, UnificationXref>();
+		this.idGenerator = idGenerator;
+		owlWriterType = OwlWriterType.PAXTOOLS;
+		this.symbolTable = symbolTable;
+		
+		cellularLocationsByTerm = new ArrayList<CellularLocationVocabulary>();
+		xrefsById = new ArrayList<UnificationXref>();
 		entityReferenceMap = new MultiKeyMap<Object, EntityReference>();
+		physicalEntityMap = new MultiKeyMap<Object, PhysicalEntity>();
+		modificationFeatureMap = new MultiKeyMap<Object, ModificationFeature>();
+	}
+	
+	// Create a model that is built on its own and then merged into another model, ids of its elements are not kept
+	// by the merge so the cheapest generator is used
+	public static BioPAXModel createShard() {
+		BioPAXModel shard = new BioPAXModel(IdStrategy.SEQUENTIAL);
+		shard.creationLog = new ArrayList<Object[]>();
+		
+		return shard;
 	}
 	
 	// Section: public methods
 	
 	// add a new element to model with given id
 	public <T extends BioPAXElement> T addNew(Class<T> c, String id) {
-		return model.addNew(c, id);
+		return addNew(c, id, NO_IDENTIFYING_FIELDS);
 	}
 	
 	// add a new element to model by generating element id
 	public <T extends BioPAXElement> T addNew(Class<T> c) {
-		return addNew(c, generateUUID());
+		return addNew(c, idGenerator.generateId(c));
 	}
 	
 	// Just get a physical entity, create it if not available yet.
@@ -79,8 +141,7 @@ public class BioPAXModel {
 		if (entityRef != null) {
 			assertSimplePhysicalEntityOrSubclass(c);
 			
-			Set<T> entities = (Set<T>) entityRef.getEntityReferenceOf();
-			entity = findMatchingEntity(entities, cellularLocation, modificationTypes);
+			entity = (T) physicalEntityMap.get(entityRef.getUri(), getUriOrNull(cellularLocation), getModificationTypesKey(modificationTypes));
 		}
 		
 		if (entity == null) {
@@ -108,14 +169,16 @@ public class BioPAXModel {
 			return null;
 		}
 		
-		String xrefId = xrefModel.getId();
-		UnificationXref xref = xrefMap.get(xrefId);
+		int xrefIdHandle = symbolTable.getHandle(xrefModel.getId());
+		UnificationXref xref = getBySymbol(xrefsById, xrefIdHandle);
 		
 		if (xref == null) {
-			xref = addNew(UnificationXref.class);
+			String xrefId = symbolTable.intern(xrefModel.getId());
+			String namespace = symbolTable.intern(xrefModel.getNamespace());
+			xref = addNewIdentifiedBy(UnificationXref.class, namespace, xrefId);
 			xref.setId(xrefId);
-			xref.setDb(xrefModel.getNamespace());
-			xrefMap.put(xrefId, xref);
+			xref.setDb(namespace);
+			setBySymbol(xrefsById, xrefIdHandle, xref);
 		}
 		
 		return xref;
@@ -124,12 +187,14 @@ public class BioPAXModel {
 	// Get cellular location matching the given term, create one if not available
 	public CellularLocationVocabulary getOrCreateCellularLocationVocabulary(String term) {
 		
-		CellularLocationVocabulary clv = cellularLocationMap.get(term);
+		int termHandle = symbolTable.getHandle(term);
+		CellularLocationVocabulary clv = getBySymbol(cellularLocationsByTerm, termHandle);
 		
 		// if a clv does not exists for the term create one here and put it to the map
 		if(clv == null) {
-			clv = addNewControlledVocabulary(CellularLocationVocabulary.class, term);
-			cellularLocationMap.put(term, clv);
+			term = symbolTable.intern(term);
+			clv = addNewControlledVocabulary(CellularLocationVocabulary.class, term, term);
+			setBySymbol(cellularLocationsByTerm, termHandle, clv);
 		}
 		
 		return clv;
@@ -138,13 +203,14 @@ public class BioPAXModel {
 	// Get modification feature that has the given modification type. Create one if not available.
 	public ModificationFeature getOrCreateModificationFeature(String modificationType, EntityReference entityRef) {
 		
-		Set<EntityFeature> referenceModifications = entityRef.getEntityFeature();
-		ModificationFeature modificationFeature = getFeatureByModificationType((Set)referenceModifications, modificationType);
+		ModificationFeature modificationFeature = modificationFeatureMap.get(entityRef.getUri(), modificationType);
 		
 		// if a modification feature does not exists for the modification type create one here and put it to the map
 		if (modificationFeature == null) {
-			modificationFeature = addNewModificationFeature(modificationType);
+			modificationType = symbolTable.intern(modificationType);
+			modificationFeature = addNewModificationFeature(modificationType, entityRef);
 			entityRef.addEntityFeature(modificationFeature);
+			modificationFeatureMap.put(entityRef.getUri(), modificationType, modificationFeature);
 		}
 		
 		return modificationFeature;
@@ -155,16 +221,18 @@ public class BioPAXModel {
 		
 		T entityRef = null;
 		UnificationXref xref = getOrCreateXref(xrefModel);
+		int nameHandle = symbolTable.getHandle(name);
+		int xrefIdHandle = xref == null ? SymbolTable.NO_HANDLE : symbolTable.getHandle(xref.getId());
 		
 		// if a name is specified try to get an existing entity reference with the
 		// same name and entity class first
 		if (name != null) {
-			entityRef = (T) entityReferenceMap.get(c, name, xref);
+			entityRef = (T) entityReferenceMap.get(c, nameHandle, xrefIdHandle);
 		}
 		
 		if (entityRef == null) {
-			entityRef = addNewEntityReference(c, name, xref);
-			entityReferenceMap.put(c, name, xref, entityRef);
+			entityRef = addNewEntityReference(c, symbolTable.intern(name), xref);
+			entityReferenceMap.put(c, nameHandle, xrefIdHandle, entityRef);
 		}
 		
 		return entityRef;
@@ -173,7 +241,7 @@ public class BioPAXModel {
 	// Create a new conversion by given properties
 	public <T extends Conversion> T addNewConversion(Class<T> c, PhysicalEntity left, PhysicalEntity right, ConversionDirectionType dir) {
 		
-		T conversion = addNew(c);
+		T conversion = addNewIdentifiedBy(c, left, right, dir);
 		
 		if(left != null) {
 			conversion.addLeft(left);
@@ -201,7 +269,7 @@ public class BioPAXModel {
 	// Create a new control instance by given properties
 	public <T extends Control> T addNewControl(Class<T> c, Controller controller, Process controlled, ControlType controlType) {
 		
-		T control = addNew(c);
+		T control = addNewIdentifiedBy(c, controller, controlled, controlType);
 		
 		if(controller != null) {
 			control.addController(controller);
@@ -218,42 +286,264 @@ public class BioPAXModel {
 		return control;
 	}
 	
+	// Start recording the elements that are added to the model from now on
+	public void startRecording() {
+		journal = new ArrayList<BioPAXElement>();
+	}
+	
+	// Stop recording and get the elements that are added since recording started in the order they were added
+	public List<BioPAXElement> stopRecording() {
+		List<BioPAXElement> recorded = journal;
+		journal = null;
+		
+		return recorded;
+	}
+	
+	// Merge a shard model into this model by replaying the elements the shard created, in the order it created them,
+	// through the same get or create methods. Elements that this model already has are reused by the same rules as
+	// when adding templates, so merging shards in order gives the same model as adding all their templates to this
+	// model one by one, including the ids of the elements. The shard must not be used after the merge.
+	public void merge(BioPAXModel shard) {
+		if (shard.creationLog == null) {
+			throw new IllegalArgumentException("Only shard models can be merged");
+		}
+		
+		Map<BioPAXElement, BioPAXElement> mergedElements = new IdentityHashMap<BioPAXElement, BioPAXElement>();
+		
+		for (Object[] entry : shard.creationLog) {
+			BioPAXElement element = (BioPAXElement) entry[0];
+			
+			if (!mergedElements.containsKey(element)) {
+				mergedElements.put(element, replay(element, entry, mergedElements));
+			}
+		}
+		
+		// Participants of some interactions are added after they are created, link them once all elements are merged
+		for (Object[] entry : shard.creationLog) {
+			if (entry[0] instanceof Interaction) {
+				linkParticipants((Interaction) entry[0], (Interaction) mergedElements.get(entry[0]), mergedElements);
+			}
+		}
+		
+		shard.creationLog = null;
+	}
+	
+	// Remove the interactions among the given elements together with the physical entities, features, entity references
+	// and xrefs that are not used by any remaining interaction. The elements are expected to be the ones recorded while
+	// a template was added, so that removing them restores the model to the state where that template was never added.
+	// Cellular locations are kept since templates do not create them.
+	public void removeInteractions(Collection<? extends BioPAXElement> elements) {
+		
+		Set<PhysicalEntity> detachedEntities = Collections.newSetFromMap(new IdentityHashMap<PhysicalEntity, Boolean>());
+		
+		for (BioPAXElement element : elements) {
+			if (element instanceof Interaction && model.contains(element)) {
+				detachInteraction((Interaction) element, detachedEntities);
+				model.remove(element);
+			}
+		}
+		
+		for (PhysicalEntity entity : detachedEntities) {
+			if (isUnused(entity)) {
+				removePhysicalEntity(entity);
+			}
+		}
+	}
+	
+	// Get the number of elements in the model
+	public int getElementCount() {
+		return model.getObjects().size();
+	}
+	
+	// Remove all elements so that the model can be reused for another conversion. The maps keep the capacity they
+	// have grown to. The paxtools model is replaced rather than emptied since owl is written in the iteration order
+	// of its map, which depends on the capacity, and the same input is expected to give byte identical output.
+	// The owl writer type is kept.
+	public void reset() {
+		model = BioPAXLevel.L3.getDefaultFactory().createModel();
+		
+		cellularLocationsByTerm.clear();
+		xrefsById.clear();
+		entityReferenceMap.clear();
+		physicalEntityMap.clear();
+		modificationFeatureMap.clear();
+		
+		idGenerator.reset();
+		symbolTable.clear();
+		journal = null;
+		
+		if (creationLog != null) {
+			creationLog.clear();
+		}
+	}
+	
+	public void setOwlWriterType(OwlWriterType owlWriterType) {
+		this.owlWriterType = owlWriterType;
+	}
+	
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+	
 	public String convertToOwl() {
-		return SimpleIOHandler.convertToOwl(model);
+		if (!useTemplatesOwlWriter()) {
+			return SimpleIOHandler.convertToOwl(model);
+		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		convertToOwl(out);
+		
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	// Write the owl representation of the model directly into the given stream instead of building a String.
+	// The stream is flushed but left open so that the caller decides when the response is complete.
+	public void convertToOwl(OutputStream out) {
+		if (!useTemplatesOwlWriter()) {
+			SimpleIOHandler handler = new SimpleIOHandler();
+			handler.convertToOWL(model, new UncloseableOutputStream(out));
+			return;
+		}
+		
+		try {
+			new TemplatesOwlWriter(out).write(model);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 	
 	// Section: private helper methods
 	
-	// Generate unique id for new elements
-	private static String generateUUID() {
-		return UUID.randomUUID().toString();
+	// Check if the specialized writer is selected and it supports all elements of the model
+	private boolean useTemplatesOwlWriter() {
+		return owlWriterType == OwlWriterType.TEMPLATES && TemplatesOwlWriter.supports(model);
 	}
 	
-	// Find the physical entity that has the expected cellular location and modification types
-	private static <T extends PhysicalEntity> T findMatchingEntity(Set<T> entities, CellularLocationVocabulary cellularLocation, Set<String> modificationTypes){		
+	// add a new element to model by generating element id, content based generators derive it from the identifying fields
+	private <T extends BioPAXElement> T addNewIdentifiedBy(Class<T> c, Object... identifyingFields) {
+		return addNew(c, idGenerator.generateId(c, identifyingFields), identifyingFields);
+	}
+	
+	private <T extends BioPAXElement> T addNew(Class<T> c, String id, Object[] identifyingFields) {
+		T element = model.addNew(c, id);
 		
-		Optional<T> match = entities.stream().filter(t -> {
-			CellularLocationVocabulary clv = t.getCellularLocation();
-			return nullSafeEquals(clv, cellularLocation) 
-					&& isAbstractionOf(getModificationFeatureOfEntity(t), modificationTypes);
-		} ).findFirst();
+		if (journal != null) {
+			journal.add(element);
+		}
 		
-		if (match.isPresent()) {
-			return match.get();
+		if (creationLog != null) {
+			creationLog.add(new Object[] { element, identifyingFields });
 		}
 		
-		return null;
+		return element;
 	}
 	
-	// compare 2 object while staying away from null pointer exception
-	private static boolean nullSafeEquals(Object obj1, Object obj2) {
-		// if one is null but other is not return false
-		if ( ( obj1 == null ) != ( obj2 == null ) ) {
-			return false;
+	// Get or create the element of this model that matches the given shard element by the identifying fields it was
+	// created by, the fields that are elements are mapped to the elements of this model
+	@SuppressWarnings("unchecked")
+	private BioPAXElement replay(BioPAXElement element, Object[] entry, Map<BioPAXElement, BioPAXElement> mergedElements) {
+		Object[] fields = (Object[]) entry[1];
+		Class<? extends BioPAXElement> c = element.getModelInterface();
+		
+		if (fields == NO_IDENTIFYING_FIELDS) {
+			return addNew(c);
+		}
+		
+		if (element instanceof UnificationXref) {
+			return getOrCreateXref(new XrefModel((String) fields[1], (String) fields[0]));
+		}
+		
+		if (element instanceof CellularLocationVocabulary) {
+			return getOrCreateCellularLocationVocabulary((String) fields[0]);
+		}
+		
+		if (element instanceof EntityReference) {
+			UnificationXref xref = (UnificationXref) fields[1];
+			XrefModel xrefModel = xref == null ? null : new XrefModel(xref.getId(), xref.getDb());
+			
+			return getOrCreateEntityReference((Class<? extends EntityReference>) c, (String) fields[0], xrefModel);
+		}
+		
+		if (element instanceof PhysicalEntity) {
+			return getOrCreatePhysicalEntity((Class<? extends PhysicalEntity>) c, (String) fields[0],
+					(CellularLocationVocabulary) mergedElements.get(fields[2]),
+					(EntityReference) mergedElements.get(fields[1]), (Set<String>) fields[3]);
+		}
+		
+		if (element instanceof SequenceModificationVocabulary || element instanceof ModificationFeature) {
+			// the vocabulary and the feature are created together by their entity reference and modification type
+			ModificationFeature feature = getOrCreateModificationFeature((String) fields[1], (EntityReference) mergedElements.get(fields[0]));
+			
+			return element instanceof ModificationFeature ? feature : feature.getModificationType();
+		}
+		
+		if (element instanceof Conversion) {
+			return addNewConversion((Class<? extends Conversion>) c, (PhysicalEntity) mergedElements.get(fields[0]),
+					(PhysicalEntity) mergedElements.get(fields[1]), (ConversionDirectionType) fields[2]);
 		}
 		
-		// now it is known that obj2 is null given that obj1 is null
-		return obj1 == null || obj1.equals(obj2);
+		if (element instanceof Control) {
+			return addNewControl((Class<? extends Control>) c, (Controller) mergedElements.get(fields[0]),
+					(Process) mergedElements.get(fields[1]), (ControlType) fields[2]);
+		}
+		
+		return addNewIdentifiedBy(c, fields);
+	}
+	
+	// Add the participants of the shard interaction to the merged interaction by the properties they are added by
+	private static void linkParticipants(Interaction interaction, Interaction mergedInteraction, Map<BioPAXElement, BioPAXElement> mergedElements) {
+		if (interaction instanceof Conversion) {
+			for (PhysicalEntity left : ((Conversion) interaction).getLeft()) {
+				((Conversion) mergedInteraction).addLeft((PhysicalEntity) mergedElements.get(left));
+			}
+			
+			for (PhysicalEntity right : ((Conversion) interaction).getRight()) {
+				((Conversion) mergedInteraction).addRight((PhysicalEntity) mergedElements.get(right));
+			}
+		}
+		else if (interaction instanceof TemplateReaction) {
+			for (PhysicalEntity product : ((TemplateReaction) interaction).getProduct()) {
+				((TemplateReaction) mergedInteraction).addProduct((PhysicalEntity) mergedElements.get(product));
+			}
+		}
+		else if (!(interaction instanceof Control)) {
+			for (Entity participant : interaction.getParticipant()) {
+				mergedInteraction.addParticipant((Entity) mergedElements.get(participant));
+			}
+		}
+	}
+	
+	// Get the element indexed by the given symbol handle, elements of the null symbol are at index 0 and the others
+	// follow them in the order of their handles
+	private static <T> T getBySymbol(List<T> elements, int handle) {
+		int index = handle + 1;
+		
+		return index < elements.size() ? elements.get(index) : null;
+	}
+	
+	private static <T> void setBySymbol(List<T> elements, int handle, T element) {
+		int index = handle + 1;
+		
+		while (elements.size() <= index) {
+			elements.add(null);
+		}
+		
+		elements.set(index, element);
+	}
+	
+	private static String getUriOrNull(BioPAXElement element) {
+		return element == null ? null : element.getUri();
+	}
+	
+	// Get the key that represents a set of modification types in the physical entity map, null and empty sets are the same
+	private static Set<String> getModificationTypesKey(Set<String> modificationTypes) {
+		return modificationTypes == null ? Collections.<String>emptySet() : modificationTypes;
+	}
+	
+	// Get the modification types of a physical entity as they are keyed in the physical entity map
+	private static Set<String> getModificationTypes(PhysicalEntity entity) {
+		return getModificationFeatureOfEntity(entity).stream().map(t -> getOnlyElement(t.getModificationType().getTerm())).collect(Collectors.toSet());
 	}
 	
 	private static Set<ModificationFeature> getModificationFeatureOfEntity(PhysicalEntity entity){
@@ -301,36 +591,6 @@ public class BioPAXModel {
 		return true;
 	}
 	
-	// check if a collection is either empty or null
-	private static <T extends Object> boolean isEmptyOrNull(Collection<T> collection) {
-		return collection == null || collection.isEmpty();
-	}
-	
-	// Check if modificationTypes set is an abstraction of modifications set
-	private static boolean isAbstractionOf(Set<ModificationFeature> modifications, Set<String> modificationTypes) {
-		
-		// return false if only one side is empty or null 
-		if ( isEmptyOrNull(modifications) == !isEmptyOrNull(modificationTypes)  ) {
-			return false;
-		}
-		
-		// return true if both sides are empty or null
-		// note that we made sure that either both or none is empty or null
-		if (isEmptyOrNull(modifications)) {
-			return true;
-		}
-		
-		if (modifications.isEmpty() && modificationTypes.isEmpty()) {
-			return true;
-		}
-		
-		if (modifications.size() != modificationTypes.size()) {
-			return false;
-		}
-		
-		return modifications.stream().map(t -> getOnlyElement(t.getModificationType().getTerm())).collect(Collectors.toSet()).equals(modificationTypes);
-	}
-	
 	// get only element of collection
 	// TODO this method would be moved to a utility file
 	private static <T extends Object> T getOnlyElement(Collection<T> collection) {
@@ -341,7 +601,7 @@ public class BioPAXModel {
 	private <T extends PhysicalEntity> T addNewPhysicalEntity(Class<T> c, String name, CellularLocationVocabulary cellularLocation, 
 			EntityReference entityRef, Set<String> modificationTypes) {
 		
-		T entity = addNew(c);
+		T entity = addNewIdentifiedBy(c, name, entityRef, cellularLocation, modificationTypes);
 		
 		if (name != null) {
 			entity.setDisplayName(name);
@@ -364,12 +624,22 @@ public class BioPAXModel {
 			}
 		}
 		
+		// index the entity so that it is found by the same entity reference, cellular location and modifications
+		if (entityRef != null) {
+			Set<String> modificationTypesKey = new HashSet<String>();
+			for (String modificationType : getModificationTypesKey(modificationTypes)) {
+				modificationTypesKey.add(symbolTable.intern(modificationType));
+			}
+			
+			physicalEntityMap.put(entityRef.getUri(), getUriOrNull(cellularLocation), modificationTypesKey, entity);
+		}
+		
 		return entity;
 	}
 	
 	// create a new controlled vocabulary initialized with the given term
-	private <T extends ControlledVocabulary> T addNewControlledVocabulary(Class<T> c, String term) {
-		T vocab = addNew(c);
+	private <T extends ControlledVocabulary> T addNewControlledVocabulary(Class<T> c, String term, Object... identifyingFields) {
+		T vocab = addNewIdentifiedBy(c, identifyingFields);
 		
 		if (term != null) {
 			vocab.addTerm(term);
@@ -378,37 +648,180 @@ public class BioPAXModel {
 		return vocab;
 	}
 	
-	// Create a new modification feature that has the given modification type
-	private ModificationFeature addNewModificationFeature(String modificationType) {
-		SequenceModificationVocabulary seqModVocab = addNewControlledVocabulary(SequenceModificationVocabulary.class, modificationType);
+	// Create a new modification feature of the entity reference that has the given modification type
+	private ModificationFeature addNewModificationFeature(String modificationType, EntityReference entityRef) {
+		SequenceModificationVocabulary seqModVocab = addNewControlledVocabulary(SequenceModificationVocabulary.class, modificationType, entityRef, modificationType);
 		
-		ModificationFeature modificationFeature = addNew(ModificationFeature.class);
+		ModificationFeature modificationFeature = addNewIdentifiedBy(ModificationFeature.class, entityRef, modificationType);
 		modificationFeature.setModificationType(seqModVocab);
 		
 		return modificationFeature;
 	}
 	
-	// Get modification feature with the given modification type from a set of modification features
-	private ModificationFeature getFeatureByModificationType(Set<ModificationFeature> modificationFeatures,
-			String modificationType) {
+	// Clear the properties of an interaction that refer to other elements and collect the physical entities it referred
+	private static void detachInteraction(Interaction interaction, Set<PhysicalEntity> detachedEntities) {
+		
+		if (interaction instanceof Control) {
+			Control control = (Control) interaction;
+			
+			for (Controller controller : new ArrayList<Controller>(control.getController())) {
+				control.removeController(controller);
+				collectPhysicalEntity(controller, detachedEntities);
+			}
+			
+			for (Process controlled : new ArrayList<Process>(control.getControlled())) {
+				control.removeControlled(controlled);
+			}
+		}
 		
-		Iterator<ModificationFeature> it = modificationFeatures.iterator();
+		if (interaction instanceof Conversion) {
+			Conversion conversion = (Conversion) interaction;
+			
+			for (PhysicalEntity left : new ArrayList<PhysicalEntity>(conversion.getLeft())) {
+				conversion.removeLeft(left);
+				detachedEntities.add(left);
+			}
+			
+			for (PhysicalEntity right : new ArrayList<PhysicalEntity>(conversion.getRight())) {
+				conversion.removeRight(right);
+				detachedEntities.add(right);
+			}
+		}
 		
-		while (it.hasNext()) {
-			ModificationFeature modificationFeature = it.next();
-			Set<String> terms = modificationFeature.getModificationType().getTerm();
-			if ( getOnlyElement(terms).equals(modificationType) ) {
-				return modificationFeature;
+		if (interaction instanceof TemplateReaction) {
+			TemplateReaction reaction = (TemplateReaction) interaction;
+			
+			for (PhysicalEntity product : new ArrayList<PhysicalEntity>(reaction.getProduct())) {
+				reaction.removeProduct(product);
+				detachedEntities.add(product);
 			}
 		}
 		
-		return null;
+		for (Entity participant : new ArrayList<Entity>(interaction.getParticipant())) {
+			interaction.removeParticipant(participant);
+			collectPhysicalEntity(participant, detachedEntities);
+		}
+	}
+	
+	private static void collectPhysicalEntity(Object entity, Set<PhysicalEntity> physicalEntities) {
+		if (entity instanceof PhysicalEntity) {
+			physicalEntities.add((PhysicalEntity) entity);
+		}
+	}
+	
+	// Check if a physical entity is not referred by any interaction or other physical entity
+	private static boolean isUnused(PhysicalEntity entity) {
+		return entity.getParticipantOf().isEmpty() && entity.getControllerOf().isEmpty() 
+				&& entity.getComponentOf().isEmpty() && entity.getMemberPhysicalEntityOf().isEmpty();
+	}
+	
+	// Remove a physical entity and its features, entity reference and xrefs that are not used anymore
+	private void removePhysicalEntity(PhysicalEntity entity) {
+		
+		EntityReference entityRef = null;
+		
+		if (entity instanceof SimplePhysicalEntity) {
+			SimplePhysicalEntity simpleEntity = (SimplePhysicalEntity) entity;
+			entityRef = simpleEntity.getEntityReference();
+			simpleEntity.setEntityReference(null);
+		}
+		
+		// drop the entity from the map unless the map points to another one with the same key
+		if (entityRef != null) {
+			String entityRefUri = entityRef.getUri();
+			String cellularLocationUri = getUriOrNull(entity.getCellularLocation());
+			Set<String> modificationTypes = getModificationTypes(entity);
+			
+			if (physicalEntityMap.get(entityRefUri, cellularLocationUri, modificationTypes) == entity) {
+				physicalEntityMap.removeMultiKey(entityRefUri, cellularLocationUri, modificationTypes);
+			}
+		}
+		
+		for (EntityFeature feature : new ArrayList<EntityFeature>(entity.getFeature())) {
+			entity.removeFeature(feature);
+			
+			if (feature.getFeatureOf().isEmpty() && feature.getNotFeatureOf().isEmpty()) {
+				removeEntityFeature(feature);
+			}
+		}
+		
+		model.remove(entity);
+		
+		if (entityRef != null && entityRef.getEntityReferenceOf().isEmpty()) {
+			removeEntityReference(entityRef);
+		}
+	}
+	
+	// Remove an entity reference that has no entities anymore together with its features and unused xrefs
+	private void removeEntityReference(EntityReference entityRef) {
+		
+		// drop the entity reference from the map unless the map already points to another one
+		Xref xref = entityRef.getXref().isEmpty() ? null : getOnlyElement(entityRef.getXref());
+		Class<? extends BioPAXElement> c = entityRef.getModelInterface();
+		int nameHandle = symbolTable.getHandle(entityRef.getDisplayName());
+		int xrefIdHandle = xref == null ? SymbolTable.NO_HANDLE : symbolTable.getHandle(xref.getId());
+		
+		if (entityReferenceMap.get(c, nameHandle, xrefIdHandle) == entityRef) {
+			entityReferenceMap.removeMultiKey(c, nameHandle, xrefIdHandle);
+		}
+		
+		for (EntityFeature feature : new ArrayList<EntityFeature>(entityRef.getEntityFeature())) {
+			removeEntityFeature(feature);
+		}
+		
+		for (Xref refXref : new ArrayList<Xref>(entityRef.getXref())) {
+			entityRef.removeXref(refXref);
+			
+			if (refXref.getXrefOf().isEmpty()) {
+				removeXref(refXref);
+			}
+		}
+		
+		model.remove(entityRef);
+	}
+	
+	// Remove an entity feature from its entity reference and the model together with its modification type
+	private void removeEntityFeature(EntityFeature feature) {
+		
+		EntityReference entityRef = feature.getEntityFeatureOf();
+		
+		if (entityRef != null) {
+			entityRef.removeEntityFeature(feature);
+		}
+		
+		if (feature instanceof ModificationFeature) {
+			ModificationFeature modificationFeature = (ModificationFeature) feature;
+			SequenceModificationVocabulary modificationType = modificationFeature.getModificationType();
+			modificationFeature.setModificationType(null);
+			
+			if (modificationType != null) {
+				String term = getOnlyElement(modificationType.getTerm());
+				
+				if (entityRef != null && modificationFeatureMap.get(entityRef.getUri(), term) == modificationFeature) {
+					modificationFeatureMap.removeMultiKey(entityRef.getUri(), term);
+				}
+				
+				model.remove(modificationType);
+			}
+		}
+		
+		model.remove(feature);
+	}
+	
+	private void removeXref(Xref xref) {
+		int xrefIdHandle = symbolTable.getHandle(xref.getId());
+		
+		if (getBySymbol(xrefsById, xrefIdHandle) == xref) {
+			setBySymbol(xrefsById, xrefIdHandle, null);
+		}
+		
+		model.remove(xref);
 	}
 	
 	// Create a new entity reference by given properties
 	private <T extends EntityReference> T addNewEntityReference(Class<T> c, String name, UnificationXref xref) {
 		
-		T entityRef = addNew(c);
+		T entityRef = addNewIdentifiedBy(c, name, xref);
 		
 		if(name != null) {
 			entityRef.setDisplayName(name);
@@ -420,4 +833,30 @@ public class BioPAXModel {
 		
 		return entityRef;
 	}
-}
\ No newline at end of file
+	
+	// Section: static variables
+	
+	// Identifying fields of the elements that are added without any, compared by identity
+	private static final Object[] NO_IDENTIFYING_FIELDS = new Object[0];
+	
+	// Section: private helper classes
+	
+	// Output stream wrapper that flushes the underlying stream on close instead of closing it,
+	// paxtools closes the stream it writes the owl into
+	private static class UncloseableOutputStream extends FilterOutputStream {
+		
+		public UncloseableOutputStream(OutputStream out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+		
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
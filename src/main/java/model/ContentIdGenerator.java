@@ -0,0 +1,95 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.biopax.paxtools.model.BioPAXElement;
+
+/*
+ * Generates ids from the class name of the element and a hash of its identifying fields, e.g.
+ * "Protein_3f2a9c0d1b7e4a55". Referenced elements take part in the hash by their ids, so the same
+ * templates added in the same order always give the same ids and byte identical owl output.
+ * Elements with the same content get an occurrence number as a suffix in the order they are created.
+ */
+public class ContentIdGenerator implements IdGenerator {
+	
+	private MessageDigest messageDigest;
+	// Map of content based id to the number of elements that are given that id
+	private Map<String, Integer> occurrences;
+	
+	public ContentIdGenerator() {
+		try {
+			messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(DIGEST_ALGORITHM + " is expected to be supported by every JVM", e);
+		}
+		
+		occurrences = new HashMap<String, Integer>();
+	}
+	
+	@Override
+	public String generateId(Class<? extends BioPAXElement> c, Object... identifyingFields) {
+		
+		StringBuilder content = new StringBuilder(c.getName());
+		
+		for (Object field : identifyingFields) {
+			content.append(FIELD_SEPARATOR);
+			appendField(content, field);
+		}
+		
+		byte[] hash = messageDigest.digest(content.toString().getBytes(StandardCharsets.UTF_8));
+		
+		StringBuilder id = new StringBuilder(c.getSimpleName()).append('_');
+		for (int i = 0; i < HASH_BYTES; i++) {
+			id.append(HEX_DIGITS[(hash[i] >> 4) & 0xF]).append(HEX_DIGITS[hash[i] & 0xF]);
+		}
+		
+		String baseId = id.toString();
+		int occurrence = occurrences.merge(baseId, 1, Integer::sum);
+		
+		return occurrence == 1 ? baseId : baseId + "_" + occurrence;
+	}
+	
+	@Override
+	public void reset() {
+		occurrences.clear();
+	}
+	
+	// Append a field in a form that does not depend on iteration order of collections
+	private static void appendField(StringBuilder content, Object field) {
+		if (field instanceof BioPAXElement) {
+			content.append(((BioPAXElement) field).getUri());
+		}
+		else if (field instanceof Collection) {
+			List<String> items = new ArrayList<String>();
+			
+			for (Object item : (Collection<?>) field) {
+				StringBuilder sb = new StringBuilder();
+				appendField(sb, item);
+				items.add(sb.toString());
+			}
+			
+			items.sort(null);
+			content.append(items);
+		}
+		else {
+			content.append(field);
+		}
+	}
+	
+	private static final String DIGEST_ALGORITHM = "MD5";
+	
+	// Number of hash bytes used in ids, collisions are resolved by the occurrence suffix
+	private static final int HASH_BYTES = 8;
+	
+	private static final char FIELD_SEPARATOR = '\u001F';
+	
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+}
@@ -0,0 +1,60 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Symbol table that keeps a single instance of each string on the heap.
+ */
+public class HeapSymbolTable implements SymbolTable {
+	
+	// Map of string to its handle
+	private Map<String, Integer> handles;
+	// Strings by their handles
+	private List<String> symbols;
+	
+	public HeapSymbolTable() {
+		handles = new HashMap<String, Integer>();
+		symbols = new ArrayList<String>();
+	}
+	
+	@Override
+	public int getHandle(String symbol) {
+		if (symbol == null) {
+			return NO_HANDLE;
+		}
+		
+		Integer handle = handles.get(symbol);
+		
+		if (handle == null) {
+			handle = symbols.size();
+			handles.put(symbol, handle);
+			symbols.add(symbol);
+		}
+		
+		return handle;
+	}
+	
+	@Override
+	public String getSymbol(int handle) {
+		return handle == NO_HANDLE ? null : symbols.get(handle);
+	}
+	
+	@Override
+	public String intern(String symbol) {
+		return getSymbol(getHandle(symbol));
+	}
+	
+	@Override
+	public int size() {
+		return symbols.size();
+	}
+	
+	@Override
+	public void clear() {
+		handles.clear();
+		symbols.clear();
+	}
+}
@@ -0,0 +1,16 @@
+package model;
+
+import org.biopax.paxtools.model.BioPAXElement;
+
+/*
+ * Generates the ids of new elements of a BioPAXModel. An instance belongs to a single model and is not
+ * expected to be thread safe. Identifying fields are the properties that distinguish the element from
+ * other elements of the same class, generators that do not derive ids from content can ignore them.
+ */
+public interface IdGenerator {
+	
+	String generateId(Class<? extends BioPAXElement> c, Object... identifyingFields);
+	
+	// Forget the ids generated so far so that the generator can be reused by its model after a reset
+	void reset();
+}
@@ -0,0 +1,36 @@
+package model;
+
+/*
+ * Strategies to generate ids of new BioPAX elements.
+ */
+public enum IdStrategy {
+	// Random UUID per element
+	UUID {
+		@Override
+		public IdGenerator createGenerator() {
+			return new UuidIdGenerator();
+		}
+	},
+	// Class name and a counter per model, cheapest one
+	SEQUENTIAL {
+		@Override
+		public IdGenerator createGenerator() {
+			return new SequentialIdGenerator("");
+		}
+	},
+	// Class name and a hash of the identifying fields, the same input gives the same ids
+	CONTENT {
+		@Override
+		public IdGenerator createGenerator() {
+			return new ContentIdGenerator();
+		}
+	};
+	
+	// Create a new generator to be used by a single model
+	public abstract IdGenerator createGenerator();
+	
+	// Get the strategy by its case insensitive name
+	public static IdStrategy fromName(String name) {
+		return valueOf(name.trim().toUpperCase());
+	}
+}
@@ -0,0 +1,16 @@
+package model;
+
+/*
+ * Writers that models can be converted to owl by.
+ */
+public enum OwlWriterType {
+	// Generic Paxtools writer, supports any model
+	PAXTOOLS,
+	// Writer specialized for the elements templates model creates, falls back to Paxtools for any other model
+	TEMPLATES;
+	
+	// Get the writer type by its case insensitive name
+	public static OwlWriterType fromName(String name) {
+		return valueOf(name.trim().toUpperCase());
+	}
+}
@@ -0,0 +1,27 @@
+package model;
+
+import org.biopax.paxtools.model.BioPAXElement;
+
+/*
+ * Generates ids by the given prefix, the class name of the element and a counter of the model,
+ * e.g. "Protein_12". There is no locking or random number generation involved.
+ */
+public class SequentialIdGenerator implements IdGenerator {
+	
+	private String prefix;
+	private long counter;
+	
+	public SequentialIdGenerator(String prefix) {
+		this.prefix = prefix;
+	}
+	
+	@Override
+	public String generateId(Class<? extends BioPAXElement> c, Object... identifyingFields) {
+		return prefix + c.getSimpleName() + "_" + (++counter);
+	}
+	
+	@Override
+	public void reset() {
+		counter = 0;
+	}
+}
@@ -0,0 +1,28 @@
+package model;
+
+/*
+ * Interns the strings that come back many times during a conversion, such as entity names, xref ids, namespaces
+ * and terms, and gives each distinct string a small integer handle. Handles are consecutive from 0 in the order the
+ * strings are first seen, so they can index arrays. A table belongs to a single conversion and is not expected to
+ * be thread safe.
+ */
+public interface SymbolTable {
+	
+	// Handle of null, null is never added to a table
+	int NO_HANDLE = -1;
+	
+	// Get the handle of the given string, the string is added if it is not in the table yet
+	int getHandle(String symbol);
+	
+	// Get the string of the given handle
+	String getSymbol(int handle);
+	
+	// Get the instance of the given string that is kept by the table
+	String intern(String symbol);
+	
+	// Number of distinct strings in the table
+	int size();
+	
+	// Remove all strings keeping the allocated capacity, handles start from 0 again
+	void clear();
+}
@@ -1,9 +1,12 @@
 package model;
 
+import java.io.OutputStream;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.biopax.paxtools.model.BioPAXElement;
 import org.biopax.paxtools.model.level3.BiochemicalReaction;
 import org.biopax.paxtools.model.level3.Catalysis;
 import org.biopax.paxtools.model.level3.Control;
@@ -27,7 +30,24 @@ public class TemplatesModel {
 	BioPAXModel model;
 	
 	public TemplatesModel() {
-		model = new BioPAXModel();
+		this(IdStrategy.UUID);
+	}
+	
+	public TemplatesModel(IdStrategy idStrategy) {
+		this(new BioPAXModel(idStrategy));
+	}
+	
+	public TemplatesModel(IdStrategy idStrategy, SymbolTable symbolTable) {
+		this(new BioPAXModel(idStrategy.createGenerator(), symbolTable));
+	}
+	
+	private TemplatesModel(BioPAXModel model) {
+		this.model = model;
+	}
+	
+	// Create a model that templates are added to on its own and that is merged into another model later
+	public static TemplatesModel createShard() {
+		return new TemplatesModel(BioPAXModel.createShard());
 	}
 	
 	// Section: public methods
@@ -109,12 +129,54 @@ public class TemplatesModel {
 		addProteinControlsConsumptionOrProduction(controllerProteinModel, chemicalModel, SideType.RIGHT);
 	}
 	
+	// Start recording the elements created by the templates added from now on
+	public void startRecording() {
+		model.startRecording();
+	}
+	
+	// Stop recording and get the elements created by the templates added since recording started
+	public List<BioPAXElement> stopRecording() {
+		return model.stopRecording();
+	}
+	
+	// Undo a template by the elements that were recorded while it was added
+	public void removeTemplateElements(Collection<? extends BioPAXElement> templateElements) {
+		model.removeInteractions(templateElements);
+	}
+	
+	// Merge a shard into this model as if the templates of the shard were added to this model
+	public void merge(TemplatesModel shard) {
+		model.merge(shard.model);
+	}
+	
 	// accessors
 	
+	public int getElementCount() {
+		return model.getElementCount();
+	}
+	
+	public void setOwlWriterType(OwlWriterType owlWriterType) {
+		model.setOwlWriterType(owlWriterType);
+	}
+	
+	// Remove all elements so that the model can be reused for another conversion
+	public void reset() {
+		model.reset();
+	}
+	
+	// Get the symbol table the strings of the model are interned by
+	public SymbolTable getSymbolTable() {
+		return model.getSymbolTable();
+	}
+	
 	public String convertToOwl() {
 		return model.convertToOwl();
 	}
 	
+	public void convertToOwl(OutputStream out) {
+		model.convertToOwl(out);
+	}
+	
 	// Section: private helper methods
 	
 	private void addProteinControlsConsumptionOrProduction(EntityModel controllerProteinModel, EntityModel chemicalModel, SideType chemicalSide) {
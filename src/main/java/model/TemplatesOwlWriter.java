@@ -0,0 +1,415 @@
+package model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.BiochemicalReaction;
+import org.biopax.paxtools.model.level3.Catalysis;
+import org.biopax.paxtools.model.level3.CellularLocationVocabulary;
+import org.biopax.paxtools.model.level3.Control;
+import org.biopax.paxtools.model.level3.ControlledVocabulary;
+import org.biopax.paxtools.model.level3.Conversion;
+import org.biopax.paxtools.model.level3.EntityReference;
+import org.biopax.paxtools.model.level3.Interaction;
+import org.biopax.paxtools.model.level3.ModificationFeature;
+import org.biopax.paxtools.model.level3.MolecularInteraction;
+import org.biopax.paxtools.model.level3.Named;
+import org.biopax.paxtools.model.level3.PhysicalEntity;
+import org.biopax.paxtools.model.level3.Protein;
+import org.biopax.paxtools.model.level3.ProteinReference;
+import org.biopax.paxtools.model.level3.SequenceModificationVocabulary;
+import org.biopax.paxtools.model.level3.SimplePhysicalEntity;
+import org.biopax.paxtools.model.level3.SmallMolecule;
+import org.biopax.paxtools.model.level3.SmallMoleculeReference;
+import org.biopax.paxtools.model.level3.TemplateReaction;
+import org.biopax.paxtools.model.level3.TemplateReactionRegulation;
+import org.biopax.paxtools.model.level3.UnificationXref;
+import org.biopax.paxtools.model.level3.Xref;
+
+/*
+ * RDF/XML writer specialized for the element classes that templates model creates. Paxtools writes any model by
+ * walking every property of every element through its reflective editors, this writer writes only the properties
+ * that templates model sets by their getters, with tags that are encoded once, directly into a byte buffer.
+ * The output has the same layout as the Paxtools output and reads back to an equivalent model. Models that
+ * have an element of any other class are not supported and should be written by Paxtools (see supports()).
+ */
+public class TemplatesOwlWriter {
+	
+	private OutputStream out;
+	private byte[] buffer;
+	private int position;
+	
+	public TemplatesOwlWriter(OutputStream out) {
+		this.out = out;
+		buffer = new byte[BUFFER_SIZE];
+	}
+	
+	// Check if all elements of the given model are of the classes this writer supports
+	public static boolean supports(Model model) {
+		for (BioPAXElement element : model.getObjects()) {
+			if (!ELEMENT_TAGS.containsKey(element.getModelInterface())) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	// Section: public methods
+	
+	// Write the given model and flush the stream, the stream is not closed
+	public void write(Model model) throws IOException {
+		write(HEADER_START);
+		
+		if (model.getXmlBase() != null) {
+			write(XML_BASE_START);
+			writeEscaped(model.getXmlBase());
+			write(QUOTE);
+		}
+		
+		write(HEADER_END);
+		
+		for (BioPAXElement element : model.getObjects()) {
+			writeElement(element);
+		}
+		
+		write(FOOTER);
+		flushBuffer();
+		out.flush();
+	}
+	
+	// Section: private helper methods
+	
+	private void writeElement(BioPAXElement element) throws IOException {
+		byte[][] tags = ELEMENT_TAGS.get(element.getModelInterface());
+		
+		if (tags == null) {
+			throw new IllegalArgumentException("Element class is not supported: " + element.getModelInterface().getSimpleName());
+		}
+		
+		write(tags[0]);
+		writeEscaped(element.getUri());
+		write(TAG_END);
+		
+		if (element instanceof Named) {
+			writeNames((Named) element);
+		}
+		
+		if (element instanceof PhysicalEntity) {
+			writePhysicalEntity((PhysicalEntity) element);
+		}
+		else if (element instanceof EntityReference) {
+			EntityReference entityRef = (EntityReference) element;
+			writeResources(XREF, entityRef.getXref());
+			writeResources(ENTITY_FEATURE, entityRef.getEntityFeature());
+		}
+		else if (element instanceof Interaction) {
+			writeInteraction((Interaction) element);
+		}
+		else if (element instanceof Xref) {
+			Xref xref = (Xref) element;
+			writeLiteral(ID, xref.getId());
+			writeLiteral(DB, xref.getDb());
+		}
+		else if (element instanceof ControlledVocabulary) {
+			for (String term : ((ControlledVocabulary) element).getTerm()) {
+				writeLiteral(TERM, term);
+			}
+		}
+		else if (element instanceof ModificationFeature) {
+			writeResource(MODIFICATION_TYPE, ((ModificationFeature) element).getModificationType());
+		}
+		
+		write(tags[1]);
+	}
+	
+	// Write display name and the other names if any, display name is one of the names in paxtools
+	private void writeNames(Named named) throws IOException {
+		String displayName = named.getDisplayName();
+		writeLiteral(DISPLAY_NAME, displayName);
+		
+		for (String name : named.getName()) {
+			if (!name.equals(displayName)) {
+				writeLiteral(NAME, name);
+			}
+		}
+	}
+	
+	private void writePhysicalEntity(PhysicalEntity entity) throws IOException {
+		writeResource(CELLULAR_LOCATION, entity.getCellularLocation());
+		writeResources(FEATURE, entity.getFeature());
+		
+		if (entity instanceof SimplePhysicalEntity) {
+			writeResource(ENTITY_REFERENCE, ((SimplePhysicalEntity) entity).getEntityReference());
+		}
+	}
+	
+	// Write the participants by the most specific properties they are added by, the generic participant property
+	// is written only for the participants that are not covered by them
+	private void writeInteraction(Interaction interaction) throws IOException {
+		if (interaction instanceof Conversion) {
+			Conversion conversion = (Conversion) interaction;
+			writeResources(LEFT, conversion.getLeft());
+			writeResources(RIGHT, conversion.getRight());
+			writeEnum(CONVERSION_DIRECTION, conversion.getConversionDirection());
+			writeOtherParticipants(interaction, conversion.getLeft(), conversion.getRight());
+		}
+		else if (interaction instanceof TemplateReaction) {
+			TemplateReaction reaction = (TemplateReaction) interaction;
+			writeResources(PRODUCT, reaction.getProduct());
+			writeOtherParticipants(interaction, reaction.getProduct(), Collections.emptySet());
+		}
+		else if (interaction instanceof Control) {
+			Control control = (Control) interaction;
+			writeResources(CONTROLLER, control.getController());
+			writeResources(CONTROLLED, control.getControlled());
+			writeEnum(CONTROL_TYPE, control.getControlType());
+			writeOtherParticipants(interaction, control.getController(), control.getControlled());
+		}
+		else {
+			writeResources(PARTICIPANT, interaction.getParticipant());
+		}
+	}
+	
+	private void writeOtherParticipants(Interaction interaction, Collection<?> covered, Collection<?> alsoCovered) throws IOException {
+		for (BioPAXElement participant : interaction.getParticipant()) {
+			if (!containsSame(covered, participant) && !containsSame(alsoCovered, participant)) {
+				writeResource(PARTICIPANT, participant);
+			}
+		}
+	}
+	
+	// Check the small property collections by identity, hash code of paxtools elements is computed on each call
+	private static boolean containsSame(Collection<?> collection, Object element) {
+		for (Object member : collection) {
+			if (member == element) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private void writeResources(byte[][] property, Collection<? extends BioPAXElement> elements) throws IOException {
+		for (BioPAXElement element : elements) {
+			writeResource(property, element);
+		}
+	}
+	
+	private void writeResource(byte[][] property, BioPAXElement element) throws IOException {
+		if (element == null) {
+			return;
+		}
+		
+		write(property[0]);
+		writeEscaped(element.getUri());
+		write(RESOURCE_END);
+	}
+	
+	private void writeEnum(byte[][] property, Enum<?> value) throws IOException {
+		if (value != null) {
+			writeLiteral(property, value.name());
+		}
+	}
+	
+	private void writeLiteral(byte[][] property, String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		
+		write(property[1]);
+		writeEscaped(value);
+		write(property[2]);
+	}
+	
+	private void write(byte[] bytes) throws IOException {
+		if (position + bytes.length > buffer.length) {
+			flushBuffer();
+			
+			if (bytes.length > buffer.length) {
+				out.write(bytes);
+				return;
+			}
+		}
+		
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+	
+	// Write the given string as UTF-8 with the XML special characters escaped. Tab, line feed and carriage return are
+	// written as character references so that they are kept in attribute values too, the other control characters
+	// and the noncharacters U+FFFE and U+FFFF are not allowed in XML 1.0 at all, so they are dropped.
+	private void writeEscaped(String value) throws IOException {
+		int length = value.length();
+		
+		for (int i = 0; i < length; i++) {
+			// reserve room for the longest escape or encoded character
+			if (position + MAX_CHAR_BYTES > buffer.length) {
+				flushBuffer();
+			}
+			
+			char c = value.charAt(i);
+			
+			if (c < 0x80) {
+				switch (c) {
+				case '&':
+					writeAscii("&amp;");
+					break;
+				case '<':
+					writeAscii("&lt;");
+					break;
+				case '>':
+					writeAscii("&gt;");
+					break;
+				case '"':
+					writeAscii("&quot;");
+					break;
+				case '\t':
+					writeAscii("&#9;");
+					break;
+				case '\n':
+					writeAscii("&#10;");
+					break;
+				case '\r':
+					writeAscii("&#13;");
+					break;
+				default:
+					if (c >= 0x20) {
+						buffer[position++] = (byte) c;
+					}
+				}
+			}
+			else if (c < 0x800) {
+				buffer[position++] = (byte) (0xC0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			}
+			else if (Character.isSurrogate(c)) {
+				// an unpaired surrogate can not be encoded, write a replacement character as String.getBytes does
+				buffer[position++] = (byte) '?';
+			}
+			else if (c < 0xFFFE) {
+				buffer[position++] = (byte) (0xE0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+	
+	private void writeAscii(String escape) {
+		for (int i = 0; i < escape.length(); i++) {
+			buffer[position++] = (byte) escape.charAt(i);
+		}
+	}
+	
+	private void flushBuffer() throws IOException {
+		out.write(buffer, 0, position);
+		position = 0;
+	}
+	
+	// Section: static helper methods
+	
+	private static byte[] encode(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+	
+	// Encode the opening tag up to the uri and the closing tag of the given class
+	private static void addElementTags(Map<Class<? extends BioPAXElement>, byte[][]> tags, Class<? extends BioPAXElement> c) {
+		String name = "bp:" + c.getSimpleName();
+		tags.put(c, new byte[][] { encode("\n<" + name + " rdf:about=\""), encode("</" + name + ">\n") });
+	}
+	
+	// Encode the fragments of a property, the start of a resource reference and the start and end of a literal
+	private static byte[][] encodeProperty(String propertyName) {
+		String name = "bp:" + propertyName;
+		
+		return new byte[][] {
+			encode(" <" + name + " rdf:resource=\""),
+			encode(" <" + name + " rdf:datatype = \"" + XSD_STRING + "\">"),
+			encode("</" + name + ">\n")
+		};
+	}
+	
+	private static Map<Class<? extends BioPAXElement>, byte[][]> createElementTags() {
+		Map<Class<? extends BioPAXElement>, byte[][]> tags = new HashMap<Class<? extends BioPAXElement>, byte[][]>();
+		
+		addElementTags(tags, Protein.class);
+		addElementTags(tags, SmallMolecule.class);
+		addElementTags(tags, ProteinReference.class);
+		addElementTags(tags, SmallMoleculeReference.class);
+		addElementTags(tags, UnificationXref.class);
+		addElementTags(tags, Conversion.class);
+		addElementTags(tags, BiochemicalReaction.class);
+		addElementTags(tags, TemplateReaction.class);
+		addElementTags(tags, Control.class);
+		addElementTags(tags, Catalysis.class);
+		addElementTags(tags, TemplateReactionRegulation.class);
+		addElementTags(tags, MolecularInteraction.class);
+		addElementTags(tags, ModificationFeature.class);
+		addElementTags(tags, SequenceModificationVocabulary.class);
+		addElementTags(tags, CellularLocationVocabulary.class);
+		
+		return tags;
+	}
+	
+	// Section: static variables
+	
+	private static final String XSD_STRING = "http://www.w3.org/2001/XMLSchema#string";
+	
+	private static final byte[] HEADER_START = encode("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<rdf:RDF\n"
+			+ " xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n"
+			+ " xmlns:owl=\"http://www.w3.org/2002/07/owl#\"\n"
+			+ " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema#\"\n"
+			+ " xmlns:bp=\"http://www.biopax.org/release/biopax-level3.owl#\"");
+	private static final byte[] XML_BASE_START = encode("\n xml:base=\"");
+	private static final byte[] HEADER_END = encode(">\n"
+			+ "<owl:Ontology rdf:about=\"\">\n"
+			+ " <owl:imports rdf:resource=\"http://www.biopax.org/release/biopax-level3.owl#\" />\n"
+			+ "</owl:Ontology>\n");
+	private static final byte[] FOOTER = encode("</rdf:RDF>\n");
+	
+	private static final byte[] QUOTE = encode("\"");
+	private static final byte[] TAG_END = encode("\">\n");
+	private static final byte[] RESOURCE_END = encode("\" />\n");
+	
+	private static final byte[][] DISPLAY_NAME = encodeProperty("displayName");
+	private static final byte[][] NAME = encodeProperty("name");
+	private static final byte[][] CELLULAR_LOCATION = encodeProperty("cellularLocation");
+	private static final byte[][] FEATURE = encodeProperty("feature");
+	private static final byte[][] ENTITY_REFERENCE = encodeProperty("entityReference");
+	private static final byte[][] ENTITY_FEATURE = encodeProperty("entityFeature");
+	private static final byte[][] XREF = encodeProperty("xref");
+	private static final byte[][] ID = encodeProperty("id");
+	private static final byte[][] DB = encodeProperty("db");
+	private static final byte[][] TERM = encodeProperty("term");
+	private static final byte[][] MODIFICATION_TYPE = encodeProperty("modificationType");
+	private static final byte[][] LEFT = encodeProperty("left");
+	private static final byte[][] RIGHT = encodeProperty("right");
+	private static final byte[][] CONVERSION_DIRECTION = encodeProperty("conversionDirection");
+	private static final byte[][] PRODUCT = encodeProperty("product");
+	private static final byte[][] PARTICIPANT = encodeProperty("participant");
+	private static final byte[][] CONTROLLER = encodeProperty("controller");
+	private static final byte[][] CONTROLLED = encodeProperty("controlled");
+	private static final byte[][] CONTROL_TYPE = encodeProperty("controlType");
+	
+	// Map of supported element class to its opening and closing tag fragments
+	private static final Map<Class<? extends BioPAXElement>, byte[][]> ELEMENT_TAGS = createElementTags();
+	
+	private static final int BUFFER_SIZE = 8192;
+	// Longest escape sequence or UTF-8 encoding of a character
+	private static final int MAX_CHAR_BYTES = 6;
+}
@@ -0,0 +1,20 @@
+package model;
+
+import java.util.UUID;
+
+import org.biopax.paxtools.model.BioPAXElement;
+
+/*
+ * Generates a random UUID for each element.
+ */
+public class UuidIdGenerator implements IdGenerator {
+	
+	@Override
+	public String generateId(Class<? extends BioPAXElement> c, Object... identifyingFields) {
+		return UUID.randomUUID().toString();
+	}
+	
+	@Override
+	public void reset() {
+	}
+}
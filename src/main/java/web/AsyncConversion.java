@@ -0,0 +1,347 @@
+package web;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/*
+ * Tracks an async conversion request from receiving its body to completing its response, so that the container
+ * timeout and the conversion thread never both answer it. A request that times out while its body is received
+ * or while it waits in the queue is answered right away with 408 or 503. A request that times out while it is
+ * converted is answered with 503 if its response is not committed yet, and is completed right away either way,
+ * so that the timeout never holds a container thread until the conversion ends. The conversion writes to its
+ * response through a guard that fails once the request is timed out, so it stops at its next write and never
+ * touches a response that the container has taken back.
+ */
+class AsyncConversion implements AsyncListener {
+	
+	private AsyncContext asyncContext;
+	private int retryAfterSeconds;
+	private AtomicReference<State> state;
+	private volatile boolean timedOut;
+	// Held by each write of the conversion to its response and by the timeout that takes the response over
+	private final Object responseLock = new Object();
+	private HttpServletResponse guardedResponse;
+	
+	public AsyncConversion(AsyncContext asyncContext, int retryAfterSeconds) {
+		this.asyncContext = asyncContext;
+		this.retryAfterSeconds = retryAfterSeconds;
+		
+		state = new AtomicReference<State>(State.RECEIVING);
+		guardedResponse = new GuardedResponse((HttpServletResponse) asyncContext.getResponse());
+	}
+	
+	// Section: public methods
+	
+	public HttpServletRequest getRequest() {
+		return (HttpServletRequest) asyncContext.getRequest();
+	}
+	
+	// Get the response that the conversion writes to, it fails once the request is timed out
+	public HttpServletResponse getResponse() {
+		return guardedResponse;
+	}
+	
+	// The body is received and the request is handed to the executor, false if it is answered already
+	public boolean queue() {
+		return state.compareAndSet(State.RECEIVING, State.QUEUED);
+	}
+	
+	// The conversion starts on an executor thread, false if the request is answered already
+	public boolean start() {
+		return state.compareAndSet(State.QUEUED, State.CONVERTING);
+	}
+	
+	// Check if the request timed out while it was converted, the conversion is abandoned then
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+	
+	// Answer the request that is not converted with the given status and message, unless it is answered already
+	public void reject(int status, String message) {
+		if (!cancel()) {
+			return;
+		}
+		
+		try {
+			answer(status, message);
+		}
+		finally {
+			completeContext();
+		}
+	}
+	
+	// Drop a request whose body cannot be received, e.g. since the client is gone
+	public void fail(Throwable t) {
+		if (cancel()) {
+			completeContext();
+		}
+	}
+	
+	// Complete the response of a finished conversion, nothing is done if the request timed out in the meantime
+	public void complete() {
+		synchronized (responseLock) {
+			if (!state.compareAndSet(State.CONVERTING, State.COMPLETED)) {
+				return;
+			}
+		}
+		
+		completeContext();
+	}
+	
+	@Override
+	public void onTimeout(AsyncEvent event) {
+		State timedOutState = state.get();
+		
+		if (timedOutState == State.RECEIVING) {
+			reject(HttpServletResponse.SC_REQUEST_TIMEOUT, "Request body is not received in time");
+		}
+		else if (timedOutState == State.QUEUED) {
+			reject(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Conversion did not start in time, retry later");
+		}
+		
+		// The state can change in the meantime, a conversion that has started is abandoned. The lock is only held
+		// by a single write of the conversion, which the write timeout of the connector bounds.
+		synchronized (responseLock) {
+			if (!state.compareAndSet(State.CONVERTING, State.COMPLETED)) {
+				return;
+			}
+			
+			timedOut = true;
+			
+			if (!asyncContext.getResponse().isCommitted()) {
+				asyncContext.getResponse().reset();
+				answer(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Conversion did not finish in time, retry later");
+			}
+		}
+		
+		completeContext();
+	}
+	
+	@Override
+	public void onError(AsyncEvent event) {
+		fail(event.getThrowable());
+	}
+	
+	@Override
+	public void onComplete(AsyncEvent event) {
+		state.set(State.COMPLETED);
+	}
+	
+	@Override
+	public void onStartAsync(AsyncEvent event) {
+	}
+	
+	// Section: private helper methods
+	
+	// Take over a request that is not converted yet, false if it is converted or answered already
+	private boolean cancel() {
+		State current = state.get();
+		
+		while (current == State.RECEIVING || current == State.QUEUED) {
+			if (state.compareAndSet(current, State.COMPLETED)) {
+				return true;
+			}
+			
+			current = state.get();
+		}
+		
+		return false;
+	}
+	
+	private void answer(int status, String message) {
+		try {
+			HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+			
+			if (status == SC_TOO_MANY_REQUESTS || status == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+				// clients are expected to back off rather than retry right away
+				response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+			}
+			
+			response.setStatus(status);
+			response.getWriter().append(message);
+		}
+		catch (IOException | IllegalStateException e) {
+			// the client is gone
+		}
+	}
+	
+	private void completeContext() {
+		try {
+			asyncContext.complete();
+		}
+		catch (IllegalStateException e) {
+			// completed by the container already, e.g. after an error
+		}
+	}
+	
+	// Fail an access of the conversion to its response once the request is timed out
+	private void checkConverting() throws IOException {
+		if (state.get() != State.CONVERTING) {
+			throw new IOException("Conversion is abandoned since the request timed out");
+		}
+	}
+	
+	// Section: helper classes
+	
+	private enum State {
+		RECEIVING, QUEUED, CONVERTING, COMPLETED
+	}
+	
+	/*
+	 * Response of the conversion whose changes fail once the request is timed out.
+	 */
+	private class GuardedResponse extends HttpServletResponseWrapper {
+		
+		private ServletOutputStream out;
+		
+		GuardedResponse(HttpServletResponse response) {
+			super(response);
+		}
+		
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			synchronized (responseLock) {
+				checkConverting();
+				
+				if (out == null) {
+					out = new GuardedOutputStream(super.getOutputStream());
+				}
+				
+				return out;
+			}
+		}
+		
+		@Override
+		public void setHeader(String name, String value) {
+			synchronized (responseLock) {
+				if (state.get() == State.CONVERTING) {
+					super.setHeader(name, value);
+				}
+			}
+		}
+		
+		@Override
+		public void setStatus(int status) {
+			synchronized (responseLock) {
+				if (state.get() == State.CONVERTING) {
+					super.setStatus(status);
+				}
+			}
+		}
+		
+		@Override
+		public void setContentType(String type) {
+			synchronized (responseLock) {
+				if (state.get() == State.CONVERTING) {
+					super.setContentType(type);
+				}
+			}
+		}
+		
+		@Override
+		public void setContentLength(int length) {
+			setContentLengthLong(length);
+		}
+		
+		@Override
+		public void setContentLengthLong(long length) {
+			synchronized (responseLock) {
+				if (state.get() == State.CONVERTING) {
+					super.setContentLengthLong(length);
+				}
+			}
+		}
+		
+		@Override
+		public void setBufferSize(int size) {
+			synchronized (responseLock) {
+				if (state.get() == State.CONVERTING) {
+					super.setBufferSize(size);
+				}
+			}
+		}
+		
+		@Override
+		public void reset() {
+			synchronized (responseLock) {
+				if (state.get() == State.CONVERTING) {
+					super.reset();
+				}
+			}
+		}
+		
+		@Override
+		public void sendError(int status) throws IOException {
+			synchronized (responseLock) {
+				checkConverting();
+				super.sendError(status);
+			}
+		}
+		
+		@Override
+		public void sendError(int status, String message) throws IOException {
+			synchronized (responseLock) {
+				checkConverting();
+				super.sendError(status, message);
+			}
+		}
+	}
+	
+	/*
+	 * Output stream of the conversion whose writes fail once the request is timed out.
+	 */
+	private class GuardedOutputStream extends ServletOutputStream {
+		
+		private ServletOutputStream out;
+		
+		GuardedOutputStream(ServletOutputStream out) {
+			this.out = out;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			synchronized (responseLock) {
+				checkConverting();
+				out.write(b);
+			}
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			synchronized (responseLock) {
+				checkConverting();
+				out.write(b, off, len);
+			}
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			synchronized (responseLock) {
+				checkConverting();
+				out.flush();
+			}
+		}
+		
+		@Override
+		public boolean isReady() {
+			return out.isReady();
+		}
+		
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			out.setWriteListener(writeListener);
+		}
+	}
+	
+	// Too Many Requests status that is not defined by servlet api
+	static final int SC_TOO_MANY_REQUESTS = 429;
+}
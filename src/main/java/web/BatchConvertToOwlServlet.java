@@ -0,0 +1,243 @@
+package web;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+
+import converter.ConverterPool;
+import converter.FactoidToBiopax;
+import converter.InvalidTemplatesException;
+import converter.TemplatesValidator;
+import converter.ValidationLimits;
+import metrics.ConversionMetrics;
+import model.IdStrategy;
+import model.OwlWriterType;
+
+/**
+ * Servlet that converts many factoid documents in a single request. The request body is newline delimited
+ * JSON where each line is a templates array. Documents are converted in parallel and one result line is
+ * streamed back per input line, in input order, as soon as it and all the results before it are ready.
+ */
+@WebServlet("/BatchConvertToOwl")
+public class BatchConvertToOwlServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+	
+	private transient ExecutorService executor;
+	private int parallelism;
+	private IdStrategy idStrategy;
+	private OwlWriterType owlWriterType;
+	// Converters of the worker threads that are reused from one document to the next
+	private transient ConverterPool converterPool;
+	private ValidationLimits validationLimits;
+	// Each line is read and validated as a whole before its model is built
+	private transient TemplatesValidator templatesValidator;
+	// Size of the largest request body, the lines after the limit are not converted
+	private int maxBodyBytes;
+	
+	/**
+	 * @see HttpServlet#init()
+	 */
+	@Override
+	public void init() throws ServletException {
+		parallelism = Runtime.getRuntime().availableProcessors();
+		idStrategy = InitParameters.getIdStrategy(getServletConfig(), "idStrategy", InitParameters.DEFAULT_ID_STRATEGY);
+		owlWriterType = InitParameters.getOwlWriterType(getServletConfig(), "owlWriter", InitParameters.DEFAULT_OWL_WRITER_TYPE);
+		executor = Executors.newFixedThreadPool(parallelism, createThreadFactory());
+		validationLimits = InitParameters.getValidationLimits(getServletConfig());
+		templatesValidator = new TemplatesValidator(validationLimits);
+		maxBodyBytes = InitParameters.getInt(getServletConfig(), "maxBodyBytes", InitParameters.DEFAULT_MAX_BODY_BYTES);
+		
+		int converterMaxElements = InitParameters.getInt(getServletConfig(), "converterMaxElements", InitParameters.DEFAULT_CONVERTER_MAX_ELEMENTS);
+		converterPool = new ConverterPool(this::createConverter, converterMaxElements);
+	}
+	
+	/**
+	 * @see HttpServlet#destroy()
+	 */
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * @see HttpServlet#doPost(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (request.getContentLengthLong() > maxBodyBytes) {
+			ConversionMetrics.getInstance().recordRejection();
+			response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body is larger than " + maxBodyBytes + " bytes");
+			return;
+		}
+		
+		// A body without a declared length is limited while it is read
+		LimitedInputStream in = new LimitedInputStream(request.getInputStream(), maxBodyBytes);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		
+		response.setContentType(NDJSON_CONTENT_TYPE);
+		Writer writer = response.getWriter();
+		Gson gson = new Gson();
+		
+		// Results that are submitted but not written yet in input order. The number of documents in flight
+		// is bounded so that a large batch is never read into memory as a whole.
+		Deque<Future<JsonObject>> pending = new ArrayDeque<Future<JsonObject>>();
+		int maxPending = parallelism * PENDING_DOCUMENTS_PER_WORKER;
+		
+		String line;
+		int index = 0;
+		JsonObject tooLarge = null;
+		
+		try {
+			try {
+				while ((line = reader.readLine()) != null) {
+					final int documentIndex = index++;
+					final String document = line;
+					pending.add(executor.submit(() -> convertDocument(documentIndex, document)));
+					
+					if (pending.size() >= maxPending) {
+						writeResult(pending.poll(), gson, writer);
+					}
+				}
+			}
+			catch (LimitedInputStream.BodyTooLargeException e) {
+				// the lines before the limit still get their results, the line that crosses it gets the error
+				ConversionMetrics.getInstance().recordRejection();
+				tooLarge = createError(index, e.getMessage());
+			}
+			
+			while (!pending.isEmpty()) {
+				writeResult(pending.poll(), gson, writer);
+			}
+			
+			if (tooLarge != null) {
+				writeLine(tooLarge, gson, writer);
+			}
+		}
+		finally {
+			// the client is gone or the request failed, documents that wait for a worker are not converted anymore
+			for (Future<JsonObject> future : pending) {
+				future.cancel(false);
+			}
+		}
+	}
+	
+	// Convert a single document by the converter of the worker thread and wrap the result or the failure in a JSON object
+	// The line is validated by the limits before it takes a converter, so an invalid line builds no model
+	private JsonObject convertDocument(int index, String document) {
+		JsonArray templates;
+		
+		try {
+			if (document.trim().isEmpty()) {
+				throw new InvalidTemplatesException("Line is empty");
+			}
+			
+			templates = templatesValidator.readTemplates(new StringReader(document));
+		}
+		catch (InvalidTemplatesException | JsonSyntaxException e) {
+			ConversionMetrics.getInstance().recordRejection();
+			return createError(index, e.getMessage());
+		}
+		
+		JsonObject result = new JsonObject();
+		result.addProperty("index", index);
+		
+		FactoidToBiopax converter = converterPool.acquire();
+		
+		try {
+			converter.addToModel(templates);
+			
+			result.addProperty("owl", converter.convertToOwl());
+			ConversionMetrics.getInstance().recordConversion(converter);
+		}
+		catch (InvalidTemplatesException e) {
+			ConversionMetrics.getInstance().recordRejection();
+			return createError(index, e.getMessage());
+		}
+		catch (RuntimeException e) {
+			ConversionMetrics.getInstance().recordFailure();
+			return createError(index, e.getMessage());
+		}
+		finally {
+			converterPool.release(converter);
+		}
+		
+		return result;
+	}
+	
+	private static JsonObject createError(int index, String message) {
+		JsonObject result = new JsonObject();
+		result.addProperty("index", index);
+		result.addProperty("error", String.valueOf(message));
+		
+		return result;
+	}
+	
+	private FactoidToBiopax createConverter() {
+		FactoidToBiopax converter = new FactoidToBiopax(idStrategy);
+		converter.setOwlWriterType(owlWriterType);
+		converter.setValidationLimits(validationLimits);
+		
+		return converter;
+	}
+	
+	// Wait for the result of the given document and write it as a line, flushing so that it reaches the client
+	private static void writeResult(Future<JsonObject> future, Gson gson, Writer writer) throws IOException, ServletException {
+		JsonObject result;
+		
+		try {
+			result = future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServletException("Batch conversion is interrupted", e);
+		}
+		catch (ExecutionException e) {
+			throw new ServletException("Batch conversion failed", e.getCause());
+		}
+		
+		writeLine(result, gson, writer);
+	}
+	
+	private static void writeLine(JsonObject result, Gson gson, Writer writer) throws IOException {
+		gson.toJson(result, writer);
+		writer.write('\n');
+		writer.flush();
+	}
+	
+	private static ThreadFactory createThreadFactory() {
+		AtomicInteger threadCount = new AtomicInteger();
+		
+		return runnable -> {
+			Thread thread = new Thread(runnable, "batch-converter-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+	
+	private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson;charset=UTF-8";
+	
+	// Number of documents that can wait for a worker or for being written per worker thread
+	private static final int PENDING_DOCUMENTS_PER_WORKER = 2;
+
+}
@@ -0,0 +1,65 @@
+package web;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+
+/*
+ * Receives a request body of a declared length by the non-blocking reads of the container, so that a client that
+ * sends its body slowly holds only its connection rather than a conversion thread. The container calls back as
+ * the body arrives and the received body is handed over once all of it is read.
+ */
+class BodyReceiver implements ReadListener {
+	
+	private ServletInputStream in;
+	private byte[] body;
+	private int count;
+	private Runnable onReceived;
+	private Consumer<Throwable> onFailed;
+	
+	public BodyReceiver(ServletInputStream in, int length) {
+		this.in = in;
+		body = new byte[length];
+	}
+	
+	// Section: public methods
+	
+	// Start receiving, one of the callbacks is called on a container thread once the body is received or it fails
+	public void start(Runnable onReceived, Consumer<Throwable> onFailed) {
+		this.onReceived = onReceived;
+		this.onFailed = onFailed;
+		in.setReadListener(this);
+	}
+	
+	@Override
+	public void onDataAvailable() throws IOException {
+		while (count < body.length && in.isReady()) {
+			int n = in.read(body, count, body.length - count);
+			
+			if (n == -1) {
+				break;
+			}
+			
+			count += n;
+		}
+	}
+	
+	@Override
+	public void onAllDataRead() {
+		onReceived.run();
+	}
+	
+	@Override
+	public void onError(Throwable t) {
+		onFailed.accept(t);
+	}
+	
+	// Get the received body, a body that ended before its declared length is given as far as it is received
+	public InputStream openStream() {
+		return new ByteArrayInputStream(body, 0, count);
+	}
+}
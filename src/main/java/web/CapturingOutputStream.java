@@ -0,0 +1,66 @@
+package web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+ * Output stream that holds the written bytes back from the underlying stream as long as they do not exceed the
+ * given limit, so that the caller can still set headers once the whole output is known. Once the limit is
+ * exceeded the held bytes are written out, the copy is dropped and only the pass through continues.
+ */
+class CapturingOutputStream extends FilterOutputStream {
+	
+	private long limit;
+	private ByteArrayOutputStream captured;
+	
+	public CapturingOutputStream(OutputStream out, long limit) {
+		super(out);
+		this.limit = limit;
+		captured = new ByteArrayOutputStream();
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		if (reserve(1)) {
+			captured.write(b);
+		}
+		else {
+			out.write(b);
+		}
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (reserve(len)) {
+			captured.write(b, off, len);
+		}
+		else {
+			out.write(b, off, len);
+		}
+	}
+	
+	// Held bytes are not flushed, flushing the underlying stream would commit the response before its headers are set
+	@Override
+	public void flush() throws IOException {
+		if (captured == null) {
+			out.flush();
+		}
+	}
+	
+	// Get the captured bytes, none of which is written to the underlying stream, or null if the limit was exceeded
+	public byte[] getCaptured() {
+		return captured == null ? null : captured.toByteArray();
+	}
+	
+	// Check if the given number of bytes can still be captured, write the held bytes out if they would exceed the limit
+	private boolean reserve(int len) throws IOException {
+		if (captured != null && captured.size() + len > limit) {
+			captured.writeTo(out);
+			captured = null;
+		}
+		
+		return captured != null;
+	}
+}
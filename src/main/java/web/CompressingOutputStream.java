@@ -0,0 +1,180 @@
+package web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+/*
+ * Output stream that compresses the response body unless it turns out to be too small to be worth it. The first
+ * bytes are held back until the minimum size is reached, then the Content-Encoding header is set and the rest is
+ * streamed through the compressor. A body that ends before reaching the minimum size is written as it is with
+ * its content length. finish() must be called once the body is written, or abort() if it is not completed, so
+ * that the native memory of the compressor is released either way. The body is written to a servlet response or
+ * to any other Response, e.g. the exchange of the standalone server.
+ */
+class CompressingOutputStream extends OutputStream {
+	
+	private Response response;
+	private String coding;
+	private int level;
+	private int minBytes;
+	
+	// Bytes held back until the decision to compress, null once compression has started
+	private ByteArrayOutputStream pending;
+	private DeflaterOutputStream out;
+	// Compressor of the stream, null until compression has started
+	private Deflater deflater;
+	private boolean finished;
+	
+	public CompressingOutputStream(HttpServletResponse response, String coding, int level, int minBytes) {
+		this(new Response() {
+			@Override
+			public void setHeader(String name, String value) {
+				response.setHeader(name, value);
+			}
+			
+			@Override
+			public OutputStream openBody(long contentLength) throws IOException {
+				if (contentLength >= 0) {
+					response.setContentLengthLong(contentLength);
+				}
+				
+				return response.getOutputStream();
+			}
+		}, coding, level, minBytes);
+	}
+	
+	public CompressingOutputStream(Response response, String coding, int level, int minBytes) {
+		this.response = response;
+		this.coding = coding;
+		this.level = level;
+		this.minBytes = minBytes;
+		pending = new ByteArrayOutputStream(Math.min(minBytes, INITIAL_PENDING_SIZE));
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (out != null) {
+			out.write(b, off, len);
+			return;
+		}
+		
+		pending.write(b, off, len);
+		
+		if (pending.size() >= minBytes) {
+			startCompression();
+		}
+	}
+	
+	// Flushing does not force the held back bytes out, otherwise the size decision could not be made
+	@Override
+	public void flush() throws IOException {
+		if (out != null) {
+			out.flush();
+		}
+	}
+	
+	// Complete the response body, either the trailer of the compressed stream or the held back bytes as they are
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		
+		finished = true;
+		
+		if (out == null) {
+			OutputStream body = response.openBody(pending.size());
+			pending.writeTo(body);
+			body.flush();
+			return;
+		}
+		
+		try {
+			out.close();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+	
+	// Give up a body that is not completed, e.g. since the conversion failed, and release the compressor. The
+	// response is expected to be reset or dropped since the compressed part of it cannot be completed.
+	public void abort() {
+		if (finished) {
+			return;
+		}
+		
+		finished = true;
+		
+		if (deflater != null) {
+			deflater.end();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		finish();
+	}
+	
+	// Section: private helper methods
+	
+	private void startCompression() throws IOException {
+		response.setHeader("Content-Encoding", coding);
+		
+		OutputStream body = response.openBody(-1);
+		
+		if (ContentCoding.GZIP.equals(coding)) {
+			GzipOutputStream gzipOut = new GzipOutputStream(body, level);
+			deflater = gzipOut.getDeflater();
+			out = gzipOut;
+		}
+		else {
+			deflater = new Deflater(level);
+			out = new DeflaterOutputStream(body, deflater, BUFFER_SIZE);
+		}
+		
+		pending.writeTo(out);
+		pending = null;
+	}
+	
+	// Section: helper classes
+	
+	/*
+	 * Response that the body is written to, its headers are set before its body is opened.
+	 */
+	interface Response {
+		
+		void setHeader(String name, String value);
+		
+		// Open the body of the given length, or of a length that is not known in advance if it is -1
+		OutputStream openBody(long contentLength) throws IOException;
+	}
+	
+	/*
+	 * Gzip stream with a configurable compression level.
+	 */
+	private static class GzipOutputStream extends GZIPOutputStream {
+		
+		GzipOutputStream(OutputStream out, int level) throws IOException {
+			super(out, BUFFER_SIZE);
+			def.setLevel(level);
+		}
+		
+		Deflater getDeflater() {
+			return def;
+		}
+	}
+	
+	private static final int BUFFER_SIZE = 8192;
+	private static final int INITIAL_PENDING_SIZE = 1024;
+}
@@ -0,0 +1,113 @@
+package web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/*
+ * Helpers for the content codings of request and response bodies. Only gzip and deflate (zlib) are supported,
+ * bodies are always decoded and encoded by streams so that a payload is never held as a whole.
+ */
+final class ContentCoding {
+	
+	static final String GZIP = "gzip";
+	static final String DEFLATE = "deflate";
+	static final String IDENTITY = "identity";
+	
+	private ContentCoding() {
+	}
+	
+	// Get the normalized coding of the given Content-Encoding header value or null if it is not supported
+	static String getRequestCoding(String contentEncoding) {
+		if (contentEncoding == null || contentEncoding.trim().isEmpty()) {
+			return IDENTITY;
+		}
+		
+		String coding = normalize(contentEncoding);
+		
+		return GZIP.equals(coding) || DEFLATE.equals(coding) || IDENTITY.equals(coding) ? coding : null;
+	}
+	
+	// Wrap the request body by a decoding stream for the given normalized coding
+	static InputStream decode(InputStream in, String coding) throws IOException {
+		if (GZIP.equals(coding)) {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		}
+		
+		if (DEFLATE.equals(coding)) {
+			return new InflaterInputStream(in);
+		}
+		
+		return in;
+	}
+	
+	// Select the coding of the response by the given Accept-Encoding header value, gzip is preferred over deflate
+	// when both are acceptable and null is returned when neither of them is. A coding that is not listed is
+	// acceptable by the quality of the wildcard if there is one.
+	static String selectResponseCoding(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		
+		Double gzipQuality = null;
+		Double deflateQuality = null;
+		Double anyQuality = null;
+		
+		for (String token : acceptEncoding.split(",")) {
+			String[] parts = token.split(";");
+			String coding = normalize(parts[0]);
+			
+			if (GZIP.equals(coding)) {
+				gzipQuality = getQuality(parts);
+			}
+			else if (DEFLATE.equals(coding)) {
+				deflateQuality = getQuality(parts);
+			}
+			else if ("*".equals(coding)) {
+				anyQuality = getQuality(parts);
+			}
+		}
+		
+		if (isAcceptable(gzipQuality, anyQuality)) {
+			return GZIP;
+		}
+		
+		return isAcceptable(deflateQuality, anyQuality) ? DEFLATE : null;
+	}
+	
+	// Section: private helper methods
+	
+	private static String normalize(String coding) {
+		String normalized = coding.trim().toLowerCase(Locale.ROOT);
+		
+		return "x-gzip".equals(normalized) ? GZIP : normalized;
+	}
+	
+	private static boolean isAcceptable(Double quality, Double anyQuality) {
+		Double effectiveQuality = quality != null ? quality : anyQuality;
+		
+		return effectiveQuality != null && effectiveQuality > 0;
+	}
+	
+	// Get the quality value of the given coding parameters, a coding without a quality value has quality 1
+	private static double getQuality(String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String parameter = parts[i].trim();
+			
+			if (parameter.startsWith("q=")) {
+				try {
+					return Double.parseDouble(parameter.substring(2));
+				}
+				catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		
+		return 1;
+	}
+	
+	private static final int BUFFER_SIZE = 8192;
+}
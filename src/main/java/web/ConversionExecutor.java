@@ -0,0 +1,59 @@
+package web;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Executor that runs conversions off the container request threads. Waiting tasks are kept in a bounded
+ * queue and new tasks are rejected right away when the queue is full so that callers can apply backpressure.
+ * Conversions are CPU bound, so they run on a fixed number of platform daemon threads, usually one per core.
+ */
+class ConversionExecutor {
+	
+	private ThreadPoolExecutor executor;
+	
+	public ConversionExecutor(String name, int threads, int queueCapacity) {
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, 
+				new ArrayBlockingQueue<Runnable>(queueCapacity), createThreadFactory(name), new ThreadPoolExecutor.AbortPolicy());
+	}
+	
+	// Try to run the given task, return false if the queue is full and the task is rejected
+	public boolean tryExecute(Runnable task) {
+		try {
+			executor.execute(task);
+		}
+		catch (RejectedExecutionException e) {
+			return false;
+		}
+		
+		return true;
+	}
+	
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+	
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+	
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	// Section: private helper methods
+	
+	private static ThreadFactory createThreadFactory(String name) {
+		AtomicInteger threadCount = new AtomicInteger();
+		
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
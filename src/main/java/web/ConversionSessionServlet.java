@@ -0,0 +1,274 @@
+package web;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import converter.ConversionSession;
+import converter.InvalidTemplatesException;
+import converter.SessionRegistry;
+import converter.TemplatesValidator;
+import converter.ValidationLimits;
+import metrics.ConversionMetrics;
+
+/**
+ * Servlet that keeps a conversion session per document so that an edit only sends the changed templates.
+ *
+ * POST /Session opens a session, optionally with an initial templates array, and returns its id.
+ * POST /Session/{id} takes {"remove": [...], "add": [...]} and returns the owl of the updated document.
+ * GET /Session/{id} returns the owl of the document and DELETE /Session/{id} closes the session.
+ */
+@WebServlet({ "/Session", "/Session/*" })
+public class ConversionSessionServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+	
+	private transient SessionRegistry registry;
+	// Request bodies are read through the limits and validated before they change a session
+	private transient TemplatesValidator templatesValidator;
+	private int maxBodyBytes;
+	
+	/**
+	 * @see HttpServlet#init()
+	 */
+	@Override
+	public void init() throws ServletException {
+		int ttlSeconds = InitParameters.getInt(getServletConfig(), "sessionTtlSeconds", DEFAULT_TTL_SECONDS);
+		int maxElements = InitParameters.getInt(getServletConfig(), "sessionMaxElements", DEFAULT_MAX_ELEMENTS);
+		
+		ValidationLimits validationLimits = InitParameters.getValidationLimits(getServletConfig());
+		
+		registry = new SessionRegistry(ttlSeconds * 1000L, maxElements, validationLimits);
+		templatesValidator = new TemplatesValidator(validationLimits);
+		maxBodyBytes = InitParameters.getInt(getServletConfig(), "maxBodyBytes", InitParameters.DEFAULT_MAX_BODY_BYTES);
+	}
+	
+	/**
+	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		ConversionSession session = getSession(request, response);
+		
+		if (session != null) {
+			writeOwl(session, response);
+		}
+	}
+	
+	/**
+	 * @see HttpServlet#doPost(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (request.getContentLengthLong() > maxBodyBytes) {
+			ConversionMetrics.getInstance().recordRejection();
+			response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body is larger than " + maxBodyBytes + " bytes");
+			return;
+		}
+		
+		ConversionSession session = null;
+		
+		if (getSessionId(request) != null) {
+			session = getSession(request, response);
+			
+			if (session == null) {
+				return;
+			}
+		}
+		
+		// The templates are read and validated as they stream in, a body without a declared length is limited
+		// while it is read, so that a large or deeply nested body is rejected before it reaches the session
+		JsonReader jsonReader = new JsonReader(new InputStreamReader(new LimitedInputStream(request.getInputStream(), maxBodyBytes), StandardCharsets.UTF_8));
+		JsonObject body;
+		
+		try {
+			body = session == null ? readInitialTemplates(jsonReader) : readChange(jsonReader);
+		}
+		catch (LimitedInputStream.BodyTooLargeException | InvalidTemplatesException | JsonParseException e) {
+			reject(e, response);
+			return;
+		}
+		catch (IOException e) {
+			// a body that is malformed or ends early is rejected, any other failure to read it is not the client's
+			JsonParseException parseException = TemplatesValidator.toJsonException(e);
+			
+			if (!(parseException instanceof JsonSyntaxException)) {
+				throw e;
+			}
+			
+			reject(parseException, response);
+			return;
+		}
+		
+		if (session == null) {
+			openSession(getArrayOrNull(body, "add"), request, response);
+		}
+		else {
+			updateSession(session, getArrayOrNull(body, "remove"), getArrayOrNull(body, "add"), response);
+		}
+	}
+	
+	/**
+	 * @see HttpServlet#doDelete(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		String id = getSessionId(request);
+		
+		if (id != null && registry.close(id)) {
+			response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+		}
+		else {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "No such session");
+		}
+	}
+	
+	// Open a new session and add the initial templates to it if there are any
+	private void openSession(JsonArray initialTemplates, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		ConversionSession session = registry.open();
+		
+		if (initialTemplates != null && !applyChange(session, null, initialTemplates, response)) {
+			// a session whose initial templates are rejected is not handed out, so it is not kept either
+			registry.close(session.getId());
+			return;
+		}
+		
+		JsonObject result = new JsonObject();
+		result.addProperty("id", session.getId());
+		result.addProperty("templates", session.getTemplateCount());
+		
+		response.setStatus(HttpServletResponse.SC_CREATED);
+		response.setHeader("Location", request.getRequestURL().append('/').append(session.getId()).toString());
+		response.setContentType(JSON_CONTENT_TYPE);
+		response.getWriter().append(result.toString());
+	}
+	
+	// Apply removed and added templates to the session and respond with the updated owl
+	private void updateSession(ConversionSession session, JsonArray removedTemplates, JsonArray addedTemplates,
+			HttpServletResponse response) throws IOException {
+		
+		if (applyChange(session, removedTemplates, addedTemplates, response)) {
+			writeOwl(session, response);
+		}
+	}
+	
+	// Apply the change to the session and account it to the element budget, false if the change is rejected for
+	// its content and bad request is sent, the session is left as it was then
+	private boolean applyChange(ConversionSession session, JsonArray removedTemplates, JsonArray addedTemplates,
+			HttpServletResponse response) throws IOException {
+		
+		try {
+			session.update(removedTemplates, addedTemplates);
+		}
+		catch (InvalidTemplatesException | JsonParseException | IllegalStateException e) {
+			reject(e, response);
+			return false;
+		}
+		
+		registry.enforceElementBudget(session);
+		return true;
+	}
+	
+	// Read the initial templates array of a new session as the "add" member, an empty body opens an empty session
+	private JsonObject readInitialTemplates(JsonReader jsonReader) throws IOException {
+		JsonObject body = new JsonObject();
+		
+		try {
+			jsonReader.peek();
+		}
+		catch (EOFException e) {
+			return body;
+		}
+		
+		body.add("add", templatesValidator.readTemplates(jsonReader));
+		TemplatesValidator.endDocument(jsonReader);
+		
+		return body;
+	}
+	
+	// Read {"remove": [...], "add": [...]} where both arrays are validated as they are read, other members are skipped
+	private JsonObject readChange(JsonReader jsonReader) throws IOException {
+		if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+			throw new InvalidTemplatesException("Request body is expected to have 'add' and 'remove' arrays");
+		}
+		
+		JsonObject body = new JsonObject();
+		jsonReader.beginObject();
+		
+		while (jsonReader.hasNext()) {
+			String name = jsonReader.nextName();
+			
+			if ((name.equals("remove") || name.equals("add")) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+				body.add(name, templatesValidator.readTemplates(jsonReader));
+			}
+			else {
+				jsonReader.skipValue();
+			}
+		}
+		
+		jsonReader.endObject();
+		TemplatesValidator.endDocument(jsonReader);
+		
+		return body;
+	}
+	
+	// Reject a request for its content with 400, or with 413 if it is too large
+	private static void reject(Exception e, HttpServletResponse response) throws IOException {
+		int status = Rejection.getStatus(e);
+		ConversionMetrics.getInstance().recordRejection();
+		response.sendError(status == 0 ? HttpServletResponse.SC_BAD_REQUEST : status, Rejection.getMessage(e));
+	}
+	
+	private static void writeOwl(ConversionSession session, HttpServletResponse response) throws IOException {
+		response.setContentType(OWL_CONTENT_TYPE);
+		response.setHeader(TEMPLATE_COUNT_HEADER, String.valueOf(session.getTemplateCount()));
+		session.convertToOwl(response.getOutputStream());
+	}
+	
+	// Get the session addressed by the request or send not found and return null
+	private ConversionSession getSession(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String id = getSessionId(request);
+		ConversionSession session = id == null ? null : registry.get(id);
+		
+		if (session == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "No such session");
+		}
+		
+		return session;
+	}
+	
+	// Get the session id from path info "/{id}" or null if the request is addressed to the sessions root
+	private static String getSessionId(HttpServletRequest request) {
+		String pathInfo = request.getPathInfo();
+		
+		if (pathInfo == null || pathInfo.length() <= 1) {
+			return null;
+		}
+		
+		return pathInfo.substring(1);
+	}
+	
+	private static JsonArray getArrayOrNull(JsonObject object, String name) {
+		JsonElement element = object.get(name);
+		
+		return element != null && element.isJsonArray() ? element.getAsJsonArray() : null;
+	}
+	
+	private static final String OWL_CONTENT_TYPE = "application/rdf+xml;charset=UTF-8";
+	private static final String JSON_CONTENT_TYPE = "application/json;charset=UTF-8";
+	private static final String TEMPLATE_COUNT_HEADER = "X-Template-Count";
+	
+	private static final int DEFAULT_TTL_SECONDS = 30 * 60;
+	private static final int DEFAULT_MAX_ELEMENTS = 1000000;
+}
@@ -1,25 +1,75 @@
 package web;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.google.gson.JsonArray;
+
+import converter.ConversionCache;
+import converter.ConverterPool;
 import converter.FactoidToBiopax;
+import converter.ResultStore;
+import converter.TemplatesDigest;
+import converter.TemplatesValidator;
+import converter.ValidationLimits;
+import converter.WarmUp;
+import metrics.ConversionMetrics;
+import model.IdStrategy;
+import model.OwlWriterType;
 
 //import org.apache.commons.io.IOUtils;
 
 /**
  * Servlet implementation class ConvertToOwl
  */
-@WebServlet("/ConvertToOwl")
+@WebServlet(urlPatterns = "/ConvertToOwl", asyncSupported = true, loadOnStartup = 1)
 public class ConvertToOwlServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
-       
+	
+	private transient ConversionExecutor executor;
+	private int retryAfterSeconds;
+	// Time a request can take to be received and to start converting before it is answered by the timeout
+	private long requestTimeoutMillis;
+	// Size of the largest body that is received before conversion, larger ones are streamed into the converter
+	private int receivedBodyBytes;
+	// Cache of conversion results by content hash, null if caching is disabled
+	private transient ConversionCache cache;
+	// Persistent store of conversion results by content hash, null if the store is disabled
+	private transient ResultStore resultStore;
+	// Writes results to the store off the response path, a result is dropped if too many wait to be written
+	private transient ConversionExecutor resultStoreWriter;
+	// Size of the largest conversion result that is cached or stored
+	private int maxCapturedBytes;
+	private IdStrategy idStrategy;
+	private OwlWriterType owlWriterType;
+	// Response compression level, 0 if responses are not compressed
+	private int compressionLevel;
+	private int compressionMinBytes;
+	// Converters of the executor threads that are reused from one conversion to the next
+	private transient ConverterPool converterPool;
+	// Limits of the request body and of the templates in it, larger requests are rejected
+	private int maxBodyBytes;
+	private ValidationLimits validationLimits;
+	// Validator of received bodies, which are read as a whole before they take a converter
+	private transient TemplatesValidator templatesValidator;
+
     /**
      * @see HttpServlet#HttpServlet()
      */
@@ -27,31 +77,485 @@ public class ConvertToOwlServlet extends HttpServlet {
         super();
         // TODO Auto-generated constructor stub
     }
-
+	
+	/**
+	 * @see HttpServlet#init()
+	 */
+	@Override
+	public void init() throws ServletException {
+		int threads = InitParameters.getInt(getServletConfig(), "conversionThreads", Runtime.getRuntime().availableProcessors());
+		int queueCapacity = InitParameters.getInt(getServletConfig(), "conversionQueueCapacity", InitParameters.DEFAULT_QUEUE_CAPACITY);
+		retryAfterSeconds = InitParameters.getInt(getServletConfig(), "retryAfterSeconds", InitParameters.DEFAULT_RETRY_AFTER_SECONDS);
+		requestTimeoutMillis = InitParameters.getInt(getServletConfig(), "requestTimeoutMillis", DEFAULT_REQUEST_TIMEOUT_MILLIS);
+		receivedBodyBytes = InitParameters.getInt(getServletConfig(), "receivedBodyBytes", DEFAULT_RECEIVED_BODY_BYTES);
+		idStrategy = InitParameters.getIdStrategy(getServletConfig(), "idStrategy", InitParameters.DEFAULT_ID_STRATEGY);
+		owlWriterType = InitParameters.getOwlWriterType(getServletConfig(), "owlWriter", InitParameters.DEFAULT_OWL_WRITER_TYPE);
+		
+		executor = new ConversionExecutor("converter", threads, queueCapacity);
+		
+		maxBodyBytes = InitParameters.getInt(getServletConfig(), "maxBodyBytes", InitParameters.DEFAULT_MAX_BODY_BYTES);
+		validationLimits = InitParameters.getValidationLimits(getServletConfig());
+		templatesValidator = new TemplatesValidator(validationLimits);
+		
+		int converterMaxElements = InitParameters.getInt(getServletConfig(), "converterMaxElements", InitParameters.DEFAULT_CONVERTER_MAX_ELEMENTS);
+		converterPool = new ConverterPool(this::createConverter, converterMaxElements);
+		
+		int cacheBytes = InitParameters.getInt(getServletConfig(), "cacheBytes", DEFAULT_CACHE_BYTES);
+		maxCapturedBytes = InitParameters.getInt(getServletConfig(), "cacheMaxEntryBytes", InitParameters.DEFAULT_MAX_CAPTURED_BYTES);
+		
+		if (cacheBytes > 0) {
+			cache = new ConversionCache(cacheBytes, maxCapturedBytes);
+		}
+		
+		ConversionMetrics.getInstance().setCache(cache);
+		
+		String resultStoreDirectory = getServletConfig().getInitParameter("resultStoreDirectory");
+		int resultStoreMegabytes = InitParameters.getInt(getServletConfig(), "resultStoreMegabytes", DEFAULT_RESULT_STORE_MEGABYTES);
+		
+		if (resultStoreDirectory != null && !resultStoreDirectory.trim().isEmpty()) {
+			try {
+				resultStore = new ResultStore(getResultStoreDirectory(Paths.get(resultStoreDirectory.trim())), resultStoreMegabytes * 1024L * 1024L);
+			}
+			catch (IOException e) {
+				throw new ServletException("Result store cannot be opened in " + resultStoreDirectory, e);
+			}
+			
+			resultStoreWriter = new ConversionExecutor("result-store", 1, RESULT_STORE_QUEUE_CAPACITY);
+		}
+		
+		ConversionMetrics.getInstance().setResultStore(resultStore);
+		
+		compressionLevel = InitParameters.getInt(getServletConfig(), "compressionLevel", InitParameters.DEFAULT_COMPRESSION_LEVEL);
+		compressionMinBytes = InitParameters.getInt(getServletConfig(), "compressionMinBytes", InitParameters.DEFAULT_COMPRESSION_MIN_BYTES);
+		
+		if (compressionLevel < 0 || compressionLevel > 9) {
+			throw new ServletException("Init parameter 'compressionLevel' is expected to be between 0 and 9 but it is " + compressionLevel);
+		}
+		
+		// Warm up before the readiness probe lets requests in, so that the first ones do not pay for class loading,
+		// reflection metadata and JIT compilation
+		int warmUpIterations = InitParameters.getInt(getServletConfig(), "warmUpIterations", InitParameters.DEFAULT_WARM_UP_ITERATIONS);
+		int warmUpTemplatesPerType = InitParameters.getInt(getServletConfig(), "warmUpTemplatesPerType", InitParameters.DEFAULT_WARM_UP_TEMPLATES_PER_TYPE);
+		WarmUp warmUp = null;
+		
+		if (warmUpIterations > 0) {
+			warmUp = new WarmUp(this::createConverter, warmUpIterations, warmUpTemplatesPerType);
+			warmUp.run();
+			
+			log("Warmed up by " + warmUpIterations + " conversions in " + warmUp.getTotalNanos() / 1000000 + " ms, the first one took "
+					+ warmUp.getFirstIterationNanos() / 1000 + " us and the last one " + warmUp.getLastIterationNanos() / 1000 + " us");
+		}
+		
+		ConversionMetrics.getInstance().recordReady(warmUp, ManagementFactory.getRuntimeMXBean().getUptime());
+		getServletContext().setAttribute(ReadinessServlet.READY_ATTRIBUTE, Boolean.TRUE);
+	}
+	
+	// Get the conversion result cache or null if caching is disabled
+	public ConversionCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * @see HttpServlet#destroy()
+	 */
+	@Override
+	public void destroy() {
+		getServletContext().removeAttribute(ReadinessServlet.READY_ATTRIBUTE);
+		executor.shutdown();
+		
+		if (resultStoreWriter != null) {
+			resultStoreWriter.shutdown();
+			resultStore.saveAccessTimes();
+		}
+	}
+	
 	/**
 	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		// TODO Auto-generated method stub
-		response.getWriter().append("Served at: ").append(request.getContextPath());
+		String contentHash = request.getParameter("hash");
+		
+		if (contentHash == null) {
+			response.getWriter().append("Served at: ").append(request.getContextPath());
+			return;
+		}
+		
+		// A result that was converted before is served by the hash of its templates without posting them again
+		if (!ResultStore.isValidKey(contentHash)) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter 'hash' is expected to be a hex encoded content hash");
+			return;
+		}
+		
+		response.setContentType(OWL_CONTENT_TYPE);
+		response.setHeader(CONTENT_HASH_HEADER, contentHash);
+		
+		if (!writeStoredResult(contentHash, request, response)) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "No stored result for the hash, post the templates to convert them");
+		}
 	}
-
+	
 	/**
 	 * @see HttpServlet#doPost(HttpServletRequest request, HttpServletResponse response)
 	 */
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		// Create input stream reader by the request
-		InputStreamReader reader = new InputStreamReader(request.getInputStream());
+		if (ContentCoding.getRequestCoding(request.getHeader("Content-Encoding")) == null) {
+			response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Supported content encodings are gzip and deflate");
+			return;
+		}
 		
-		// Add templates to converter by the reader
-		FactoidToBiopax converter = new FactoidToBiopax();
-		converter.addToModel(reader);
+		// Reject a body that is declared too large before reading any of it, bodies without a declared length
+		// or compressed ones are limited while they are read
+		if (request.getContentLengthLong() > maxBodyBytes) {
+			ConversionMetrics.getInstance().recordRejection();
+			response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body is larger than " + maxBodyBytes + " bytes");
+			return;
+		}
 		
-		// Convert the model to biopax string
-		String biopaxStr = converter.convertToOwl();
+		// Release the container thread and run the conversion on the dedicated executor. A request that does not
+		// get its body received or its conversion started in time is answered by the timeout, see AsyncConversion.
+		AsyncContext asyncContext = request.startAsync();
+		asyncContext.setTimeout(requestTimeoutMillis);
+		AsyncConversion conversion = new AsyncConversion(asyncContext, retryAfterSeconds);
+		asyncContext.addListener(conversion);
 		
-		// Append the result to the writer
-		response.getWriter().append(biopaxStr);
+		long contentLength = request.getContentLengthLong();
+		
+		if (contentLength >= 0 && contentLength <= receivedBodyBytes) {
+			// A small body is received by non-blocking reads before it takes a conversion thread, so a slow
+			// client holds only its connection
+			BodyReceiver receiver = new BodyReceiver(request.getInputStream(), (int) contentLength);
+			receiver.start(() -> submit(conversion, receiver), conversion::fail);
+		}
+		else {
+			// A large body is streamed into the converter as it arrives rather than kept in memory
+			submit(conversion, null);
+		}
 	}
-
+	
+	// Hand the request to the executor, the body is read from the receiver or from the request if it is null
+	private void submit(AsyncConversion conversion, BodyReceiver receiver) {
+		if (!conversion.queue()) {
+			return;
+		}
+		
+		boolean accepted = executor.tryExecute(() -> runConversion(conversion, receiver));
+		
+		// Reject fast when the queue is full so that clients back off instead of timing out
+		if (!accepted) {
+			conversion.reject(AsyncConversion.SC_TOO_MANY_REQUESTS, "Too many conversions in progress, retry later");
+		}
+	}
+	
+	// Convert the request and complete it whatever the result is, unless it is answered already by the timeout
+	private void runConversion(AsyncConversion conversion, BodyReceiver receiver) {
+		if (!conversion.start()) {
+			return;
+		}
+		
+		HttpServletRequest request = conversion.getRequest();
+		HttpServletResponse response = conversion.getResponse();
+		
+		try {
+			convert(request, response, receiver);
+		}
+		catch (IOException | RuntimeException e) {
+			// The timeout has answered the request already, the conversion only stopped at its next write
+			if (conversion.isTimedOut()) {
+				return;
+			}
+			
+			int status = Rejection.getStatus(e);
+			
+			if (status != 0) {
+				reject(response, status, Rejection.getMessage(e));
+			}
+			else {
+				log("Conversion failed", e);
+				ConversionMetrics.getInstance().recordFailure();
+				sendErrorIfNotCommitted(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			}
+		}
+		finally {
+			conversion.complete();
+		}
+	}
+	
+	// Convert the body of the receiver, or the body of the request as it is streamed if the receiver is null
+	private void convert(HttpServletRequest request, HttpServletResponse response, BodyReceiver receiver) throws IOException {
+		response.setContentType(OWL_CONTENT_TYPE);
+		response.setBufferSize(OUTPUT_BUFFER_SIZE);
+		
+		// Request size is counted as received, before the body is decoded
+		CountingInputStream receivedIn = new CountingInputStream(receiver == null ? request.getInputStream() : receiver.openStream());
+		Reader in = createReader(decode(receivedIn, request));
+		
+		// A streamed body is never held as a whole, each of its templates is validated as it is read into the model
+		if (receiver == null) {
+			convertToResponse(converter -> converter.addToModel(in), 0, request, response);
+			ConversionMetrics.getInstance().recordRequestBytes(receivedIn.getCount());
+			return;
+		}
+		
+		// A received body is in memory already, so it is read and validated as a whole before it takes a converter.
+		// Invalid templates are rejected before any model is built, and the templates are hashed from the same read.
+		long parseStart = System.nanoTime();
+		JsonArray templates = templatesValidator.readTemplates(in);
+		long parseNanos = System.nanoTime() - parseStart;
+		ConversionMetrics.getInstance().recordRequestBytes(receivedIn.getCount());
+		
+		Consumer<FactoidToBiopax> addTemplates = converter -> {
+			converter.getStats().addParseNanos(parseNanos);
+			converter.addToModel(templates);
+		};
+		
+		if (cache == null && resultStore == null) {
+			convertToResponse(addTemplates, 0, request, response);
+			return;
+		}
+		
+		String contentHash = TemplatesDigest.digest(templates);
+		response.setHeader(CONTENT_HASH_HEADER, contentHash);
+		
+		if (writeStoredResult(contentHash, request, response)) {
+			return;
+		}
+		
+		response.setHeader(CACHE_HEADER, "MISS");
+		
+		// Capture the result to cache it unless it gets too large to be cached, the copy is taken before
+		// compression so that it can be served to clients that do not accept compression
+		byte[] result = convertToResponse(addTemplates, maxCapturedBytes, request, response);
+		
+		if (result != null) {
+			keepResult(contentHash, result);
+		}
+	}
+	
+	// Convert by the given templates into the response, compressed if the client accepts it. A result of up to the
+	// given number of bytes is captured before it is written and returned, null is returned for a larger one.
+	private byte[] convertToResponse(Consumer<FactoidToBiopax> addTemplates, int capturedBytes, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		
+		CompressingOutputStream out = createCompressingStream(request, response);
+		
+		try {
+			byte[] result = convert(addTemplates, out == null ? response.getOutputStream() : out, capturedBytes, response);
+			finish(out);
+			
+			return result;
+		}
+		finally {
+			abort(out);
+		}
+	}
+	
+	// Write the result of the given content hash from the cache or the result store, false if neither has it
+	private boolean writeStoredResult(String contentHash, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		byte[] cachedResult = cache == null ? null : cache.get(contentHash);
+		
+		if (cachedResult == null && resultStore != null) {
+			// Stored results are gzip compressed already, a client that takes gzip gets the mapped file as it is
+			if (compressionLevel > 0 && ContentCoding.GZIP.equals(ContentCoding.selectResponseCoding(request.getHeader("Accept-Encoding")))) {
+				ByteBuffer compressedResult = resultStore.getCompressed(contentHash);
+				
+				if (compressedResult != null) {
+					response.setHeader(CACHE_HEADER, "HIT");
+					response.setHeader(ServerTiming.HEADER, ServerTiming.HIT);
+					response.setHeader("Vary", "Accept-Encoding");
+					response.setHeader("Content-Encoding", ContentCoding.GZIP);
+					response.setContentLength(compressedResult.remaining());
+					Channels.newChannel(response.getOutputStream()).write(compressedResult);
+					
+					return true;
+				}
+			}
+			else {
+				cachedResult = resultStore.get(contentHash);
+				
+				if (cachedResult != null && cache != null) {
+					cache.put(contentHash, cachedResult);
+				}
+			}
+		}
+		
+		if (cachedResult == null) {
+			return false;
+		}
+		
+		response.setHeader(CACHE_HEADER, "HIT");
+		response.setHeader(ServerTiming.HEADER, ServerTiming.HIT);
+		CompressingOutputStream compressingOut = createCompressingStream(request, response);
+		
+		if (compressingOut == null) {
+			response.setContentLength(cachedResult.length);
+			response.getOutputStream().write(cachedResult);
+		}
+		else {
+			try {
+				compressingOut.write(cachedResult);
+				compressingOut.finish();
+			}
+			finally {
+				compressingOut.abort();
+			}
+		}
+		
+		return true;
+	}
+	
+	// Keep a converted result in the cache and the result store. The result is compressed and synced to the store
+	// by its writer thread so that the response does not wait for the disk, a result that cannot be stored is only
+	// logged and one that finds the writer queue full is not stored.
+	private void keepResult(String contentHash, byte[] result) {
+		if (cache != null) {
+			cache.put(contentHash, result);
+		}
+		
+		if (resultStore != null) {
+			resultStoreWriter.tryExecute(() -> {
+				try {
+					resultStore.put(contentHash, result);
+				}
+				catch (IOException e) {
+					log("Failed to store conversion result " + contentHash, e);
+				}
+			});
+		}
+	}
+	
+	// Results are stored under a subdirectory per configuration that the owl depends on, so that a result written
+	// by other id strategy, owl writer or converter version is never served for the same templates
+	private Path getResultStoreDirectory(Path directory) {
+		String configuration = idStrategy.name().toLowerCase() + "-" + owlWriterType.name().toLowerCase() + "-v" + FactoidToBiopax.OUTPUT_VERSION;
+		
+		return directory.resolve(configuration);
+	}
+	
+	// Create the stream that compresses the response by the coding the client accepts or get null if the response
+	// is not to be compressed
+	private CompressingOutputStream createCompressingStream(HttpServletRequest request, HttpServletResponse response) {
+		if (compressionLevel == 0) {
+			return null;
+		}
+		
+		// The response depends on the accepted codings whether it is compressed or not
+		response.setHeader("Vary", "Accept-Encoding");
+		String coding = ContentCoding.selectResponseCoding(request.getHeader("Accept-Encoding"));
+		
+		return coding == null ? null : new CompressingOutputStream(response, coding, compressionLevel, compressionMinBytes);
+	}
+	
+	private static void finish(CompressingOutputStream out) throws IOException {
+		if (out != null) {
+			out.finish();
+		}
+	}
+	
+	// Release the compressor of a response that is not finished, nothing is done for a finished one
+	private static void abort(CompressingOutputStream out) {
+		if (out != null) {
+			out.abort();
+		}
+	}
+	
+	// Add the templates to a converter of the pool and write its result into the output. A result of up to the given
+	// number of bytes is held back until it is serialized, so that its Server-Timing header has the serialize phase
+	// too, and it is returned. A larger result is streamed once it outgrows that and null is returned.
+	private byte[] convert(Consumer<FactoidToBiopax> addTemplates, OutputStream out, int capturedBytes, HttpServletResponse response)
+			throws IOException {
+		
+		FactoidToBiopax converter = converterPool.acquire();
+		
+		try {
+			addTemplates.accept(converter);
+			response.setHeader(ServerTiming.HEADER, ServerTiming.format(converter, false));
+			
+			// Stream the biopax output into the response. Content length is not known in advance so the container
+			// flushes its bounded buffer with chunked transfer encoding as it fills up.
+			CapturingOutputStream capturingOut = new CapturingOutputStream(out, capturedBytes);
+			converter.convertToOwl(capturingOut);
+			byte[] result = capturingOut.getCaptured();
+			
+			// The serialize phase makes it into the header if the whole output is still held back or in the buffer
+			if (result != null || !response.isCommitted()) {
+				response.setHeader(ServerTiming.HEADER, ServerTiming.format(converter, true));
+			}
+			
+			if (result != null) {
+				out.write(result);
+			}
+			
+			ConversionMetrics.getInstance().recordConversion(converter);
+			
+			return result;
+		}
+		finally {
+			converterPool.release(converter);
+		}
+	}
+	
+	private FactoidToBiopax createConverter() {
+		FactoidToBiopax converter = new FactoidToBiopax(idStrategy);
+		converter.setOwlWriterType(owlWriterType);
+		converter.setValidationLimits(validationLimits);
+		
+		return converter;
+	}
+	
+	private static InputStreamReader createReader(InputStream in) {
+		return new InputStreamReader(in, StandardCharsets.UTF_8);
+	}
+	
+	// Decode the body by its content coding, the decoded body is limited since a small body can decode to a large one
+	private InputStream decode(InputStream body, HttpServletRequest request) throws IOException {
+		InputStream decodedIn = ContentCoding.decode(body, ContentCoding.getRequestCoding(request.getHeader("Content-Encoding")));
+		return new LimitedInputStream(decodedIn, maxBodyBytes);
+	}
+	
+	// Reject a request for its content, the message tells the client what to fix
+	private void reject(HttpServletResponse response, int status, String message) {
+		ConversionMetrics.getInstance().recordRejection();
+		
+		if (response.isCommitted()) {
+			return;
+		}
+		
+		try {
+			// drop the headers of the result with its buffered part, e.g. Content-Encoding once compression started
+			response.reset();
+			response.sendError(status, message);
+		}
+		catch (IOException e) {
+			log("Failed to send error response", e);
+		}
+	}
+	
+	private void sendErrorIfNotCommitted(HttpServletResponse response, int status) {
+		if (response.isCommitted()) {
+			return;
+		}
+		
+		try {
+			response.reset();
+			response.sendError(status);
+		}
+		catch (IOException e) {
+			log("Failed to send error response", e);
+		}
+	}
+	
+	private static final String OWL_CONTENT_TYPE = "application/rdf+xml;charset=UTF-8";
+	
+	// Size of the response buffer that is reused by the container between requests
+	private static final int OUTPUT_BUFFER_SIZE = 8192;
+	
+	private static final String CONTENT_HASH_HEADER = "X-Content-Hash";
+	private static final String CACHE_HEADER = "X-Cache";
+	
+	private static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 60000;
+	private static final int DEFAULT_RECEIVED_BODY_BYTES = 1024 * 1024;
+	private static final int DEFAULT_CACHE_BYTES = 0;
+	private static final int DEFAULT_RESULT_STORE_MEGABYTES = 1024;
+	// Number of results that can wait to be written to the store
+	private static final int RESULT_STORE_QUEUE_CAPACITY = 64;
 }
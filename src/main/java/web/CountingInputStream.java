@@ -0,0 +1,52 @@
+package web;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Input stream that counts the bytes read through it.
+ */
+class CountingInputStream extends FilterInputStream {
+	
+	private long count;
+	
+	public CountingInputStream(InputStream in) {
+		super(in);
+	}
+	
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+		
+		if (b != -1) {
+			count++;
+		}
+		
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = in.read(b, off, len);
+		
+		if (n > 0) {
+			count += n;
+		}
+		
+		return n;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(n);
+		count += skipped;
+		
+		return skipped;
+	}
+	
+	// Get the number of bytes read or skipped so far
+	public long getCount() {
+		return count;
+	}
+}
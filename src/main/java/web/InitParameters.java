@@ -0,0 +1,92 @@
+package web;
+
+import javax.servlet.ServletConfig;
+
+import converter.ValidationLimits;
+import model.IdStrategy;
+import model.OwlWriterType;
+
+/*
+ * Helpers to read the optional init parameters of servlets, falling back to the given defaults
+ * when a parameter is not configured in web.xml. The defaults of the parameters that the standalone server
+ * shares with the conversion servlet are kept here, so that both run with the same defaults.
+ */
+final class InitParameters {
+	
+	private InitParameters() {
+	}
+	
+	static int getInt(ServletConfig config, String name, int defaultValue) {
+		String value = config.getInitParameter(name);
+		
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Init parameter '" + name + "' is expected to be an integer but it is '" + value + "'", e);
+		}
+	}
+	
+	static IdStrategy getIdStrategy(ServletConfig config, String name, IdStrategy defaultValue) {
+		String value = config.getInitParameter(name);
+		
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		
+		try {
+			return IdStrategy.fromName(value);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Init parameter '" + name + "' is expected to be one of uuid, sequential or content but it is '" + value + "'", e);
+		}
+	}
+	
+	// Read the limits of the templates accepted by a servlet from maxTemplates, maxMoleculeListLength and maxDepth
+	static ValidationLimits getValidationLimits(ServletConfig config) {
+		int maxTemplates = getInt(config, "maxTemplates", DEFAULT_MAX_TEMPLATES);
+		int maxMoleculeListLength = getInt(config, "maxMoleculeListLength", DEFAULT_MAX_MOLECULE_LIST_LENGTH);
+		int maxDepth = getInt(config, "maxDepth", DEFAULT_MAX_DEPTH);
+		
+		return new ValidationLimits(maxTemplates, maxMoleculeListLength, maxDepth);
+	}
+	
+	static OwlWriterType getOwlWriterType(ServletConfig config, String name, OwlWriterType defaultValue) {
+		String value = config.getInitParameter(name);
+		
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		
+		try {
+			return OwlWriterType.fromName(value);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Init parameter '" + name + "' is expected to be one of paxtools or templates but it is '" + value + "'", e);
+		}
+	}
+	
+	// Section: static variables
+	
+	static final IdStrategy DEFAULT_ID_STRATEGY = IdStrategy.UUID;
+	static final OwlWriterType DEFAULT_OWL_WRITER_TYPE = OwlWriterType.PAXTOOLS;
+	
+	static final int DEFAULT_QUEUE_CAPACITY = 64;
+	static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+	static final int DEFAULT_CONVERTER_MAX_ELEMENTS = 100000;
+	static final int DEFAULT_COMPRESSION_LEVEL = 6;
+	static final int DEFAULT_COMPRESSION_MIN_BYTES = 1024;
+	static final int DEFAULT_MAX_BODY_BYTES = 16 * 1024 * 1024;
+	// Size of the largest result that is held back until it is serialized, larger ones are streamed
+	static final int DEFAULT_MAX_CAPTURED_BYTES = 4 * 1024 * 1024;
+	static final int DEFAULT_WARM_UP_ITERATIONS = 20;
+	static final int DEFAULT_WARM_UP_TEMPLATES_PER_TYPE = 20;
+	
+	static final int DEFAULT_MAX_TEMPLATES = 100000;
+	static final int DEFAULT_MAX_MOLECULE_LIST_LENGTH = 1000;
+	static final int DEFAULT_MAX_DEPTH = 16;
+}
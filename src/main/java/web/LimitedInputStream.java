@@ -0,0 +1,70 @@
+package web;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Input stream that fails once more than the given number of bytes are read through it, so that a request
+ * body without a content length, or a compressed one, cannot grow larger than the limit after it is decoded.
+ */
+class LimitedInputStream extends FilterInputStream {
+	
+	private long limit;
+	private long count;
+	
+	public LimitedInputStream(InputStream in, long limit) {
+		super(in);
+		this.limit = limit;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+		
+		if (b != -1) {
+			count(1);
+		}
+		
+		return b;
+	}
+	
+	// Never read past the limit, so that every byte up to it is delivered before the read that crosses it fails
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = in.read(b, off, (int) Math.min(len, Math.max(limit - count, 1)));
+		
+		if (n > 0) {
+			count(n);
+		}
+		
+		return n;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(n);
+		count(skipped);
+		
+		return skipped;
+	}
+	
+	private void count(long n) throws BodyTooLargeException {
+		count += n;
+		
+		if (count > limit) {
+			throw new BodyTooLargeException("Request body is larger than " + limit + " bytes");
+		}
+	}
+	
+	// Section: helper classes
+	
+	// Thrown when the request body gets larger than the limit while it is read
+	static class BodyTooLargeException extends IOException {
+		private static final long serialVersionUID = 1L;
+		
+		public BodyTooLargeException(String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.gson.JsonParseException;
+
+import converter.CorpusMerger;
+import converter.InvalidTemplatesException;
+import converter.ValidationLimits;
+import metrics.ConversionMetrics;
+import model.HeapSymbolTable;
+import model.IdStrategy;
+import model.OwlWriterType;
+
+/**
+ * Servlet that merges many factoid documents into a single BioPAX model. The request body is a stream of
+ * templates arrays, e.g. newline delimited JSON with one document per line, and the response is the owl of
+ * the merged model where the entities that documents share are created once. The body is limited in bytes after
+ * it is decoded, and the merged model is limited in elements, since the whole model is kept until it is written.
+ */
+@WebServlet("/Merge")
+public class MergeServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+	
+	private IdStrategy idStrategy;
+	private OwlWriterType owlWriterType;
+	private ValidationLimits validationLimits;
+	private int progressInterval;
+	private int retryAfterSeconds;
+	private int maxBodyBytes;
+	private int maxElements;
+	// Permits of merges that can run at once, each one holds a whole corpus model in memory
+	private transient Semaphore mergePermits;
+	
+	/**
+	 * @see HttpServlet#init()
+	 */
+	@Override
+	public void init() throws ServletException {
+		idStrategy = InitParameters.getIdStrategy(getServletConfig(), "idStrategy", InitParameters.DEFAULT_ID_STRATEGY);
+		owlWriterType = InitParameters.getOwlWriterType(getServletConfig(), "owlWriter", InitParameters.DEFAULT_OWL_WRITER_TYPE);
+		validationLimits = InitParameters.getValidationLimits(getServletConfig());
+		progressInterval = InitParameters.getInt(getServletConfig(), "mergeProgressInterval", DEFAULT_PROGRESS_INTERVAL);
+		retryAfterSeconds = InitParameters.getInt(getServletConfig(), "retryAfterSeconds", InitParameters.DEFAULT_RETRY_AFTER_SECONDS);
+		maxBodyBytes = InitParameters.getInt(getServletConfig(), "mergeMaxBodyBytes", DEFAULT_MAX_BODY_BYTES);
+		maxElements = InitParameters.getInt(getServletConfig(), "mergeMaxElements", DEFAULT_MAX_ELEMENTS);
+		
+		mergePermits = new Semaphore(InitParameters.getInt(getServletConfig(), "maxConcurrentMerges", DEFAULT_MAX_CONCURRENT_MERGES));
+	}
+	
+	/**
+	 * @see HttpServlet#doPost(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		String coding = ContentCoding.getRequestCoding(request.getHeader("Content-Encoding"));
+		
+		if (coding == null) {
+			response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Supported content encodings are gzip and deflate");
+			return;
+		}
+		
+		if (request.getContentLengthLong() > maxBodyBytes) {
+			reject(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body is larger than " + maxBodyBytes + " bytes");
+			return;
+		}
+		
+		if (!mergePermits.tryAcquire()) {
+			response.setStatus(SC_TOO_MANY_REQUESTS);
+			response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+			response.getWriter().append("Too many merges in progress, retry later");
+			return;
+		}
+		
+		try {
+			CorpusMerger merger = new CorpusMerger(idStrategy, new HeapSymbolTable());
+			merger.setOwlWriterType(owlWriterType);
+			merger.setValidationLimits(validationLimits);
+			merger.setMaxElements(maxElements);
+			merger.setProgressListener(this::logProgress, progressInterval);
+			
+			// A compressed body is limited after it is decoded
+			InputStream in = new LimitedInputStream(ContentCoding.decode(request.getInputStream(), coding), maxBodyBytes);
+			long mergeStart = System.nanoTime();
+			
+			try {
+				merger.mergeDocuments(new InputStreamReader(in, StandardCharsets.UTF_8));
+			}
+			catch (InvalidTemplatesException | JsonParseException e) {
+				int status = Rejection.getStatus(e);
+				
+				if (status == 0) {
+					throw new IOException("Merge request cannot be read", e.getCause());
+				}
+				
+				reject(response, status, Rejection.getMessage(e));
+				return;
+			}
+			
+			log("Merged " + merger.getDocumentCount() + " documents into " + merger.getElementCount() + " elements in "
+					+ (System.nanoTime() - mergeStart) / 1000000 + " ms");
+			
+			response.setContentType(OWL_CONTENT_TYPE);
+			response.setHeader(DOCUMENT_COUNT_HEADER, String.valueOf(merger.getDocumentCount()));
+			merger.convertToOwl(response.getOutputStream());
+			
+			ConversionMetrics.getInstance().recordConversion(merger.getConverter());
+		}
+		finally {
+			mergePermits.release();
+		}
+	}
+	
+	private void logProgress(CorpusMerger merger) {
+		log("Merged " + merger.getDocumentCount() + " documents, " + merger.getConverter().getStats().getTemplateCount()
+				+ " templates into " + merger.getElementCount() + " elements so far");
+	}
+	
+	private static void reject(HttpServletResponse response, int status, String message) throws IOException {
+		ConversionMetrics.getInstance().recordRejection();
+		response.sendError(status, message);
+	}
+	
+	private static final String OWL_CONTENT_TYPE = "application/rdf+xml;charset=UTF-8";
+	private static final String DOCUMENT_COUNT_HEADER = "X-Document-Count";
+	
+	// Too Many Requests status that is not defined by servlet api
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+	
+	private static final int DEFAULT_PROGRESS_INTERVAL = 1000;
+	private static final int DEFAULT_MAX_CONCURRENT_MERGES = 1;
+	private static final int DEFAULT_MAX_BODY_BYTES = 256 * 1024 * 1024;
+	private static final int DEFAULT_MAX_ELEMENTS = 5000000;
+}
@@ -0,0 +1,29 @@
+package web;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import metrics.ConversionMetrics;
+
+/**
+ * Servlet that exposes the conversion metrics in Prometheus text format.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		response.setContentType(PROMETHEUS_CONTENT_TYPE);
+		ConversionMetrics.getInstance().writePrometheus(response.getWriter());
+	}
+	
+	private static final String PROMETHEUS_CONTENT_TYPE = "text/plain;version=0.0.4;charset=UTF-8";
+}
@@ -0,0 +1,38 @@
+package web;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet of the readiness probe. It responds with 200 once the conversion servlet is initialized and warmed
+ * up, and with 503 until then.
+ */
+@WebServlet("/ready")
+public class ReadinessServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+	
+	// Servlet context attribute that the conversion servlet sets once it is ready to serve
+	static final String READY_ATTRIBUTE = "factoid.ready";
+	
+	/**
+	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse response)
+	 */
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		response.setContentType(TEXT_CONTENT_TYPE);
+		
+		if (Boolean.TRUE.equals(getServletContext().getAttribute(READY_ATTRIBUTE))) {
+			response.getWriter().append("ready");
+		}
+		else {
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			response.getWriter().append("warming up");
+		}
+	}
+	
+	private static final String TEXT_CONTENT_TYPE = "text/plain;charset=UTF-8";
+}
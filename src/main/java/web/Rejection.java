@@ -0,0 +1,40 @@
+package web;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+
+import converter.InvalidTemplatesException;
+import converter.TemplatesLimitException;
+
+/*
+ * Tells the failures of a conversion request that are caused by its content, which are rejected with a client
+ * error status, apart from the failures of the server. Shared by the servlet and the standalone server so that
+ * both answer the same request with the same status.
+ */
+final class Rejection {
+	
+	private Rejection() {
+	}
+	
+	// Get the client error status of the failure or 0 if it is not caused by the request content
+	static int getStatus(Exception e) {
+		if (e instanceof LimitedInputStream.BodyTooLargeException || e instanceof TemplatesLimitException
+				|| e instanceof JsonIOException && e.getCause() instanceof LimitedInputStream.BodyTooLargeException) {
+			return SC_PAYLOAD_TOO_LARGE;
+		}
+		
+		if (e instanceof InvalidTemplatesException || e instanceof JsonSyntaxException) {
+			return SC_BAD_REQUEST;
+		}
+		
+		return 0;
+	}
+	
+	// Get the message that tells the client what is wrong with its request
+	static String getMessage(Exception e) {
+		return e instanceof JsonIOException && e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+	}
+	
+	static final int SC_BAD_REQUEST = 400;
+	static final int SC_PAYLOAD_TOO_LARGE = 413;
+}
@@ -0,0 +1,65 @@
+package web;
+
+import java.util.Locale;
+
+import converter.ConversionStats;
+import converter.FactoidToBiopax;
+
+/*
+ * Formats the Server-Timing header of a conversion response from the stats the converter keeps anyway, so that
+ * the header costs nothing beyond formatting a few numbers. The header tells how long the conversion spent in
+ * parsing, building and serializing, and how many templates and BioPAX elements it had, e.g.
+ *
+ *   parse;dur=1.204, build;dur=3.871, serialize;dur=2.090, templates;desc="12", elements;desc="148"
+ *
+ * Headers go before the body, so the serialize phase is only known in time when the owl is held back until it is
+ * serialized, as the results up to the captured size of the servlet and the standalone server are, or when the
+ * whole streamed response still fits into the buffer. Shared by the servlet and the standalone server.
+ */
+final class ServerTiming {
+	
+	private ServerTiming() {
+	}
+	
+	// Get the header value of the conversion that the converter holds, the serialize phase only when it is done
+	static String format(FactoidToBiopax converter, boolean serialized) {
+		ConversionStats stats = converter.getStats();
+		StringBuilder value = new StringBuilder(HEADER_CAPACITY);
+		
+		appendDuration(value, "parse", stats.getParseNanos());
+		appendDuration(value, "build", stats.getBuildNanos());
+		
+		if (serialized) {
+			appendDuration(value, "serialize", stats.getSerializeNanos());
+		}
+		
+		appendCount(value, "templates", stats.getTemplateCount());
+		appendCount(value, "elements", converter.getElementCount());
+		
+		return value.toString();
+	}
+	
+	// Durations are given in milliseconds as the header expects
+	private static void appendDuration(StringBuilder value, String name, long nanos) {
+		appendSeparator(value);
+		value.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+	}
+	
+	// Counts are no durations, they are given as the description of their metric
+	private static void appendCount(StringBuilder value, String name, int count) {
+		appendSeparator(value);
+		value.append(name).append(";desc=\"").append(count).append('"');
+	}
+	
+	private static void appendSeparator(StringBuilder value) {
+		if (value.length() > 0) {
+			value.append(", ");
+		}
+	}
+	
+	static final String HEADER = "Server-Timing";
+	// Value of the responses that are served from the cache or the result store without a conversion
+	static final String HIT = "cache;desc=\"hit\"";
+	
+	private static final int HEADER_CAPACITY = 128;
+}
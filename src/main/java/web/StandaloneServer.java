@@ -0,0 +1,429 @@
+package web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import converter.ConverterPool;
+import converter.FactoidToBiopax;
+import converter.ValidationLimits;
+import converter.WarmUp;
+import metrics.ConversionMetrics;
+import model.IdStrategy;
+import model.OwlWriterType;
+
+/*
+ * Standalone server of the conversion endpoint on the HTTP server of the JDK, for running the converter without
+ * a servlet container. It serves the same POST /ConvertToOwl contract as ConvertToOwlServlet, with the same
+ * request codings, limits and status codes, together with /metrics and /ready. Requests are accepted by the
+ * single dispatcher thread of the HTTP server and converted on a ConversionExecutor, so a full queue is rejected
+ * with 429 right away, and converters are reused by a ConverterPool like in the servlet.
+ *
+ * The server listens as soon as it starts and the warm up runs after that, /ready responds with 503 until the
+ * warm up is done. Results are not cached, the standalone server is meant to be run as many small instances.
+ *
+ * Options are given as name=value arguments, see DEFAULT_OPTIONS for the names and default values, which are
+ * the same as the init parameters of the servlet, for example port=8081 conversionThreads=2
+ */
+public class StandaloneServer {
+	
+	private Map<String, String> options;
+	private HttpServer server;
+	private ConversionExecutor executor;
+	private ConverterPool converterPool;
+	private IdStrategy idStrategy;
+	private OwlWriterType owlWriterType;
+	private ValidationLimits validationLimits;
+	private int maxBodyBytes;
+	private int compressionLevel;
+	private int compressionMinBytes;
+	private int maxCapturedBytes;
+	private int retryAfterSeconds;
+	private volatile boolean ready;
+	
+	// Options that are not given take their default values
+	public StandaloneServer(Map<String, String> options) {
+		this.options = new HashMap<String, String>(DEFAULT_OPTIONS);
+		this.options.putAll(options);
+	}
+	
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<String, String>();
+		
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			
+			if (separator < 0 || !DEFAULT_OPTIONS.containsKey(arg.substring(0, separator))) {
+				throw new IllegalArgumentException("Unknown option: " + arg + ", options are " + DEFAULT_OPTIONS.keySet());
+			}
+			
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		
+		StandaloneServer standaloneServer = new StandaloneServer(options);
+		Runtime.getRuntime().addShutdownHook(new Thread(standaloneServer::stop, "shutdown"));
+		
+		standaloneServer.start();
+		LOGGER.info("Listening on port " + standaloneServer.getPort() + " after "
+				+ ManagementFactory.getRuntimeMXBean().getUptime() + " ms");
+		
+		standaloneServer.warmUp();
+		LOGGER.info("Ready after " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms");
+	}
+	
+	// Section: public methods
+	
+	// Start listening, requests are served from now on but the server is not ready until it is warmed up
+	public void start() throws IOException {
+		idStrategy = IdStrategy.fromName(options.get("idStrategy"));
+		owlWriterType = OwlWriterType.fromName(options.get("owlWriter"));
+		validationLimits = new ValidationLimits(getInt("maxTemplates"), getInt("maxMoleculeListLength"), getInt("maxDepth"));
+		maxBodyBytes = getInt("maxBodyBytes");
+		compressionLevel = getInt("compressionLevel");
+		compressionMinBytes = getInt("compressionMinBytes");
+		maxCapturedBytes = getInt("maxCapturedBytes");
+		retryAfterSeconds = getInt("retryAfterSeconds");
+		
+		if (compressionLevel < 0 || compressionLevel > 9) {
+			throw new IllegalArgumentException("Option 'compressionLevel' is expected to be between 0 and 9 but it is " + compressionLevel);
+		}
+		
+		int threads = getInt("conversionThreads");
+		executor = new ConversionExecutor("converter", threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+				getInt("conversionQueueCapacity"));
+		converterPool = new ConverterPool(this::createConverter, getInt("converterMaxElements"));
+		
+		String contextPath = options.get("contextPath");
+		server = HttpServer.create(new InetSocketAddress(getInt("port")), getInt("backlog"));
+		server.createContext(contextPath + "/ConvertToOwl", this::handleConvert);
+		server.createContext(contextPath + "/metrics", this::handleMetrics);
+		server.createContext(contextPath + "/ready", this::handleReady);
+		server.start();
+	}
+	
+	// Run the warm up that the options ask for and report the server ready
+	public void warmUp() {
+		int warmUpIterations = getInt("warmUpIterations");
+		WarmUp warmUp = null;
+		
+		if (warmUpIterations > 0) {
+			warmUp = new WarmUp(this::createConverter, warmUpIterations, getInt("warmUpTemplatesPerType"));
+			warmUp.run();
+		}
+		
+		ConversionMetrics.getInstance().recordReady(warmUp, ManagementFactory.getRuntimeMXBean().getUptime());
+		ready = true;
+	}
+	
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdown();
+		}
+	}
+	
+	// Port the server listens on, useful when it is started on port 0
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+	
+	// Section: private helper methods
+	
+	// Runs on the dispatcher thread, so anything but the cheap checks is left to the conversion threads
+	private void handleConvert(HttpExchange exchange) throws IOException {
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			sendText(exchange, SC_METHOD_NOT_ALLOWED, "Conversions are posted");
+			return;
+		}
+		
+		String coding = ContentCoding.getRequestCoding(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+		
+		if (coding == null) {
+			sendText(exchange, SC_UNSUPPORTED_MEDIA_TYPE, "Supported content encodings are gzip and deflate");
+			return;
+		}
+		
+		if (getContentLength(exchange) > maxBodyBytes) {
+			ConversionMetrics.getInstance().recordRejection();
+			sendText(exchange, Rejection.SC_PAYLOAD_TOO_LARGE, "Request body is larger than " + maxBodyBytes + " bytes");
+			return;
+		}
+		
+		boolean accepted = executor.tryExecute(() -> runConversion(exchange, coding));
+		
+		// Reject fast when the queue is full so that clients back off instead of timing out
+		if (!accepted) {
+			exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+			sendText(exchange, SC_TOO_MANY_REQUESTS, "Too many conversions in progress, retry later");
+		}
+	}
+	
+	// Convert the request and close the exchange whatever the result is
+	private void runConversion(HttpExchange exchange, String coding) {
+		try {
+			convert(exchange, coding);
+		}
+		catch (IOException | RuntimeException e) {
+			int status = Rejection.getStatus(e);
+			
+			if (status != 0) {
+				ConversionMetrics.getInstance().recordRejection();
+				sendTextIfNotStarted(exchange, status, Rejection.getMessage(e));
+			}
+			else {
+				LOGGER.log(Level.SEVERE, "Conversion failed", e);
+				ConversionMetrics.getInstance().recordFailure();
+				sendTextIfNotStarted(exchange, SC_INTERNAL_SERVER_ERROR, "Conversion failed");
+			}
+		}
+		finally {
+			exchange.close();
+		}
+	}
+	
+	private void convert(HttpExchange exchange, String coding) throws IOException {
+		// Request size is counted as received, before the body is decoded
+		CountingInputStream receivedIn = new CountingInputStream(exchange.getRequestBody());
+		InputStream in = new LimitedInputStream(ContentCoding.decode(receivedIn, coding), maxBodyBytes);
+		
+		FactoidToBiopax converter = converterPool.acquire();
+		
+		try {
+			// The whole model is built before the response is started, so invalid templates still get their status
+			converter.addToModel(new InputStreamReader(in, StandardCharsets.UTF_8));
+			ConversionMetrics.getInstance().recordRequestBytes(receivedIn.getCount());
+			
+			String responseCoding = compressionLevel > 0 ? ContentCoding.selectResponseCoding(exchange.getRequestHeaders().getFirst("Accept-Encoding")) : null;
+			CompressingOutputStream.Response response = createResponse(exchange);
+			
+			exchange.getResponseHeaders().set("Content-Type", OWL_CONTENT_TYPE);
+			exchange.getResponseHeaders().set(ServerTiming.HEADER, ServerTiming.format(converter, false));
+			
+			if (compressionLevel > 0) {
+				// The response depends on the accepted codings whether it is compressed or not
+				exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+			}
+			
+			// Compressed like in the servlet, a result smaller than the minimum size is sent as it is
+			CompressingOutputStream compressingOut = responseCoding == null ? null
+					: new CompressingOutputStream(response, responseCoding, compressionLevel, compressionMinBytes);
+			
+			try {
+				// A result of up to the captured size is held back until it is serialized, so that its Server-Timing
+				// header has the serialize phase too and an uncompressed one gets its content length. A larger result
+				// is streamed chunked once it outgrows that, with the headers that are set before it.
+				OutputStream out = compressingOut == null ? new StreamedBody(response) : compressingOut;
+				CapturingOutputStream capturingOut = new CapturingOutputStream(out, maxCapturedBytes);
+				converter.convertToOwl(capturingOut);
+				byte[] result = capturingOut.getCaptured();
+				
+				if (result != null) {
+					exchange.getResponseHeaders().set(ServerTiming.HEADER, ServerTiming.format(converter, true));
+					
+					if (compressingOut == null) {
+						response.openBody(result.length).write(result);
+					}
+					else {
+						compressingOut.write(result);
+					}
+				}
+				
+				if (compressingOut != null) {
+					compressingOut.finish();
+				}
+			}
+			finally {
+				if (compressingOut != null) {
+					compressingOut.abort();
+				}
+			}
+			
+			ConversionMetrics.getInstance().recordConversion(converter);
+		}
+		finally {
+			converterPool.release(converter);
+		}
+	}
+	
+	private FactoidToBiopax createConverter() {
+		FactoidToBiopax converter = new FactoidToBiopax(idStrategy);
+		converter.setOwlWriterType(owlWriterType);
+		converter.setValidationLimits(validationLimits);
+		
+		return converter;
+	}
+	
+	// Response of the exchange that the compressing stream writes to, a body of unknown length is chunked
+	private static CompressingOutputStream.Response createResponse(HttpExchange exchange) {
+		return new CompressingOutputStream.Response() {
+			@Override
+			public void setHeader(String name, String value) {
+				exchange.getResponseHeaders().set(name, value);
+			}
+			
+			@Override
+			public OutputStream openBody(long contentLength) throws IOException {
+				// the exchange takes 0 for a chunked body and -1 for an empty one
+				exchange.sendResponseHeaders(SC_OK, contentLength < 0 ? 0 : contentLength == 0 ? -1 : contentLength);
+				return exchange.getResponseBody();
+			}
+		};
+	}
+	
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", PROMETHEUS_CONTENT_TYPE);
+		exchange.sendResponseHeaders(SC_OK, 0);
+		
+		try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+			ConversionMetrics.getInstance().writePrometheus(writer);
+		}
+	}
+	
+	private void handleReady(HttpExchange exchange) throws IOException {
+		if (ready) {
+			sendText(exchange, SC_OK, "ready");
+		}
+		else {
+			sendText(exchange, SC_SERVICE_UNAVAILABLE, "warming up");
+		}
+	}
+	
+	private int getInt(String name) {
+		return Integer.parseInt(options.get(name));
+	}
+	
+	private static long getContentLength(HttpExchange exchange) {
+		String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+		
+		try {
+			return contentLength == null ? -1 : Long.parseLong(contentLength.trim());
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+		byte[] body = text.getBytes(StandardCharsets.UTF_8);
+		
+		exchange.getResponseHeaders().set("Content-Type", TEXT_CONTENT_TYPE);
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+		exchange.close();
+	}
+	
+	// Send the error unless the response is already started, in which case the client sees a broken response
+	private static void sendTextIfNotStarted(HttpExchange exchange, int status, String text) {
+		if (exchange.getResponseCode() != -1) {
+			return;
+		}
+		
+		try {
+			sendText(exchange, status, text);
+		}
+		catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to send error response", e);
+		}
+	}
+	
+	// Section: static variables
+	
+	private static final Logger LOGGER = Logger.getLogger(StandaloneServer.class.getName());
+	
+	private static final String OWL_CONTENT_TYPE = "application/rdf+xml;charset=UTF-8";
+	private static final String TEXT_CONTENT_TYPE = "text/plain;charset=UTF-8";
+	private static final String PROMETHEUS_CONTENT_TYPE = "text/plain;version=0.0.4;charset=UTF-8";
+	
+	private static final int SC_OK = 200;
+	private static final int SC_METHOD_NOT_ALLOWED = 405;
+	private static final int SC_UNSUPPORTED_MEDIA_TYPE = 415;
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+	private static final int SC_INTERNAL_SERVER_ERROR = 500;
+	private static final int SC_SERVICE_UNAVAILABLE = 503;
+	
+	private static final Map<String, String> DEFAULT_OPTIONS = createDefaultOptions();
+	
+	private static Map<String, String> createDefaultOptions() {
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		options.put("port", "8080");
+		// path the endpoints are served under, the same as the path of the war in Tomcat
+		options.put("contextPath", "/FactoidToBiopaxServer");
+		// number of connections that can wait to be accepted, 0 for the system default
+		options.put("backlog", "0");
+		// number of conversion threads, 0 for a thread per core
+		options.put("conversionThreads", "0");
+		options.put("conversionQueueCapacity", String.valueOf(InitParameters.DEFAULT_QUEUE_CAPACITY));
+		options.put("retryAfterSeconds", String.valueOf(InitParameters.DEFAULT_RETRY_AFTER_SECONDS));
+		options.put("idStrategy", InitParameters.DEFAULT_ID_STRATEGY.name().toLowerCase());
+		options.put("owlWriter", InitParameters.DEFAULT_OWL_WRITER_TYPE.name().toLowerCase());
+		options.put("converterMaxElements", String.valueOf(InitParameters.DEFAULT_CONVERTER_MAX_ELEMENTS));
+		options.put("compressionLevel", String.valueOf(InitParameters.DEFAULT_COMPRESSION_LEVEL));
+		// size of the smallest response that is compressed
+		options.put("compressionMinBytes", String.valueOf(InitParameters.DEFAULT_COMPRESSION_MIN_BYTES));
+		options.put("maxBodyBytes", String.valueOf(InitParameters.DEFAULT_MAX_BODY_BYTES));
+		// size of the largest result that is held back until it is serialized, larger ones are streamed
+		options.put("maxCapturedBytes", String.valueOf(InitParameters.DEFAULT_MAX_CAPTURED_BYTES));
+		options.put("maxTemplates", String.valueOf(InitParameters.DEFAULT_MAX_TEMPLATES));
+		options.put("maxMoleculeListLength", String.valueOf(InitParameters.DEFAULT_MAX_MOLECULE_LIST_LENGTH));
+		options.put("maxDepth", String.valueOf(InitParameters.DEFAULT_MAX_DEPTH));
+		options.put("warmUpIterations", String.valueOf(InitParameters.DEFAULT_WARM_UP_ITERATIONS));
+		options.put("warmUpTemplatesPerType", String.valueOf(InitParameters.DEFAULT_WARM_UP_TEMPLATES_PER_TYPE));
+		
+		return Collections.unmodifiableMap(options);
+	}
+	
+	// Section: helper classes
+	
+	/*
+	 * Body of a streamed response that is started as chunked once the first bytes are written to it.
+	 */
+	private static class StreamedBody extends OutputStream {
+		
+		private CompressingOutputStream.Response response;
+		private OutputStream out;
+		
+		StreamedBody(CompressingOutputStream.Response response) {
+			this.response = response;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			open().write(b);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			open().write(b, off, len);
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			if (out != null) {
+				out.flush();
+			}
+		}
+		
+		private OutputStream open() throws IOException {
+			if (out == null) {
+				out = response.openBody(-1);
+			}
+			
+			return out;
+		}
+	}
+}
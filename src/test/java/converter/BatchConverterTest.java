@@ -0,0 +1,83 @@
+package converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.IdStrategy;
+import model.OwlWriterType;
+
+public class BatchConverterTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static BatchConverter run(String input, Path output) throws IOException {
+		BatchConverter batchConverter = new BatchConverter(input, output, 2);
+		batchConverter.run();
+		
+		return batchConverter;
+	}
+	
+	@Test
+	public void batchTest() throws IOException {
+		
+		Path input = folder.newFolder("input").toPath();
+		Path output = folder.getRoot().toPath().resolve("output");
+		Files.createDirectories(input.resolve("sub"));
+		
+		TemplateGenerator generator = new TemplateGenerator(42, 20, 10);
+		String[] documents = new String[3];
+		
+		for (int i = 0; i < documents.length; i++) {
+			documents[i] = generator.generateDocument(50).toString();
+			Files.write(input.resolve(i == 0 ? "doc0.json" : "sub/doc" + i + ".json"), documents[i].getBytes(StandardCharsets.UTF_8));
+		}
+		
+		Files.write(input.resolve("notes.txt"), "not a factoid file".getBytes(StandardCharsets.UTF_8));
+		
+		BatchConverter batchConverter = run(input.toString(), output);
+		assertEquals("All json files are converted", 3, batchConverter.getConvertedCount());
+		assertEquals("No file failed", 0, batchConverter.getFailedCount());
+		
+		FactoidToBiopax converter = new FactoidToBiopax(IdStrategy.CONTENT);
+		converter.setOwlWriterType(OwlWriterType.TEMPLATES);
+		converter.addToModel(documents[1]);
+		
+		assertEquals("Owl is written at the relative path of the input", converter.convertToOwl(), 
+				new String(Files.readAllBytes(output.resolve("sub/doc1.owl")), StandardCharsets.UTF_8));
+		
+		batchConverter = run(input.toString(), output);
+		assertEquals("Unchanged files are skipped", 3, batchConverter.getSkippedCount());
+		assertEquals("Unchanged files are not converted", 0, batchConverter.getConvertedCount());
+		
+		Files.write(input.resolve("sub/doc2.json"), generator.generateDocument(10).toString().getBytes(StandardCharsets.UTF_8));
+		Files.write(input.resolve("sub/docbad.json"), "[{\"type\":".getBytes(StandardCharsets.UTF_8));
+		
+		batchConverter = run(input.toString() + "/**doc*.json", output);
+		assertEquals("Only the changed file in the glob is converted", 1, batchConverter.getConvertedCount());
+		assertEquals("Unchanged files in the glob are skipped", 2, batchConverter.getSkippedCount());
+		assertEquals("Malformed file fails", 1, batchConverter.getFailedCount());
+		assertFalse("Failed file leaves no owl behind", Files.exists(output.resolve("sub/docbad.owl")));
+		
+		Files.delete(input.resolve("sub/doc1.json"));
+		batchConverter = run(input.toString(), output);
+		assertEquals("Owl of the deleted input is removed", 1, batchConverter.getRemovedCount());
+		assertFalse("Deleted input leaves no owl behind", Files.exists(output.resolve("sub/doc1.owl")));
+		assertEquals("Remaining files are skipped", 2, batchConverter.getSkippedCount());
+		
+		batchConverter = new BatchConverter(input.toString(), output, 2);
+		batchConverter.setOwlWriterType(OwlWriterType.PAXTOOLS);
+		batchConverter.run();
+		assertEquals("Files are converted again by other options", 2, batchConverter.getConvertedCount());
+		assertEquals("No file is skipped by other options", 0, batchConverter.getSkippedCount());
+	}
+}
@@ -0,0 +1,52 @@
+package converter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class ConversionCacheTest {
+	
+	@Test
+	public void digestTest() {
+		
+		String content = "[{\"type\":\"Molecular Interaction\",\"moleculeList\":[{\"name\":\"A\"},{\"name\":\"B\"}]}]";
+		String reordered = "[ { \"moleculeList\" : [ { \"name\" : \"A\" }, { \"name\" : \"B\" } ],\n  \"type\" : \"Molecular Interaction\" } ]";
+		String different = "[{\"type\":\"Molecular Interaction\",\"moleculeList\":[{\"name\":\"B\"},{\"name\":\"A\"}]}]";
+		
+		String hash = TemplatesDigest.digest(new StringReader(content));
+		
+		assertEquals("Member order and whitespace do not affect the hash", hash, TemplatesDigest.digest(new StringReader(reordered)));
+		assertNotEquals("Array order affects the hash", hash, TemplatesDigest.digest(new StringReader(different)));
+	}
+	
+	@Test
+	public void evictionTest() {
+		
+		ConversionCache cache = new ConversionCache(10, 10);
+		
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[4]);
+		
+		assertEquals("Both results are cached", 8, cache.getCurrentBytes());
+		
+		// make "a" the most recently used one
+		assertArrayEquals("Cached result is returned", new byte[4], cache.get("a"));
+		
+		cache.put("c", new byte[4]);
+		
+		assertNull("Least recently used result is evicted", cache.get("b"));
+		assertEquals("Recently used result is kept", 4, cache.get("a").length);
+		assertEquals("Budget is respected", 8, cache.getCurrentBytes());
+		assertEquals("One entry is evicted", 1, cache.getEvictionCount());
+		assertEquals("Hits are counted", 2, cache.getHitCount());
+		assertEquals("Misses are counted", 1, cache.getMissCount());
+		
+		cache.put("d", new byte[11]);
+		assertNull("Results larger than the entry limit are not cached", cache.get("d"));
+	}
+}
@@ -0,0 +1,142 @@
+package converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+
+public class ConversionSessionTest {
+	
+	private static final String TEST_FILE = "src/resources/test.json";
+	
+	private static JsonArray readTemplates() throws FileNotFoundException {
+		return new Gson().fromJson(new JsonReader(new FileReader(TEST_FILE)), JsonArray.class);
+	}
+	
+	// Count elements of the given session by their BioPAX class
+	private static Map<Class<? extends BioPAXElement>, Integer> countByClass(ConversionSession session) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		session.convertToOwl(out);
+		
+		Model model = new SimpleIOHandler().convertFromOWL(new ByteArrayInputStream(out.toByteArray()));
+		Map<Class<? extends BioPAXElement>, Integer> counts = new HashMap<Class<? extends BioPAXElement>, Integer>();
+		
+		for (BioPAXElement element : model.getObjects()) {
+			counts.merge(element.getModelInterface(), 1, Integer::sum);
+		}
+		
+		return counts;
+	}
+	
+	@Test
+	public void removeTemplatesTest() throws FileNotFoundException {
+		
+		JsonArray templates = readTemplates();
+		JsonArray kept = new JsonArray();
+		JsonArray removed = new JsonArray();
+		
+		for (int i = 0; i < templates.size(); i++) {
+			(i % 2 == 0 ? kept : removed).add(templates.get(i));
+		}
+		
+		ConversionSession session = new ConversionSession("session");
+		session.addTemplates(templates);
+		session.update(removed, null);
+		
+		ConversionSession expected = new ConversionSession("expected");
+		expected.addTemplates(kept);
+		
+		assertEquals("Removed templates are not counted", kept.size(), session.getTemplateCount());
+		assertEquals("Removing templates gives the same elements as never adding them", countByClass(expected), countByClass(session));
+		
+		session.update(templates, null);
+		assertEquals("Removing all templates empties the model", 0, session.getElementCount());
+	}
+	
+	@Test
+	public void duplicateTemplateTest() throws FileNotFoundException {
+		
+		JsonArray templates = readTemplates();
+		
+		ConversionSession session = new ConversionSession("session");
+		session.addTemplates(templates);
+		int elementCount = session.getElementCount();
+		
+		session.addTemplates(templates);
+		session.removeTemplates(templates);
+		
+		assertEquals("Removing one copy of a template keeps the other copy", elementCount, session.getElementCount());
+	}
+	
+	@Test
+	public void rejectedUpdateTest() throws FileNotFoundException {
+		
+		JsonArray templates = readTemplates();
+		JsonArray added = new JsonArray();
+		added.add(templates.get(0));
+		added.add(new JsonPrimitive("not a template"));
+		
+		ConversionSession session = new ConversionSession("session");
+		session.addTemplates(templates);
+		Map<Class<? extends BioPAXElement>, Integer> counts = countByClass(session);
+		
+		try {
+			session.update(templates, added);
+			fail("Change with a template that is not an object is rejected");
+		}
+		catch (InvalidTemplatesException e) {
+			assertEquals("Rejected change keeps the templates", templates.size(), session.getTemplateCount());
+			assertEquals("Rejected change keeps the elements", counts, countByClass(session));
+		}
+	}
+	
+	@Test
+	public void elementBudgetTest() throws FileNotFoundException {
+		
+		JsonArray templates = readTemplates();
+		
+		ConversionSession measured = new ConversionSession("measured");
+		measured.addTemplates(templates);
+		int sessionElementCount = measured.getRetainedCount();
+		
+		SessionRegistry registry = new SessionRegistry(60000, sessionElementCount);
+		ConversionSession first = registry.open();
+		first.addTemplates(templates);
+		registry.enforceElementBudget(first);
+		
+		ConversionSession second = registry.open();
+		second.addTemplates(templates);
+		registry.enforceElementBudget(second);
+		
+		assertEquals("Least recently used session is closed to fit the budget", 1, registry.getSessionCount());
+		assertEquals("Updated session is kept", second, registry.get(second.getId()));
+		assertEquals("Element total is the one of the kept session", sessionElementCount, registry.getElementCount());
+		
+		// strings of removed templates are kept by the session, so they still count toward the budget
+		second.removeTemplates(templates);
+		registry.enforceElementBudget(second);
+		assertEquals("Removed templates leave no elements", 0, second.getElementCount());
+		assertTrue("Strings of removed templates are accounted", registry.getElementCount() > 0);
+		
+		assertFalse("Closed session is not closed again", registry.close(first.getId()));
+		registry.close(second.getId());
+		assertEquals("Closing all sessions leaves no elements", 0, registry.getElementCount());
+	}
+}
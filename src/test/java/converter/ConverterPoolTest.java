@@ -0,0 +1,66 @@
+package converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+
+import model.IdStrategy;
+
+public class ConverterPoolTest {
+	
+	@Test
+	public void resetTest() {
+		
+		TemplateGenerator generator = new TemplateGenerator(42, 20, 10);
+		JsonArray firstTemplates = generator.generateDocument(300);
+		JsonArray secondTemplates = generator.generateDocument(200);
+		
+		for (IdStrategy idStrategy : new IdStrategy[] { IdStrategy.SEQUENTIAL, IdStrategy.CONTENT }) {
+			FactoidToBiopax freshConverter = new FactoidToBiopax(idStrategy);
+			freshConverter.addToModel(secondTemplates);
+			
+			FactoidToBiopax reusedConverter = new FactoidToBiopax(idStrategy);
+			reusedConverter.addToModel(firstTemplates);
+			reusedConverter.convertToOwl();
+			reusedConverter.reset();
+			
+			assertEquals("Reset converter has no elements", 0, reusedConverter.getElementCount());
+			assertEquals("Reset converter has no stats", 0, reusedConverter.getStats().getTemplateCount());
+			
+			reusedConverter.addToModel(secondTemplates);
+			
+			assertEquals("Reset converter gives the same owl by " + idStrategy, freshConverter.convertToOwl(), 
+					reusedConverter.convertToOwl());
+			assertEquals("Reset converter counts only the last conversion", freshConverter.getStats().getTemplateCounts(), 
+					reusedConverter.getStats().getTemplateCounts());
+		}
+	}
+	
+	@Test
+	public void poolTest() {
+		
+		ConverterPool pool = new ConverterPool(() -> new FactoidToBiopax(IdStrategy.SEQUENTIAL), 1000);
+		TemplateGenerator generator = new TemplateGenerator(42);
+		
+		FactoidToBiopax converter = pool.acquire();
+		converter.addToModel(generator.generateDocument(10));
+		pool.release(converter);
+		
+		FactoidToBiopax reusedConverter = pool.acquire();
+		assertSame("Released converter is reused by the same thread", converter, reusedConverter);
+		assertEquals("Reused converter is reset", 0, reusedConverter.getElementCount());
+		
+		assertNotSame("Converter in use is not handed out again", reusedConverter, pool.acquire());
+		
+		reusedConverter.addToModel(generator.generateDocument(2000));
+		pool.release(reusedConverter);
+		
+		assertEquals("Converter that grew too large is discarded", 1, pool.getDiscardedCount());
+		assertNotSame("Discarded converter is not reused", reusedConverter, pool.acquire());
+		assertEquals("Converters are created only when there is no idle one", 3, pool.getCreatedCount());
+	}
+}
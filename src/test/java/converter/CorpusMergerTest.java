@@ -0,0 +1,69 @@
+package converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+
+import model.HeapSymbolTable;
+import model.IdStrategy;
+
+public class CorpusMergerTest {
+	
+	@Test
+	public void mergeTest() throws IOException {
+		
+		TemplateGenerator generator = new TemplateGenerator(42, 20, 10);
+		JsonArray allTemplates = new JsonArray();
+		StringBuilder documents = new StringBuilder();
+		
+		for (int i = 0; i < 10; i++) {
+			JsonArray document = generator.generateDocument(30);
+			allTemplates.addAll(document);
+			documents.append(document).append('\n');
+		}
+		
+		FactoidToBiopax converter = new FactoidToBiopax(IdStrategy.CONTENT);
+		converter.addToModel(allTemplates);
+		
+		AtomicInteger progressCount = new AtomicInteger();
+		
+		CorpusMerger merger = new CorpusMerger(IdStrategy.CONTENT, new HeapSymbolTable());
+		merger.setProgressListener(m -> progressCount.incrementAndGet(), 4);
+		merger.mergeDocuments(new StringReader(documents.toString()));
+		
+		assertEquals("All documents are merged", 10, merger.getDocumentCount());
+		assertEquals("Progress is reported every 4 documents", 2, progressCount.get());
+		assertEquals("Shared entities are created once", converter.getElementCount(), merger.getElementCount());
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		merger.convertToOwl(out);
+		
+		assertEquals("Merged model is the model of all templates", converter.convertToOwl(), 
+				new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void invalidDocumentTest() throws IOException {
+		
+		String documents = "[{\"type\":\"Something Else\"}]\n[{\"type\":\"Molecular Interaction\"}]\n";
+		
+		try {
+			CorpusMerger merger = new CorpusMerger(IdStrategy.UUID, new HeapSymbolTable());
+			merger.mergeDocuments(new StringReader(documents));
+			fail("Invalid document stops the merge");
+		}
+		catch (InvalidTemplatesException e) {
+			assertEquals("Invalid document is named", "Document 1: Template 0 (Molecular Interaction) has no 'moleculeList' array", 
+					e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.junit.Test;
+
+import model.IdStrategy;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+
+public class FactoidToBiopaxTest {
+	
+	private static final String TEST_FILE = "src/resources/test.json";
+	
+	// Read the resulting owl back to a paxtools model
+	private static Model readOwl(String owl) {
+		SimpleIOHandler handler = new SimpleIOHandler();
+		return handler.convertFromOWL(new ByteArrayInputStream(owl.getBytes(StandardCharsets.UTF_8)));
+	}
+	
+	// Count elements of the model by their BioPAX class
+	private static Map<Class<? extends BioPAXElement>, Integer> countByClass(Model model) {
+		Map<Class<? extends BioPAXElement>, Integer> counts = new HashMap<Class<? extends BioPAXElement>, Integer>();
+		
+		for (BioPAXElement element : model.getObjects()) {
+			counts.merge(element.getModelInterface(), 1, Integer::sum);
+		}
+		
+		return counts;
+	}
+	
+	// Sort the property lines of each element in the owl, property values are sets so their order is not meaningful
+	private static String sortProperties(String owl) {
+		StringBuilder sorted = new StringBuilder();
+		
+		for (String block : owl.split("\n\n")) {
+			String[] lines = block.split("\n");
+			Arrays.sort(lines);
+			sorted.append(String.join("\n", lines)).append("\n\n");
+		}
+		
+		return sorted.toString();
+	}
+	
+	@Test
+	public void streamingIngestionTest() throws FileNotFoundException {
+		
+		JsonArray templates = new Gson().fromJson(new JsonReader(new FileReader(TEST_FILE)), JsonArray.class);
+		
+		FactoidToBiopax treeConverter = new FactoidToBiopax();
+		treeConverter.addToModel(templates);
+		Model treeModel = readOwl(treeConverter.convertToOwl());
+		
+		FactoidToBiopax streamingConverter = new FactoidToBiopax();
+		streamingConverter.addToModel(new FileReader(TEST_FILE));
+		Model streamingModel = readOwl(streamingConverter.convertToOwl());
+		
+		assertEquals("Streaming ingestion creates the same number of elements", 
+				treeModel.getObjects().size(), streamingModel.getObjects().size());
+		assertEquals("Streaming ingestion creates the same elements per class", 
+				countByClass(treeModel), countByClass(streamingModel));
+	}
+	
+	@Test
+	public void trailingContentTest() {
+		
+		FactoidToBiopax converter = new FactoidToBiopax();
+		converter.addToModel("[{\"type\": \"Unknown Template\"}]  \n");
+		
+		for (String content : new String[] { "[] []", "[] x", "[]]" }) {
+			try {
+				new FactoidToBiopax().addToModel(content);
+				fail("Content after the templates array is rejected: " + content);
+			}
+			catch (JsonSyntaxException e) {
+				assertEquals("Trailing content is named", "Unexpected content after the templates array", e.getMessage());
+			}
+		}
+	}
+	
+	@Test
+	public void streamingOutputTest() throws FileNotFoundException {
+		
+		FactoidToBiopax converter = new FactoidToBiopax();
+		converter.addToModel(new FileReader(TEST_FILE));
+		
+		boolean[] closed = { false };
+		ByteArrayOutputStream out = new ByteArrayOutputStream() {
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		};
+		converter.convertToOwl(out);
+		
+		assertFalse("Output stream is left open", closed[0]);
+		
+		Model streamedModel = readOwl(new String(out.toByteArray(), StandardCharsets.UTF_8));
+		Model stringModel = readOwl(converter.convertToOwl());
+		assertEquals("Streamed output has the same elements", countByClass(stringModel), countByClass(streamedModel));
+	}
+	
+	@Test
+	public void contentIdStrategyTest() throws FileNotFoundException {
+		
+		FactoidToBiopax converter1 = new FactoidToBiopax(IdStrategy.CONTENT);
+		converter1.addToModel(new FileReader(TEST_FILE));
+		
+		FactoidToBiopax converter2 = new FactoidToBiopax(IdStrategy.CONTENT);
+		converter2.addToModel(new FileReader(TEST_FILE));
+		
+		assertEquals("Same input gives the same output", converter1.convertToOwl(), converter2.convertToOwl());
+		
+		FactoidToBiopax uuidConverter = new FactoidToBiopax(IdStrategy.UUID);
+		uuidConverter.addToModel(new FileReader(TEST_FILE));
+		
+		assertEquals("Content based ids do not change the elements", countByClass(readOwl(uuidConverter.convertToOwl())), 
+				countByClass(readOwl(converter1.convertToOwl())));
+	}
+	
+	@Test
+	public void sequentialIdStrategyTest() throws FileNotFoundException {
+		
+		FactoidToBiopax converter = new FactoidToBiopax(IdStrategy.SEQUENTIAL);
+		converter.addToModel(new FileReader(TEST_FILE));
+		
+		FactoidToBiopax uuidConverter = new FactoidToBiopax(IdStrategy.UUID);
+		uuidConverter.addToModel(new FileReader(TEST_FILE));
+		
+		String owl = converter.convertToOwl();
+		
+		assertNotEquals("Sequential ids are used", -1, owl.indexOf("rdf:about=\"Protein_"));
+		assertEquals("Sequential ids do not change the elements", countByClass(readOwl(uuidConverter.convertToOwl())), 
+				countByClass(readOwl(owl)));
+	}
+	
+	@Test
+	public void parallelBuildTest() {
+		
+		// a small entity pool so that shards create the same entities and the merge has to reuse them
+		JsonArray templates = new TemplateGenerator(42, 20, 10).generateDocument(2000);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		
+		try {
+			for (IdStrategy idStrategy : new IdStrategy[] { IdStrategy.SEQUENTIAL, IdStrategy.CONTENT }) {
+				FactoidToBiopax sequentialConverter = new FactoidToBiopax(idStrategy);
+				sequentialConverter.addToModel(templates);
+				String owl = sortProperties(sequentialConverter.convertToOwl());
+				
+				FactoidToBiopax parallelConverter = new FactoidToBiopax(idStrategy);
+				parallelConverter.addToModelInParallel(templates, pool);
+				
+				assertEquals("Parallel build gives the same owl by " + idStrategy, owl, sortProperties(parallelConverter.convertToOwl()));
+				assertEquals("Parallel build counts all templates", sequentialConverter.getStats().getTemplateCount(), 
+						parallelConverter.getStats().getTemplateCount());
+				
+				FactoidToBiopax streamingConverter = new FactoidToBiopax(idStrategy);
+				streamingConverter.addToModelInParallel(new StringReader(templates.toString()), pool);
+				
+				assertEquals("Streaming parallel build gives the same owl by " + idStrategy, owl, 
+						sortProperties(streamingConverter.convertToOwl()));
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void handlerRegistryTest() {
+		
+		TemplateHandlerRegistry registry = TemplateHandlerRegistry.createDefault();
+		
+		for (TemplateType templateType : TemplateType.values()) {
+			assertNotNull("Default handler is registered for " + templateType, registry.getHandler(templateType.getName()));
+		}
+		
+		assertNotNull("Type names are matched case insensitively", registry.getHandler("protein MODIFICATION"));
+		assertNull("Unknown types have no handler", registry.getHandler("Unknown Template"));
+		
+		int[] handledCount = { 0 };
+		registry.register("Custom Template", (template, model, gson) -> handledCount[0]++);
+		
+		FactoidToBiopax converter = new FactoidToBiopax(IdStrategy.UUID, registry);
+		converter.addToModel("[{\"type\": \"custom template\"}]");
+		
+		assertEquals("Registered handler is used for its template type", 1, handledCount[0]);
+	}
+}
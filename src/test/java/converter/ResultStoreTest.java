@@ -0,0 +1,105 @@
+package converter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResultStoreTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static String key(char c) {
+		StringBuilder key = new StringBuilder();
+		
+		for (int i = 0; i < 64; i++) {
+			key.append(c);
+		}
+		
+		return key.toString();
+	}
+	
+	@Test
+	public void persistenceTest() throws IOException {
+		
+		Path directory = folder.getRoot().toPath();
+		byte[] result = "<rdf:RDF>result</rdf:RDF>".getBytes(StandardCharsets.UTF_8);
+		
+		ResultStore store = new ResultStore(directory, 1024 * 1024);
+		assertNull("Result is not stored yet", store.get(key('a')));
+		
+		store.put(key('a'), result);
+		assertArrayEquals("Stored result is returned", result, store.get(key('a')));
+		
+		// a crash in the middle of a write leaves a temporary file behind
+		Path leftover = directory.resolve("bb").resolve(key('b') + "123.tmp");
+		Files.createDirectories(leftover.getParent());
+		Files.write(leftover, new byte[10]);
+		
+		store = new ResultStore(directory, 1024 * 1024);
+		assertArrayEquals("Result survives reopening the store", result, store.get(key('a')));
+		assertFalse("Leftover temporary file is removed", Files.exists(leftover));
+		assertEquals("Only the complete result is indexed", 1, store.getEntryCount());
+		
+		Files.write(directory.resolve("aa").resolve(key('a') + ".owl.gz"), new byte[] { 1, 2, 3 });
+		store = new ResultStore(directory, 1024 * 1024);
+		assertNull("Damaged result is dropped", store.get(key('a')));
+		assertEquals("Damaged result is removed from the index", 0, store.getEntryCount());
+		assertNull("Invalid key is never found", store.get("../" + key('a')));
+	}
+	
+	@Test
+	public void evictionTest() throws IOException {
+		
+		Path directory = folder.getRoot().toPath();
+		ResultStore store = new ResultStore(directory, 1024 * 1024);
+		
+		store.put(key('a'), new byte[100]);
+		long entryBytes = store.getCurrentBytes();
+		
+		store = new ResultStore(directory, entryBytes * 2);
+		store.put(key('b'), new byte[100]);
+		
+		// make "a" the most recently used one, also across restarts by its modification time
+		Files.setLastModifiedTime(directory.resolve("bb").resolve(key('b') + ".owl.gz"), FileTime.fromMillis(0));
+		assertArrayEquals("Stored result is returned", new byte[100], store.get(key('a')));
+		
+		store.put(key('c'), new byte[100]);
+		
+		assertNull("Least recently used result is evicted", store.get(key('b')));
+		assertFalse("Evicted result is deleted", Files.exists(directory.resolve("bb").resolve(key('b') + ".owl.gz")));
+		assertEquals("Budget is respected", entryBytes * 2, store.getCurrentBytes());
+		assertEquals("One result is evicted", 1, store.getEvictionCount());
+		
+		store = new ResultStore(directory, entryBytes);
+		assertEquals("Reopening with a smaller budget evicts the least recently used result", 1, store.getEntryCount());
+	}
+	
+	@Test
+	public void accessTimeTest() throws IOException {
+		
+		Path directory = folder.getRoot().toPath();
+		Path file = directory.resolve("aa").resolve(key('a') + ".owl.gz");
+		ResultStore store = new ResultStore(directory, 1024 * 1024);
+		store.put(key('a'), new byte[100]);
+		Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+		
+		assertArrayEquals("Stored result is returned", new byte[100], store.get(key('a')));
+		assertEquals("Hit does not touch the file", 0, Files.getLastModifiedTime(file).toMillis());
+		
+		store.saveAccessTimes();
+		assertTrue("Saved access time is the one of the hit", Files.getLastModifiedTime(file).toMillis() > 0);
+	}
+}
@@ -0,0 +1,52 @@
+package converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+public class TemplateGeneratorTest {
+	
+	@Test
+	public void seedTest() {
+		
+		TemplateGenerator generator = new TemplateGenerator(7);
+		generator.setEntitySkew(1.2);
+		
+		TemplateGenerator sameGenerator = new TemplateGenerator(7);
+		sameGenerator.setEntitySkew(1.2);
+		
+		assertEquals("Same seed gives the same documents", generator.generateDocument(1, 20), sameGenerator.generateDocument(1, 20));
+	}
+	
+	@Test
+	public void mixAndSkewTest() {
+		
+		TemplateGenerator generator = new TemplateGenerator(7, 1000, 1000);
+		
+		Map<TemplateType, Double> mix = new EnumMap<TemplateType, Double>(TemplateType.class);
+		mix.put(TemplateType.PROTEIN_CONTROLS_STATE, 1.0);
+		generator.setTemplateTypeMix(mix);
+		generator.setEntitySkew(1.5);
+		
+		JsonArray templates = generator.generateDocument(1000);
+		Map<String, Integer> proteinCounts = new HashMap<String, Integer>();
+		
+		for (JsonElement template : templates) {
+			assertEquals("Only the types in the mix are generated", "Protein Controls State", template.getAsJsonObject().get("type").getAsString());
+			
+			String name = template.getAsJsonObject().get("targetProtein").getAsJsonObject().get("name").getAsString();
+			proteinCounts.merge(name, 1, Integer::sum);
+		}
+		
+		// with exponent 1.5 the top ranked protein takes close to 40% of the picks
+		assertTrue("Top ranked protein is picked most often", proteinCounts.get("protein0") > 250);
+	}
+}
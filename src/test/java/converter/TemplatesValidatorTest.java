@@ -0,0 +1,87 @@
+package converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+
+public class TemplatesValidatorTest {
+	
+	private static final String PROTEIN = "{'name':'TP53','xref':{'id':'P04637','namespace':'uniprot'}}";
+	
+	// Get the message of the exception the validator throws for the given templates, null if they are valid
+	private static String validate(ValidationLimits limits, String templates) {
+		try {
+			new TemplatesValidator(limits).readTemplates(new StringReader(templates.replace('\'', '"')));
+			return null;
+		}
+		catch (InvalidTemplatesException e) {
+			return e.getMessage();
+		}
+	}
+	
+	@Test
+	public void requiredFieldsTest() {
+		
+		ValidationLimits limits = ValidationLimits.DEFAULT;
+		
+		assertEquals("Valid template is accepted", null, validate(limits, "[{'type':'Protein Modification','controlType':'activation',"
+				+ "'modification':'phosphorylated','targetProtein':" + PROTEIN + ",'controllerProtein':" + PROTEIN + "}]"));
+		assertEquals("Template of unknown type is accepted", null, validate(limits, "[{'type':'Something Else'}]"));
+		
+		assertEquals("Missing entity is named", "Template 1 (Protein Modification) has no 'controllerProtein' object", 
+				validate(limits, "[{'type':'Something Else'},{'type':'Protein Modification','controlType':'activation',"
+				+ "'modification':'phosphorylated','targetProtein':" + PROTEIN + "}]"));
+		assertEquals("Unsupported control type is named", "Template 0 (Expression Regulation) has 'controlType' 'promotion' but it is "
+				+ "expected to be activation or inhibition", validate(limits, "[{'type':'Expression Regulation','controlType':'promotion',"
+				+ "'transcriptionFactor':" + PROTEIN + ",'targetProtein':" + PROTEIN + "}]"));
+		assertEquals("Xref without id is rejected", "Template 0 (Molecular Interaction) has 'moleculeList[1].xref' without an 'id'", 
+				validate(limits, "[{'type':'Molecular Interaction','moleculeList':[" + PROTEIN + ",{'name':'MDM2','xref':{}}]}]"));
+		assertEquals("Template without type is rejected", "Template 0 has no 'type'", validate(limits, "[{}]"));
+		assertEquals("Content that is not an array is rejected", "Templates are expected to be an array", validate(limits, "{}"));
+	}
+	
+	@Test
+	public void limitsTest() {
+		
+		ValidationLimits limits = new ValidationLimits(2, 2, 5);
+		String interaction = "{'type':'Molecular Interaction','moleculeList':[" + PROTEIN + "," + PROTEIN + "]}";
+		
+		assertEquals("Templates within limits are accepted", null, validate(limits, "[" + interaction + "," + interaction + "]"));
+		
+		String message = validate(limits, "[" + interaction + "," + interaction + "," + interaction + "]");
+		assertEquals("Template count is limited", "Templates array has more than 2 templates", message);
+		
+		message = validate(limits, "[{'type':'Molecular Interaction','moleculeList':[" + PROTEIN + "," + PROTEIN + "," + PROTEIN + "]}]");
+		assertTrue("Molecule list length is limited", message.startsWith("Template 0 has 3 molecules"));
+		
+		message = validate(limits, "[{'type':'Something Else','a':{'b':{'c':{'d':{}}}}}]");
+		assertEquals("Depth is limited", "Template 0 is nested deeper than 5 levels", message);
+		
+		try {
+			new TemplatesValidator(limits).readTemplates(new StringReader("[{\"type\":\"Something Else\",\"a\":[[[[1]]]]}]"));
+			fail("Depth of arrays is limited");
+		}
+		catch (TemplatesLimitException e) {
+			// expected
+		}
+		
+		JsonArray templates = new JsonArray();
+		for (int i = 0; i < 3; i++) {
+			templates.add(new TemplateGenerator(1, 2, 2).generateDocument(1).get(0));
+		}
+		
+		try {
+			new TemplatesValidator(limits).validate(templates);
+			fail("Template count of a parsed array is limited");
+		}
+		catch (TemplatesLimitException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import model.IdStrategy;
+
+public class WarmUpTest {
+	
+	@Test
+	public void warmUpTest() {
+		
+		AtomicInteger createdCount = new AtomicInteger();
+		WarmUp warmUp = new WarmUp(() -> {
+			createdCount.incrementAndGet();
+			return new FactoidToBiopax(IdStrategy.CONTENT);
+		}, 3, 2);
+		
+		warmUp.run();
+		
+		assertEquals("Converter is reused between iterations", 1, createdCount.get());
+		assertTrue("Owl is written", warmUp.getOutputBytes() > 0);
+		assertTrue("Iterations are timed", warmUp.getFirstIterationNanos() > 0 && warmUp.getLastIterationNanos() > 0);
+		assertTrue("Iterations are part of the total", warmUp.getTotalNanos() >= warmUp.getFirstIterationNanos() + warmUp.getLastIterationNanos());
+	}
+}
@@ -0,0 +1,61 @@
+package metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import converter.FactoidToBiopax;
+
+public class ConversionMetricsTest {
+	
+	@Test
+	public void histogramTest() {
+		
+		Histogram histogram = new Histogram();
+		
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		
+		assertEquals("All values are counted", 1000, histogram.getCount());
+		assertEquals("Values are summed exactly", 500500, histogram.getSum());
+		
+		long median = histogram.getValueAtPercentile(50);
+		long p999 = histogram.getValueAtPercentile(99.9);
+		
+		assertTrue("Median is within bucket precision", median >= 500 && median <= 500 * 1.07);
+		assertTrue("High percentile is within bucket precision", p999 >= 999 && p999 <= 999 * 1.07);
+		assertEquals("Small values are exact", 0, new Histogram().getValueAtPercentile(50));
+	}
+	
+	@Test
+	public void recordConversionTest() throws Exception {
+		
+		String content = "[{\"type\":\"molecular interaction\",\"moleculeList\":[{\"name\":\"A\",\"type\":\"protein\"},{\"name\":\"B\",\"type\":\"protein\"}]},"
+				+ "{\"type\":\"Unsupported Template\"}]";
+		
+		FactoidToBiopax converter = new FactoidToBiopax();
+		converter.addToModel(content);
+		converter.convertToOwl();
+		
+		assertEquals("Templates are counted by registered type name", Integer.valueOf(1),
+				converter.getStats().getTemplateCounts().get("Molecular Interaction"));
+		assertEquals("Unknown templates are counted", 1, converter.getStats().getUnknownTemplateCount());
+		
+		ConversionMetrics metrics = new ConversionMetrics();
+		metrics.recordRequestBytes(content.length());
+		metrics.recordConversion(converter);
+		
+		StringWriter writer = new StringWriter();
+		metrics.writePrometheus(writer);
+		String text = writer.toString();
+		
+		assertTrue("Type counter is exported", text.contains("factoid_templates_total{type=\"Molecular Interaction\"} 1\n"));
+		assertTrue("Unknown type counter is exported", text.contains("factoid_templates_total{type=\"unknown\"} 1\n"));
+		assertTrue("Latency quantiles are exported", text.contains("factoid_build_seconds{quantile=\"0.999\"}"));
+		assertTrue("Element counts are exported", text.contains("factoid_model_elements_count 1\n"));
+	}
+}
@@ -1,10 +1,12 @@
 package model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -14,6 +16,7 @@ import org.biopax.paxtools.model.level3.Control;
 import org.biopax.paxtools.model.level3.ControlType;
 import org.biopax.paxtools.model.level3.Conversion;
 import org.biopax.paxtools.model.level3.ConversionDirectionType;
+import org.biopax.paxtools.model.level3.ModificationFeature;
 import org.biopax.paxtools.model.level3.Protein;
 import org.biopax.paxtools.model.level3.ProteinReference;
 import org.biopax.paxtools.model.level3.SmallMoleculeReference;
@@ -104,6 +107,54 @@ public class BioPAXModelTest {
 		assertEquals("Protein reference already had this modification", 2, protRef.getEntityFeature().size());
 	}
 	
+	@Test
+	public void physicalEntityIndexTest() {
+		
+		BioPAXModel model = new BioPAXModel();
+		Model innerModel = getInnerPaxtoolsModel(model);
+		
+		ProteinReference protRef = model.getOrCreateEntityReference(ProteinReference.class, "TP53", new XrefModel("P04637", "uniprot"));
+		ProteinReference otherProtRef = model.getOrCreateEntityReference(ProteinReference.class, "MDM2", new XrefModel("Q00987", "uniprot"));
+		CellularLocationVocabulary location = model.getOrCreateCellularLocationVocabulary("nucleus");
+		
+		Set<String> modificationTypes = new HashSet<String>(Arrays.asList("phosphorylated", "active"));
+		Set<String> sameModificationTypes = new HashSet<String>(Arrays.asList("active", "phosphorylated"));
+		Set<String> subsetModificationTypes = new HashSet<String>(Arrays.asList("active"));
+		
+		Protein entity = model.getOrCreatePhysicalEntity(Protein.class, "TP53", location, protRef, modificationTypes);
+		
+		assertEquals("Entity is reused for an equal modification set", entity,
+				model.getOrCreatePhysicalEntity(Protein.class, "TP53", location, protRef, sameModificationTypes));
+		assertNotEquals("Entities are separated by modification set", entity,
+				model.getOrCreatePhysicalEntity(Protein.class, "TP53", location, protRef, subsetModificationTypes));
+		assertNotEquals("Entities are separated by cellular location", entity,
+				model.getOrCreatePhysicalEntity(Protein.class, "TP53", null, protRef, modificationTypes));
+		assertNotEquals("Entities are separated by entity reference", entity,
+				model.getOrCreatePhysicalEntity(Protein.class, "TP53", location, otherProtRef, modificationTypes));
+		
+		Protein unmodified = model.getOrCreatePhysicalEntity(Protein.class, "TP53", location, protRef);
+		assertEquals("No modification is the same as an empty modification set", unmodified,
+				model.getOrCreatePhysicalEntity(Protein.class, "TP53", location, protRef, new HashSet<String>()));
+		
+		ModificationFeature feature = model.getOrCreateModificationFeature("active", protRef);
+		assertEquals("Modification feature is reused for the same entity reference", feature, model.getOrCreateModificationFeature("active", protRef));
+		assertNotEquals("Modification features are separated by entity reference", feature, model.getOrCreateModificationFeature("active", otherProtRef));
+		assertEquals("Entity reference has a feature per modification type", 2, protRef.getEntityFeature().size());
+		
+		// an entity that is removed with its interaction is not found by the index anymore
+		Protein controller = model.getOrCreatePhysicalEntity(Protein.class, "TP53", location, protRef, modificationTypes);
+		model.startRecording();
+		Control control = model.addNewControl(Control.class, controller, model.addNewConversion(Conversion.class), ControlType.ACTIVATION);
+		model.removeInteractions(model.stopRecording());
+		
+		assertFalse("Control is removed", innerModel.contains(control));
+		assertFalse("Entity that is not used anymore is removed", innerModel.contains(controller));
+		
+		Protein recreated = model.getOrCreatePhysicalEntity(Protein.class, "TP53", location, protRef, modificationTypes);
+		assertNotEquals("Removed entity is not reused", controller, recreated);
+		assertTrue("Entity with the key of a removed one is added again", innerModel.contains(recreated));
+	}
+	
 	@Test
 	public void addEntityReferenceTest() {
 		
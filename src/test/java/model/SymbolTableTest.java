@@ -0,0 +1,22 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class SymbolTableTest {
+	
+	@Test
+	public void heapSymbolTableTest() {
+		
+		SymbolTable table = new HeapSymbolTable();
+		String symbol = "protein1";
+		
+		assertSame("First instance is kept", symbol, table.intern(symbol));
+		assertSame("Equal strings give the kept instance", symbol, table.intern(new String("protein1")));
+		assertEquals("Handles start from 0", 0, table.getHandle("protein1"));
+		assertEquals("Null has no handle", SymbolTable.NO_HANDLE, table.getHandle(null));
+		assertEquals("Null is not added", 1, table.size());
+	}
+}
@@ -0,0 +1,107 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.biopax.paxtools.controller.PropertyEditor;
+import org.biopax.paxtools.controller.SimpleEditorMap;
+import org.biopax.paxtools.io.SimpleIOHandler;
+import org.biopax.paxtools.model.BioPAXElement;
+import org.biopax.paxtools.model.Model;
+import org.biopax.paxtools.model.level3.CellularLocationVocabulary;
+import org.biopax.paxtools.model.level3.Protein;
+import org.biopax.paxtools.model.level3.ProteinReference;
+import org.junit.Test;
+
+import converter.FactoidToBiopax;
+import converter.TemplateGenerator;
+
+public class TemplatesOwlWriterTest {
+	
+	@Test
+	public void templatesRoundTripTest() {
+		
+		FactoidToBiopax converter = new FactoidToBiopax(IdStrategy.SEQUENTIAL);
+		converter.addToModel(new TemplateGenerator(11, 20, 10).generateDocument(300));
+		
+		String paxtoolsOwl = converter.convertToOwl();
+		converter.setOwlWriterType(OwlWriterType.TEMPLATES);
+		String templatesOwl = converter.convertToOwl();
+		
+		assertEquivalent(read(paxtoolsOwl), read(templatesOwl));
+	}
+	
+	@Test
+	public void locationAndEscapingRoundTripTest() {
+		
+		BioPAXModel model = new BioPAXModel();
+		String name = "A&B <\"quoted\"> caf\u00e9 \u03b1\ud835\udefc";
+		
+		CellularLocationVocabulary location = model.getOrCreateCellularLocationVocabulary("nucleus & cytoplasm");
+		ProteinReference entityRef = model.getOrCreateEntityReference(ProteinReference.class, name, new XrefModel("P<1>", "uniprot"));
+		model.getOrCreatePhysicalEntity(Protein.class, name, location, entityRef, Collections.singleton("phosphorylated"));
+		
+		String paxtoolsOwl = model.convertToOwl();
+		model.setOwlWriterType(OwlWriterType.TEMPLATES);
+		String templatesOwl = model.convertToOwl();
+		
+		assertTrue("Special characters are escaped", templatesOwl.contains(">nucleus &amp; cytoplasm</bp:term>"));
+		assertEquivalent(read(paxtoolsOwl), read(templatesOwl));
+	}
+	
+	@Test
+	public void controlCharactersTest() {
+		
+		BioPAXModel model = new BioPAXModel();
+		model.setOwlWriterType(OwlWriterType.TEMPLATES);
+		model.getOrCreateEntityReference(ProteinReference.class, "line\nbreak\tand\u0001bell\u0007\uffff", null);
+		
+		String templatesOwl = model.convertToOwl();
+		
+		assertTrue("Control characters that XML does not allow are dropped, the others are referenced",
+				templatesOwl.contains(">line&#10;break&#9;andbell</bp:displayName>"));
+		assertEquals("Owl is well formed", 1, read(templatesOwl).getObjects(ProteinReference.class).size());
+	}
+	
+	private static Model read(String owl) {
+		return new SimpleIOHandler().convertFromOWL(new ByteArrayInputStream(owl.getBytes(StandardCharsets.UTF_8)));
+	}
+	
+	// Assert that the models have the same elements by uri and class with the same values of all properties
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static void assertEquivalent(Model expected, Model actual) {
+		
+		assertEquals("Models have the same number of elements", expected.getObjects().size(), actual.getObjects().size());
+		
+		for (BioPAXElement expectedElement : expected.getObjects()) {
+			BioPAXElement actualElement = actual.getByID(expectedElement.getUri());
+			
+			assertNotNull("Element is written: " + expectedElement.getUri(), actualElement);
+			assertEquals("Element class is kept", expectedElement.getModelInterface(), actualElement.getModelInterface());
+			
+			for (PropertyEditor editor : SimpleEditorMap.L3.getEditorsOf(expectedElement)) {
+				assertEquals("Property " + editor.getProperty() + " of " + expectedElement.getUri() + " is kept",
+						getValues(editor.getValueFromBean(expectedElement)), getValues(editor.getValueFromBean(actualElement)));
+			}
+		}
+	}
+	
+	// Get the property values comparably, elements by their uris and the others by their string values
+	private static Set<String> getValues(Set<?> values) {
+		Set<String> result = new TreeSet<String>();
+		
+		for (Object value : new HashSet<Object>(values)) {
+			result.add(value instanceof BioPAXElement ? ((BioPAXElement) value).getUri() : String.valueOf(value));
+		}
+		
+		return result;
+	}
+}
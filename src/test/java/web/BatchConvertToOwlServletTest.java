@@ -0,0 +1,79 @@
+package web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import javax.servlet.ServletException;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import metrics.ConversionMetrics;
+
+public class BatchConvertToOwlServletTest {
+	
+	private static final String TEST_FILE = "src/resources/test.json";
+	
+	@Test
+	public void resultLinesTest() throws IOException, ServletException {
+		String document = new String(Files.readAllBytes(Paths.get(TEST_FILE)), StandardCharsets.UTF_8).replaceAll("\\s*\n\\s*", " ");
+		String body = document + "\n\n[{\"type\": \n{}\n" + document + "\n[{\"type\": \"Protein Modification\"}]\n";
+		
+		BatchConvertToOwlServlet servlet = new BatchConvertToOwlServlet();
+		servlet.init(ServletStubs.createConfig(Collections.<String, String>emptyMap()));
+		long rejectionCount = ConversionMetrics.getInstance().getRejectionCount();
+		
+		try {
+			ServletStubs.Response response = new ServletStubs.Response();
+			servlet.service(new ServletStubs.Request(body).create(response), response.create());
+			
+			String[] lines = response.getBodyString().split("\n", -1);
+			assertEquals("There is a result line per input line", 7, lines.length);
+			assertEquals("Response ends by a new line", "", lines[6]);
+			
+			for (int i = 0; i < 6; i++) {
+				JsonObject result = new JsonParser().parse(lines[i]).getAsJsonObject();
+				assertEquals("Results are in input order", i, result.get("index").getAsInt());
+				assertEquals("Documents are converted, other lines are errors", i == 0 || i == 4, result.has("owl"));
+				assertEquals("Lines that are not converted have an error", i != 0 && i != 4, result.has("error"));
+			}
+			
+			assertTrue("Blank line is an error", lines[1].contains("Line is empty"));
+			assertTrue("Line that is not an array is an error", lines[3].contains("Templates are expected to be an array"));
+			assertTrue("Invalid template is named", lines[5].contains("Template 0 (Protein Modification)"));
+			assertEquals("Error lines are rejections rather than failures", rejectionCount + 4, ConversionMetrics.getInstance().getRejectionCount());
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+	
+	@Test
+	public void bodyLimitTest() throws IOException, ServletException {
+		String document = new String(Files.readAllBytes(Paths.get(TEST_FILE)), StandardCharsets.UTF_8).replaceAll("\\s*\n\\s*", " ");
+		
+		BatchConvertToOwlServlet servlet = new BatchConvertToOwlServlet();
+		servlet.init(ServletStubs.createConfig(Collections.singletonMap("maxBodyBytes", String.valueOf(document.length() * 3 / 2))));
+		
+		try {
+			ServletStubs.Response response = new ServletStubs.Response();
+			servlet.service(new ServletStubs.Request(document + "\n" + document + "\n").create(response), response.create());
+			
+			String[] lines = response.getBodyString().split("\n");
+			assertEquals("Lines up to the limit get their results", 2, lines.length);
+			assertTrue("Line before the limit is converted", lines[0].contains("\"owl\""));
+			assertTrue("Line that crosses the limit is an error", lines[1].contains("Request body is larger than"));
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ContentCodingTest {
+	
+	@Test
+	public void selectResponseCodingTest() {
+		
+		assertEquals("Gzip is preferred", "gzip", ContentCoding.selectResponseCoding("deflate, gzip;q=0.5"));
+		assertEquals("Deflate is used when gzip is not acceptable", "deflate", ContentCoding.selectResponseCoding("gzip;q=0, deflate"));
+		assertEquals("Wildcard accepts gzip", "gzip", ContentCoding.selectResponseCoding("*"));
+		assertEquals("Wildcard accepts deflate when gzip is excluded", "deflate", ContentCoding.selectResponseCoding("gzip;q=0, *"));
+		assertNull("Wildcard does not accept listed codings", ContentCoding.selectResponseCoding("gzip;q=0, deflate;q=0, *"));
+		assertNull("Excluding the wildcard excludes codings that are not listed", ContentCoding.selectResponseCoding("*;q=0"));
+		assertNull("Unsupported codings are not used", ContentCoding.selectResponseCoding("br"));
+		assertNull("Identity is used without the header", ContentCoding.selectResponseCoding(null));
+	}
+	
+	@Test
+	public void getRequestCodingTest() {
+		
+		assertEquals("Missing header means identity", "identity", ContentCoding.getRequestCoding(null));
+		assertEquals("Alias is normalized", "gzip", ContentCoding.getRequestCoding("X-GZIP"));
+		assertNull("Unsupported coding is rejected", ContentCoding.getRequestCoding("br"));
+	}
+}
@@ -0,0 +1,266 @@
+package web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.servlet.ServletException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConvertToOwlServletTest {
+	
+	private static final String TEST_FILE = "src/resources/test.json";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static ConvertToOwlServlet createServlet(Map<String, String> initParameters) throws ServletException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("warmUpIterations", "0");
+		parameters.putAll(initParameters);
+		
+		ConvertToOwlServlet servlet = new ConvertToOwlServlet();
+		servlet.init(ServletStubs.createConfig(parameters));
+		
+		return servlet;
+	}
+	
+	private static byte[] readTestFile() throws IOException {
+		return Files.readAllBytes(Paths.get(TEST_FILE));
+	}
+	
+	// Post the body and wait for the response
+	private static ServletStubs.Response post(ConvertToOwlServlet servlet, ServletStubs.Request request) throws Exception {
+		ServletStubs.Response response = new ServletStubs.Response();
+		servlet.service(request.create(response), response.create());
+		request.awaitCompletion();
+		
+		return response;
+	}
+	
+	// Get the stored result of the given content hash
+	private static ServletStubs.Response getStored(ConvertToOwlServlet servlet, String contentHash) throws Exception {
+		return post(servlet, new ServletStubs.Request(new byte[0]).setMethod("GET").setParameter("hash", contentHash));
+	}
+	
+	@Test
+	public void cachedBodyTest() throws Exception {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("cacheBytes", "1048576");
+		ConvertToOwlServlet servlet = createServlet(parameters);
+		
+		try {
+			byte[] body = readTestFile();
+			ServletStubs.Response miss = post(servlet, new ServletStubs.Request(body).setContentLength(body.length));
+			ServletStubs.Response hit = post(servlet, new ServletStubs.Request(body).setContentLength(body.length));
+			ServletStubs.Response streamed = post(servlet, new ServletStubs.Request(body));
+			
+			assertEquals("Received body is converted", 200, miss.getStatus());
+			assertTrue("Result is owl", miss.getBodyString().contains("rdf:RDF"));
+			assertEquals("Received body is looked up in the cache", "MISS", miss.getHeader("X-Cache"));
+			assertTrue("Captured result has its serialize time", miss.getHeader("Server-Timing").contains("serialize;dur="));
+			assertEquals("Same body is served from the cache", "HIT", hit.getHeader("X-Cache"));
+			assertEquals("Cached result is the converted one", miss.getBodyString(), hit.getBodyString());
+			
+			assertEquals("Streamed body is converted", 200, streamed.getStatus());
+			assertNull("Streamed body is not hashed", streamed.getHeader("X-Content-Hash"));
+			assertNull("Streamed body is not looked up in the cache", streamed.getHeader("X-Cache"));
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+	
+	@Test
+	public void resultStoreTest() throws Exception {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("resultStoreDirectory", folder.getRoot().toString());
+		parameters.put("idStrategy", "content");
+		ConvertToOwlServlet servlet = createServlet(parameters);
+		String contentHash;
+		
+		try {
+			byte[] body = readTestFile();
+			ServletStubs.Response converted = post(servlet, new ServletStubs.Request(body).setContentLength(body.length));
+			contentHash = converted.getHeader("X-Content-Hash");
+			
+			// the result is written to the store after the response
+			ServletStubs.Response stored = getStored(servlet, contentHash);
+			
+			for (int i = 0; i < 100 && stored.getStatus() == 404; i++) {
+				Thread.sleep(50);
+				stored = getStored(servlet, contentHash);
+			}
+			
+			assertEquals("Converted result is stored", 200, stored.getStatus());
+			assertEquals("Stored result is the converted one", converted.getBodyString(), stored.getBodyString());
+		}
+		finally {
+			servlet.destroy();
+		}
+		
+		parameters.put("owlWriter", "templates");
+		servlet = createServlet(parameters);
+		
+		try {
+			assertEquals("Result of other options is not served", 404, getStored(servlet, contentHash).getStatus());
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+	
+	@Test
+	public void invalidBodyTest() throws Exception {
+		ConvertToOwlServlet servlet = createServlet(new HashMap<String, String>());
+		
+		try {
+			String document = new String(readTestFile(), "UTF-8");
+			String[] bodies = { document.substring(0, document.length() / 2), "{}" };
+			
+			for (String body : bodies) {
+				ServletStubs.Response streamed = post(servlet, new ServletStubs.Request(body));
+				ServletStubs.Response received = post(servlet, new ServletStubs.Request(body).setContentLength(body.getBytes("UTF-8").length));
+				
+				assertEquals("Streamed body that is truncated or not an array is rejected", 400, streamed.getStatus());
+				assertEquals("Received body that is truncated or not an array is rejected", 400, received.getStatus());
+			}
+			
+			ServletStubs.Response notArray = post(servlet, new ServletStubs.Request("{}"));
+			assertEquals("Rejected request is told why", "Templates are expected to be an array", notArray.getMessage());
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+	
+	@Test
+	public void queueFullTest() throws Exception {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("conversionThreads", "1");
+		parameters.put("conversionQueueCapacity", "1");
+		parameters.put("retryAfterSeconds", "3");
+		ConvertToOwlServlet servlet = createServlet(parameters);
+		
+		try {
+			// the body of the first request holds the only conversion thread until it is released
+			CountDownLatch release = new CountDownLatch(1);
+			ServletStubs.Request converting = new ServletStubs.Request(new BlockingInputStream(readTestFile(), release));
+			ServletStubs.Response convertingResponse = new ServletStubs.Response();
+			servlet.service(converting.create(convertingResponse), convertingResponse.create());
+			
+			ServletStubs.Request queued = new ServletStubs.Request(readTestFile());
+			ServletStubs.Response queuedResponse = new ServletStubs.Response();
+			servlet.service(queued.create(queuedResponse), queuedResponse.create());
+			
+			ServletStubs.Response rejected = post(servlet, new ServletStubs.Request(readTestFile()));
+			assertEquals("Request is rejected when the queue is full", 429, rejected.getStatus());
+			assertEquals("Rejected request is told when to retry", "3", rejected.getHeader("Retry-After"));
+			assertEquals("Rejected request is told why", "Too many conversions in progress, retry later", rejected.getBodyString());
+			
+			// a request that times out in the queue is answered right away and not converted later
+			queued.timeOut();
+			queued.awaitCompletion();
+			assertEquals("Request that times out in the queue is unavailable", 503, queuedResponse.getStatus());
+			assertEquals("Request that times out in the queue is told when to retry", "3", queuedResponse.getHeader("Retry-After"));
+			
+			release.countDown();
+			converting.awaitCompletion();
+			assertEquals("Conversion that holds the thread succeeds", 200, convertingResponse.getStatus());
+			assertTrue("Conversion that holds the thread gives owl", convertingResponse.getBodyString().contains("rdf:RDF"));
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+	
+	@Test
+	public void convertingTimeoutTest() throws Exception {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("conversionThreads", "1");
+		parameters.put("retryAfterSeconds", "3");
+		ConvertToOwlServlet servlet = createServlet(parameters);
+		
+		try {
+			// the streamed body is read by the conversion, so the request times out while it is converted
+			CountDownLatch release = new CountDownLatch(1);
+			BlockingInputStream body = new BlockingInputStream(readTestFile(), release);
+			ServletStubs.Request converting = new ServletStubs.Request(body);
+			ServletStubs.Response convertingResponse = new ServletStubs.Response();
+			servlet.service(converting.create(convertingResponse), convertingResponse.create());
+			body.awaitReading();
+			
+			// the timeout is answered right away rather than waiting for the conversion
+			converting.timeOut();
+			converting.awaitCompletion();
+			assertEquals("Request that times out while it is converted is unavailable", 503, convertingResponse.getStatus());
+			assertEquals("Request that times out while it is converted is told when to retry", "3", convertingResponse.getHeader("Retry-After"));
+			
+			// the abandoned conversion leaves the response alone and frees its thread for the next request
+			release.countDown();
+			ServletStubs.Response next = post(servlet, new ServletStubs.Request(readTestFile()));
+			assertEquals("Request after the abandoned conversion succeeds", 200, next.getStatus());
+			assertEquals("Abandoned conversion does not overwrite the answer of the timeout", "Conversion did not finish in time, retry later",
+					convertingResponse.getBodyString());
+		}
+		finally {
+			servlet.destroy();
+		}
+	}
+	
+	/*
+	 * Body that blocks its reader until it is released, like a client that is slow to send it.
+	 */
+	private static class BlockingInputStream extends InputStream {
+		
+		private InputStream in;
+		private CountDownLatch release;
+		private CountDownLatch reading;
+		
+		BlockingInputStream(byte[] body, CountDownLatch release) {
+			in = new ByteArrayInputStream(body);
+			this.release = release;
+			reading = new CountDownLatch(1);
+		}
+		
+		// Wait until the body is read, i.e. its conversion has started
+		void awaitReading() throws InterruptedException {
+			reading.await();
+		}
+		
+		@Override
+		public int read() throws IOException {
+			awaitRelease();
+			return in.read();
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			awaitRelease();
+			return in.read(b, off, len);
+		}
+		
+		private void awaitRelease() throws IOException {
+			reading.countDown();
+			
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				throw new IOException("Body is not released", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+
+import org.junit.Test;
+
+public class MergeServletTest {
+	
+	private static final String TEST_FILE = "src/resources/test.json";
+	
+	private static MergeServlet createServlet(Map<String, String> initParameters) throws ServletException {
+		MergeServlet servlet = new MergeServlet();
+		servlet.init(ServletStubs.createConfig(initParameters));
+		
+		return servlet;
+	}
+	
+	private static String readTestFile() throws IOException {
+		return new String(Files.readAllBytes(Paths.get(TEST_FILE)), StandardCharsets.UTF_8);
+	}
+	
+	private static ServletStubs.Response post(MergeServlet servlet, String body) throws Exception {
+		ServletStubs.Response response = new ServletStubs.Response();
+		servlet.service(new ServletStubs.Request(body).create(response), response.create());
+		
+		return response;
+	}
+	
+	@Test
+	public void mergeTest() throws Exception {
+		String document = readTestFile();
+		ServletStubs.Response response = post(createServlet(new HashMap<String, String>()), document + "\n" + document + "\n");
+		
+		assertEquals("Documents are merged", 200, response.getStatus());
+		assertEquals("Documents are counted", "2", response.getHeader("X-Document-Count"));
+		assertTrue("Result is owl", response.getBodyString().contains("rdf:RDF"));
+	}
+	
+	@Test
+	public void lenientDocumentTest() throws Exception {
+		String body = readTestFile() + "\n[{'type': 'Protein Modification'}]\n";
+		ServletStubs.Response response = post(createServlet(new HashMap<String, String>()), body);
+		
+		assertEquals("Document that is valid only for a lenient reader is rejected", 400, response.getStatus());
+		assertTrue("Rejected document is named", response.getMessage().startsWith("Document 1"));
+	}
+	
+	@Test
+	public void limitsTest() throws Exception {
+		String document = readTestFile();
+		
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("mergeMaxBodyBytes", String.valueOf(document.length()));
+		ServletStubs.Response tooLarge = post(createServlet(parameters), document + "\n" + document + "\n");
+		assertEquals("Body larger than the limit is rejected", 413, tooLarge.getStatus());
+		
+		parameters.clear();
+		parameters.put("mergeMaxElements", "1");
+		ServletStubs.Response tooManyElements = post(createServlet(parameters), document);
+		assertEquals("Merged model larger than the limit is rejected", 413, tooManyElements.getStatus());
+		assertEquals("Rejected request is told why", "Document 0: Merged model has more than 1 elements", tooManyElements.getMessage());
+	}
+}
@@ -0,0 +1,42 @@
+package web;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import converter.FactoidToBiopax;
+import model.IdStrategy;
+
+public class ServerTimingTest {
+	
+	private static final String TEST_FILE = "src/resources/test.json";
+	
+	@Test
+	public void formatTest() throws IOException {
+		FactoidToBiopax converter = new FactoidToBiopax(IdStrategy.CONTENT);
+		converter.addToModel(new String(Files.readAllBytes(Paths.get(TEST_FILE)), StandardCharsets.UTF_8));
+		
+		String built = ServerTiming.format(converter, false);
+		String counts = "templates;desc=\"" + converter.getStats().getTemplateCount() + "\", elements;desc=\""
+				+ converter.getElementCount() + "\"";
+		
+		assertTrue("Parse and build phases are given in milliseconds",
+				built.matches("parse;dur=\\d+\\.\\d{3}, build;dur=\\d+\\.\\d{3}, .*"));
+		assertTrue("Counts come after the phases", built.endsWith(counts));
+		assertTrue("Serialize phase is left out until it is done", !built.contains("serialize"));
+		
+		converter.convertToOwl(new ByteArrayOutputStream());
+		String serialized = ServerTiming.format(converter, true);
+		
+		assertTrue("Serialize phase follows the build phase",
+				serialized.matches("parse;dur=[\\d.]+, build;dur=[\\d.]+, serialize;dur=\\d+\\.\\d{3}, .*"));
+		assertTrue("Counts are the same after serializing", serialized.endsWith(counts));
+		assertTrue("Elements are counted", converter.getElementCount() > 0);
+	}
+}
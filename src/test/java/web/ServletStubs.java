@@ -0,0 +1,471 @@
+package web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/*
+ * Requests, responses and configs of servlets for tests without a container. They are dynamic proxies that
+ * implement the methods the servlets call, any other method returns the default value of its type. Responses
+ * are committed like a container does once their buffer fills up or they are flushed, headers set after that
+ * are dropped.
+ */
+final class ServletStubs {
+	
+	private ServletStubs() {
+	}
+	
+	static ServletConfig createConfig(Map<String, String> initParameters) {
+		Map<String, Object> attributes = Collections.synchronizedMap(new HashMap<String, Object>());
+		
+		ServletContext context = createProxy(ServletContext.class, (method, args) -> {
+			switch (method.getName()) {
+				case "getAttribute":
+					return attributes.get(args[0]);
+				case "setAttribute":
+					return attributes.put((String) args[0], args[1]);
+				case "removeAttribute":
+					return attributes.remove(args[0]);
+				case "getContextPath":
+					return "";
+				default:
+					return null;
+			}
+		});
+		
+		return createProxy(ServletConfig.class, (method, args) -> {
+			switch (method.getName()) {
+				case "getInitParameter":
+					return initParameters.get(args[0]);
+				case "getInitParameterNames":
+					return Collections.enumeration(initParameters.keySet());
+				case "getServletContext":
+					return context;
+				case "getServletName":
+					return "test";
+				default:
+					return null;
+			}
+		});
+	}
+	
+	// Section: helper classes
+	
+	/*
+	 * A POST request of the given body, async processing is completed when the response is.
+	 */
+	static class Request {
+		
+		private InputStream body;
+		private Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+		private Map<String, String> parameters = new HashMap<String, String>();
+		private String method = "POST";
+		private CountDownLatch completed = new CountDownLatch(1);
+		private boolean asyncStarted;
+		private List<AsyncListener> listeners = new CopyOnWriteArrayList<AsyncListener>();
+		private AsyncContext[] asyncContext;
+		
+		Request(InputStream body) {
+			this.body = body;
+		}
+		
+		Request(byte[] body) {
+			this(new ByteArrayInputStream(body));
+		}
+		
+		Request(String body) {
+			this(body.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		// Declare the length of the body like a client that does not use chunked transfer encoding
+		Request setContentLength(int length) {
+			return setHeader("Content-Length", String.valueOf(length));
+		}
+		
+		Request setHeader(String name, String value) {
+			headers.put(name, value);
+			return this;
+		}
+		
+		Request setParameter(String name, String value) {
+			parameters.put(name, value);
+			return this;
+		}
+		
+		Request setMethod(String method) {
+			this.method = method;
+			return this;
+		}
+		
+		// Wait until the servlet completes the response, right away if it did not start async processing
+		void awaitCompletion() throws InterruptedException {
+			if (asyncStarted && !completed.await(ASYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				throw new AssertionError("Async request is not completed in " + ASYNC_TIMEOUT_SECONDS + " seconds");
+			}
+		}
+		
+		// Time out the async processing like the container does once the async timeout has passed
+		void timeOut() throws IOException {
+			for (AsyncListener listener : listeners) {
+				listener.onTimeout(new AsyncEvent(asyncContext[0]));
+			}
+		}
+		
+		HttpServletRequest create(Response response) {
+			ServletInputStream in = new BodyInputStream(body);
+			HttpServletResponse responseProxy = response.create();
+			HttpServletRequest[] request = new HttpServletRequest[1];
+			asyncContext = new AsyncContext[1];
+			
+			asyncContext[0] = createProxy(AsyncContext.class, (method, args) -> {
+				switch (method.getName()) {
+					case "getRequest":
+						return request[0];
+					case "getResponse":
+						return responseProxy;
+					case "addListener":
+						listeners.add((AsyncListener) args[0]);
+						return null;
+					case "complete":
+						response.committed = true;
+						
+						for (AsyncListener listener : listeners) {
+							listener.onComplete(new AsyncEvent(asyncContext[0]));
+						}
+						
+						completed.countDown();
+						return null;
+					case "start":
+						new Thread((Runnable) args[0]).start();
+						return null;
+					default:
+						return null;
+				}
+			});
+			
+			request[0] = createProxy(HttpServletRequest.class, (method, args) -> {
+				switch (method.getName()) {
+					case "getMethod":
+						return this.method;
+					case "getProtocol":
+						return "HTTP/1.1";
+					case "getInputStream":
+						return in;
+					case "getHeader":
+						return headers.get(args[0]);
+					case "getParameter":
+						return parameters.get(args[0]);
+					case "getContentLength":
+						return headers.containsKey("Content-Length") ? Integer.parseInt(headers.get("Content-Length")) : -1;
+					case "getContentLengthLong":
+						return headers.containsKey("Content-Length") ? Long.parseLong(headers.get("Content-Length")) : -1L;
+					case "startAsync":
+						asyncStarted = true;
+						return asyncContext[0];
+					case "isAsyncStarted":
+						return asyncStarted;
+					case "getAsyncContext":
+						return asyncContext[0];
+					case "getContextPath":
+					case "getServletPath":
+						return "";
+					default:
+						return null;
+				}
+			});
+			
+			return request[0];
+		}
+	}
+	
+	/*
+	 * Response that keeps its status, headers and body for the test to check.
+	 */
+	static class Response {
+		
+		private int status = HttpServletResponse.SC_OK;
+		private String message;
+		private Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+		private ByteArrayOutputStream body = new ByteArrayOutputStream();
+		private int bufferSize = DEFAULT_BUFFER_SIZE;
+		private volatile boolean committed;
+		private PrintWriter writer;
+		private HttpServletResponse proxy;
+		
+		int getStatus() {
+			return status;
+		}
+		
+		// Message of sendError or null if it is not called
+		String getMessage() {
+			return message;
+		}
+		
+		synchronized String getHeader(String name) {
+			return headers.get(name);
+		}
+		
+		synchronized byte[] getBody() {
+			if (writer != null) {
+				writer.flush();
+			}
+			
+			return body.toByteArray();
+		}
+		
+		String getBodyString() {
+			return new String(getBody(), StandardCharsets.UTF_8);
+		}
+		
+		// Get the response that the servlet writes to, the same one on every call
+		synchronized HttpServletResponse create() {
+			if (proxy == null) {
+				proxy = createProxy();
+			}
+			
+			return proxy;
+		}
+		
+		private HttpServletResponse createProxy() {
+			ServletOutputStream out = new BodyOutputStream();
+			
+			return ServletStubs.createProxy(HttpServletResponse.class, (method, args) -> {
+				synchronized (Response.this) {
+					switch (method.getName()) {
+						case "setStatus":
+							status = committed ? status : (Integer) args[0];
+							return null;
+						case "getStatus":
+							return status;
+						case "sendError":
+							if (committed) {
+								throw new IllegalStateException("Response is committed");
+							}
+							
+							status = (Integer) args[0];
+							message = args.length > 1 ? (String) args[1] : null;
+							committed = true;
+							return null;
+						case "setHeader":
+						case "addHeader":
+							setHeader((String) args[0], (String) args[1]);
+							return null;
+						case "setIntHeader":
+							setHeader((String) args[0], String.valueOf(args[1]));
+							return null;
+						case "setContentType":
+							setHeader("Content-Type", (String) args[0]);
+							return null;
+						case "setContentLength":
+						case "setContentLengthLong":
+							setHeader("Content-Length", String.valueOf(args[0]));
+							return null;
+						case "getHeader":
+							return headers.get(args[0]);
+						case "containsHeader":
+							return headers.containsKey(args[0]);
+						case "setBufferSize":
+							bufferSize = (Integer) args[0];
+							return null;
+						case "getBufferSize":
+							return bufferSize;
+						case "isCommitted":
+							return committed;
+						case "reset":
+							if (committed) {
+								throw new IllegalStateException("Response is committed");
+							}
+							
+							status = HttpServletResponse.SC_OK;
+							headers.clear();
+							body.reset();
+							return null;
+						case "flushBuffer":
+							committed = true;
+							return null;
+						case "getOutputStream":
+							return out;
+						case "getWriter":
+							if (writer == null) {
+								writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+							}
+							
+							return writer;
+						default:
+							return null;
+					}
+				}
+			});
+		}
+		
+		// Headers of a committed response are sent already, so they are dropped like a container does
+		private void setHeader(String name, String value) {
+			if (!committed) {
+				headers.put(name, value);
+			}
+		}
+		
+		/*
+		 * Body of the response that commits it once more than the buffer size is written.
+		 */
+		private class BodyOutputStream extends ServletOutputStream {
+			
+			@Override
+			public void write(int b) {
+				synchronized (Response.this) {
+					body.write(b);
+					committed |= body.size() > bufferSize;
+				}
+			}
+			
+			@Override
+			public void write(byte[] b, int off, int len) {
+				synchronized (Response.this) {
+					body.write(b, off, len);
+					committed |= body.size() > bufferSize;
+				}
+			}
+			
+			@Override
+			public void flush() {
+				committed = true;
+			}
+			
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+			
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+		}
+	}
+	
+	/*
+	 * Body of a request.
+	 */
+	private static class BodyInputStream extends ServletInputStream {
+		
+		private InputStream in;
+		private boolean finished;
+		
+		BodyInputStream(InputStream in) {
+			this.in = in;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int b = in.read();
+			finished = b == -1;
+			
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			finished = n == -1;
+			
+			return n;
+		}
+		
+		@Override
+		public boolean isFinished() {
+			return finished;
+		}
+		
+		@Override
+		public boolean isReady() {
+			return !finished;
+		}
+		
+		// Deliver the body on another thread like the non-blocking reads of a container
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			new Thread(() -> {
+				try {
+					readListener.onDataAvailable();
+					readListener.onAllDataRead();
+				}
+				catch (IOException | RuntimeException e) {
+					readListener.onError(e);
+				}
+			}).start();
+		}
+	}
+	
+	/*
+	 * Handles the methods of a proxy that are not the methods of Object.
+	 */
+	private interface MethodHandler {
+		
+		Object invoke(Method method, Object[] args) throws Exception;
+	}
+	
+	// Section: private helper methods
+	
+	private static <T> T createProxy(Class<T> type, MethodHandler handler) {
+		InvocationHandler invocationHandler = (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return type.getSimpleName() + " stub";
+				default:
+					Object result = handler.invoke(method, args == null ? new Object[0] : args);
+					return result == null ? getDefaultValue(method.getReturnType()) : result;
+			}
+		};
+		
+		return type.cast(Proxy.newProxyInstance(ServletStubs.class.getClassLoader(), new Class<?>[] { type }, invocationHandler));
+	}
+	
+	private static Object getDefaultValue(Class<?> type) {
+		if (type == boolean.class) {
+			return false;
+		}
+		else if (type == int.class) {
+			return 0;
+		}
+		else if (type == long.class) {
+			return 0L;
+		}
+		
+		return null;
+	}
+	
+	// Section: static variables
+	
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+	private static final int ASYNC_TIMEOUT_SECONDS = 30;
+}
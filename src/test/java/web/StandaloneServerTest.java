@@ -0,0 +1,155 @@
+package web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+
+import converter.FactoidToBiopax;
+import model.IdStrategy;
+
+public class StandaloneServerTest {
+	
+	private static final String TEST_FILE = "src/resources/test.json";
+	
+	// Post the body and get the status and the response body, which is the error message on failure
+	private static String[] post(String url, byte[] body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		}
+		
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		
+		return new String[] { String.valueOf(status), read(in) };
+	}
+	
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count;
+		
+		while ((count = in.read(buffer)) != -1) {
+			out.write(buffer, 0, count);
+		}
+		
+		in.close();
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	@Test
+	public void convertTest() throws IOException {
+		
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("port", "0");
+		options.put("idStrategy", "content");
+		options.put("maxTemplates", "100");
+		options.put("warmUpIterations", "1");
+		
+		StandaloneServer server = new StandaloneServer(options);
+		server.start();
+		
+		try {
+			String baseUrl = "http://localhost:" + server.getPort() + "/FactoidToBiopaxServer";
+			
+			HttpURLConnection readyConnection = (HttpURLConnection) new URL(baseUrl + "/ready").openConnection();
+			assertEquals("Server is not ready before the warm up", 503, readyConnection.getResponseCode());
+			
+			server.warmUp();
+			readyConnection = (HttpURLConnection) new URL(baseUrl + "/ready").openConnection();
+			assertEquals("Server is ready after the warm up", 200, readyConnection.getResponseCode());
+			
+			byte[] templates = Files.readAllBytes(Paths.get(TEST_FILE));
+			FactoidToBiopax converter = new FactoidToBiopax(IdStrategy.CONTENT);
+			converter.addToModel(new String(templates, StandardCharsets.UTF_8));
+			
+			String owl = converter.convertToOwl();
+			
+			String[] response = post(baseUrl + "/ConvertToOwl", templates);
+			assertEquals("Conversion succeeds", "200", response[0]);
+			assertEquals("Owl is the owl of the converter", owl, response[1]);
+			
+			HttpURLConnection compressed = (HttpURLConnection) new URL(baseUrl + "/ConvertToOwl").openConnection();
+			compressed.setRequestMethod("POST");
+			compressed.setRequestProperty("Accept-Encoding", "deflate");
+			compressed.setDoOutput(true);
+			
+			try (OutputStream out = compressed.getOutputStream()) {
+				out.write(templates);
+			}
+			
+			assertEquals("Result is compressed by the accepted coding", "deflate", compressed.getHeaderField("Content-Encoding"));
+			assertTrue("Result has its serialize time", compressed.getHeaderField("Server-Timing").contains("serialize;dur="));
+			assertEquals("Compressed owl is the owl of the converter", owl, read(new InflaterInputStream(compressed.getInputStream())));
+			
+			response = post(baseUrl + "/ConvertToOwl", "[{\"type\":\"Protein Modification\"}]".getBytes(StandardCharsets.UTF_8));
+			assertEquals("Invalid template is rejected", "400", response[0]);
+			assertTrue("Invalid template is named", response[1].startsWith("Template 0 (Protein Modification)"));
+			
+			StringBuilder tooMany = new StringBuilder("[");
+			for (int i = 0; i <= 100; i++) {
+				tooMany.append(i == 0 ? "" : ",").append("{\"type\":\"Something Else\"}");
+			}
+			
+			response = post(baseUrl + "/ConvertToOwl", tooMany.append("]").toString().getBytes(StandardCharsets.UTF_8));
+			assertEquals("Too many templates are rejected", "413", response[0]);
+		}
+		finally {
+			server.stop();
+		}
+	}
+	
+	@Test
+	public void streamedResultTest() throws IOException {
+		
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("port", "0");
+		options.put("idStrategy", "content");
+		options.put("maxCapturedBytes", "16");
+		options.put("warmUpIterations", "0");
+		
+		StandaloneServer server = new StandaloneServer(options);
+		server.start();
+		
+		try {
+			byte[] templates = Files.readAllBytes(Paths.get(TEST_FILE));
+			FactoidToBiopax converter = new FactoidToBiopax(IdStrategy.CONTENT);
+			converter.addToModel(new String(templates, StandardCharsets.UTF_8));
+			String owl = converter.convertToOwl();
+			
+			HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort()
+					+ "/FactoidToBiopaxServer/ConvertToOwl").openConnection();
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(templates);
+			}
+			
+			assertEquals("Result larger than the captured size is chunked", "chunked", connection.getHeaderField("Transfer-Encoding"));
+			assertFalse("Streamed result has no serialize time", connection.getHeaderField("Server-Timing").contains("serialize;dur="));
+			assertEquals("Streamed owl is the owl of the converter", owl, read(connection.getInputStream()));
+		}
+		finally {
+			server.stop();
+		}
+	}
+}